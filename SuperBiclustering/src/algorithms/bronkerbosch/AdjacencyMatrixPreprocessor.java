@@ -21,8 +21,10 @@ package algorithms.bronkerbosch;
 
 import java.util.BitSet;
 
+import util.BitUtils;
 import datatype.matrix.BinaryMatrix;
 import datatype.matrix.BitSetBinaryMatrix;
+import datatype.matrix.PackedBinaryMatrix;
 
 public class AdjacencyMatrixPreprocessor {
 	/**
@@ -59,7 +61,10 @@ public class AdjacencyMatrixPreprocessor {
 
 	/**
 	 * The actual implementation of the reduce method (for bipartite
-	 * matrices).
+	 * matrices). Rows and columns are peeled with a queue: the
+	 * degree of each node among the remaining nodes is kept up to
+	 * date and only the neighbours of a removed node are checked
+	 * again. The reduced matrix is packed (see PackedBinaryMatrix).
 	 */
 	private static BinaryMatrix reduceRequired(BinaryMatrix adj,
 			int minRows, int minColumns, BitSet requiredRows,
@@ -67,34 +72,75 @@ public class AdjacencyMatrixPreprocessor {
 
 		int numRows = adj.getNumRows();
 		int numCols = adj.getNumColumns();
+		PackedBinaryMatrix rowsMatrix = PackedBinaryMatrix.pack(adj);
+		PackedBinaryMatrix colsMatrix = rowsMatrix.getTransposed();
+		long[] requiredRowWords = toWords(requiredRows, numRows);
+		long[] requiredColWords = toWords(requiredColumns, numCols);
+		int numRequiredRows = requiredRows.cardinality();
+		int numRequiredCols = requiredColumns.cardinality();
 
 		BitSet rows = new BitSet(numRows);
 		rows.set(0, numRows);
 		BitSet cols = new BitSet(numCols);
 		cols.set(0, numCols);
-		// Is true if columns were marked for removal.
-		boolean colChanged = true;
-		while (colChanged) {
-			for (int r = rows.nextSetBit(0); r > -1; r =
-					rows.nextSetBit(r + 1)) {
-				// test if the row r meets the requirements (it
-				// contains at least minC columns and also the
-				// required columns)
-				if (removeNode(adj, minColumns, requiredColumns, r,
-						NodeType.ROW, cols) == true) {
-					// mark r to be deleted
-					rows.set(r, false);
-				}
+
+		// Degree of each row (column) among the remaining columns
+		// (rows). Removed nodes are queued as r for rows and numRows
+		// + c for columns.
+		int[] rowDegree = new int[numRows];
+		int[] colDegree = new int[numCols];
+		int[] queue = new int[numRows + numCols];
+		int head = 0;
+		int tail = 0;
+
+		for (int r = 0; r < numRows; ++r) {
+			long[] row = rowsMatrix.getRowWords(r);
+			rowDegree[r] = BitUtils.cardinality(row);
+			// the row must contain at least minC columns and also
+			// the required columns
+			if (rowDegree[r] < minColumns
+					|| BitUtils.cardinalityAnd(row, requiredColWords) != numRequiredCols) {
+				rows.clear(r);
+				queue[tail++] = r;
 			}
-			colChanged = false;
-			for (int c = cols.nextSetBit(0); c > -1; c =
-					cols.nextSetBit(c + 1)) {
-				// test if column c meets the requirements
-				if (removeNode(adj, minRows, requiredRows, c,
-						NodeType.COL, rows) == true) {
-					// mark c to be deleted
-					cols.set(c, false);
-					colChanged = true;
+		}
+		for (int c = 0; c < numCols; ++c) {
+			long[] col = colsMatrix.getRowWords(c);
+			colDegree[c] = BitUtils.cardinality(col);
+			if (colDegree[c] < minRows
+					|| BitUtils.cardinalityAnd(col, requiredRowWords) != numRequiredRows) {
+				cols.clear(c);
+				queue[tail++] = numRows + c;
+			}
+		}
+
+		while (head < tail) {
+			int node = queue[head++];
+			if (node < numRows) {
+				// without a required row no column is left
+				if (requiredRows.get(node)) {
+					return null;
+				}
+				long[] row = rowsMatrix.getRowWords(node);
+				for (int c = BitUtils.nextSetBit(row, 0); c > -1; c =
+						BitUtils.nextSetBit(row, c + 1)) {
+					if (cols.get(c) && --colDegree[c] < minRows) {
+						cols.clear(c);
+						queue[tail++] = numRows + c;
+					}
+				}
+			} else {
+				int column = node - numRows;
+				if (requiredColumns.get(column)) {
+					return null;
+				}
+				long[] col = colsMatrix.getRowWords(column);
+				for (int r = BitUtils.nextSetBit(col, 0); r > -1; r =
+						BitUtils.nextSetBit(col, r + 1)) {
+					if (rows.get(r) && --rowDegree[r] < minColumns) {
+						rows.clear(r);
+						queue[tail++] = r;
+					}
 				}
 			}
 		}
@@ -106,13 +152,9 @@ public class AdjacencyMatrixPreprocessor {
 				return null;
 			}
 
-			BinaryMatrix out =
-					new BitSetBinaryMatrix(rows.cardinality(), cols
-							.cardinality());
-			removeRowsAndCols(adj, rows, cols, out);
 			updateMapIds(rows, numRows, rowMapId);
 			updateMapIds(cols, numCols, colMapId);
-			return out;
+			return removeRowsAndCols(rowsMatrix, rows, cols);
 		}
 		// There were no rows or columns deleted, so the map is
 		// identity.
@@ -122,7 +164,16 @@ public class AdjacencyMatrixPreprocessor {
 		for (int c = 0; c < numCols; ++c) {
 			colMapId[c] = c;
 		}
-		return adj;
+		return rowsMatrix;
+	}
+
+	private static long[] toWords(BitSet nodes, int numNodes) {
+		long[] words = BitUtils.newWords(numNodes);
+		for (int i = nodes.nextSetBit(0); i > -1; i =
+				nodes.nextSetBit(i + 1)) {
+			BitUtils.set(words, i);
+		}
+		return words;
 	}
 
 	/**
@@ -143,52 +194,36 @@ public class AdjacencyMatrixPreprocessor {
 		}
 	}
 
-	/**
-	 * The method returns true if the node nodeId must be deleted if
-	 * it does not meet the requirements.
-	 */
-	private static boolean removeNode(BinaryMatrix adj, int minOnes,
-			BitSet requiredNodes, int nodeId, NodeType nt,
-			BitSet consideredNodes) {
-		for (int i = requiredNodes.nextSetBit(0); i > -1; i =
-				requiredNodes.nextSetBit(i + 1)) {
-			if ((nt == NodeType.ROW && adj.get(nodeId, i) == false)
-					|| !consideredNodes.get(i)
-					|| (nt == NodeType.COL && adj.get(i, nodeId) == false)) {
-				return true;
-			}
-		}
-		int cntOnes = 0;
-		for (int i = consideredNodes.nextSetBit(0); i > -1; i =
-				consideredNodes.nextSetBit(i + 1)) {
-			if ((nt == NodeType.ROW && adj.get(nodeId, i) == true)
-					|| (nt == NodeType.COL && adj.get(i, nodeId) == true)) {
-				cntOnes++;
-			}
-		}
-		if (cntOnes < minOnes)
-			return true;
-		return false;
-	}
-
 	/***
-	 * The matrix out contains only the rows and columns of matrix
-	 * adj that are set to true in the corresponding bitset.
+	 * Returns the packed matrix that contains only the rows and
+	 * columns of matrix adj that are set to true in the
+	 * corresponding bitset.
 	 */
-	private static void removeRowsAndCols(BinaryMatrix adj,
-			BitSet rows, BitSet cols, BinaryMatrix out) {
-		int idr = 0;
+	private static PackedBinaryMatrix removeRowsAndCols(
+			PackedBinaryMatrix adj, BitSet rows, BitSet cols) {
+		PackedBinaryMatrix out =
+				new PackedBinaryMatrix(rows.cardinality(),
+						cols.cardinality());
+		int[] newColumnId = new int[adj.getNumColumns()];
 		int idc = 0;
+		for (int c = cols.nextSetBit(0); c > -1; c =
+				cols.nextSetBit(c + 1)) {
+			newColumnId[c] = idc++;
+		}
+		int idr = 0;
 		for (int r = rows.nextSetBit(0); r > -1; r =
 				rows.nextSetBit(r + 1)) {
-			idc = 0;
-			for (int c = cols.nextSetBit(0); c > -1; c =
-					cols.nextSetBit(c + 1)) {
-				out.set(idr, idc, adj.get(r, c));
-				idc++;
+			long[] row = adj.getRowWords(r);
+			long[] outRow = out.getRowWords(idr);
+			for (int c = BitUtils.nextSetBit(row, 0); c > -1; c =
+					BitUtils.nextSetBit(row, c + 1)) {
+				if (cols.get(c)) {
+					BitUtils.set(outRow, newColumnId[c]);
+				}
 			}
 			idr++;
 		}
+		return out;
 	}
 
 	/**
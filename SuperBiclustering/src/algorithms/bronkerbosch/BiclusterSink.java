@@ -0,0 +1,37 @@
+/* Bimax 2 - A biclustering algorithm based on the Bron-Kerbosch
+ * Maximal Clique Enumeration Algorithm.
+ * Copyright (C) 2014 Oliver Voggenreiter
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package algorithms.bronkerbosch;
+
+import datatype.bicluster.Bicluster;
+
+/**
+ * Receives the biclusters of a BronKerboschBipartite enumeration as
+ * soon as they are found, instead of collecting all of them in a
+ * list first.
+ */
+public interface BiclusterSink {
+
+	/**
+	 * Called once for every bicluster found. Returning false stops
+	 * the enumeration; no further biclusters are reported.
+	 */
+	public abstract boolean accept(Bicluster bicluster);
+
+}
@@ -34,6 +34,15 @@ public interface BronKerboschBipartite {
 			BinaryMatrix connectivityMatrix, BitSet requiredRows,
 			BitSet requiredCols);
 
+	/**
+	 * Streams the biclusters to 'sink' as they are found and returns
+	 * the number of reported biclusters. The enumeration stops early
+	 * if the sink returns false.
+	 */
+	public abstract long findBiclusters(
+			BinaryMatrix connectivityMatrix, BitSet requiredRows,
+			BitSet requiredCols, BiclusterSink sink);
+
 	public abstract void setMinRows(int minRows);
 
 	public abstract void setMinColumns(int minColumns);
@@ -23,12 +23,20 @@ import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.List;
 
+import util.BitUtils;
 import datatype.bicluster.Bicluster;
 import datatype.bicluster.BitSetBicluster;
 import datatype.matrix.BinaryMatrix;
+import datatype.matrix.PackedBinaryMatrix;
 
 /**
  * Bron-Kerbosch Algorithm (Version 2) adapted for bipartite graphs.
+ *
+ * The sets X and P are stored as bit sets (see Nodes), so that the
+ * intersection with the neighbourhood of a node is a word-wise AND
+ * and the disconnections of a pivot are a popcount. The sets of each
+ * recursion depth are allocated once and reused for all siblings on
+ * that depth.
  */
 public class BronKerboschBipartiteV2 implements
 BronKerboschBipartite {
@@ -43,6 +51,11 @@ BronKerboschBipartite {
 	// Preprocessed adjacency matrix
 	protected BinaryMatrix inputMatrix;
 
+	// Adjacency of the preprocessed matrix as bit sets: the columns
+	// connected to each row and the rows connected to each column
+	protected long[][] rowNeighbours;
+	protected long[][] colNeighbours;
+
 	protected int minRows = 10; // minimum nbr of rows in a bicluster
 	protected int minCols = 10; // minimum nbr of columns in a
 	// bicluster
@@ -57,10 +70,29 @@ BronKerboschBipartite {
 	protected int cntRowsInClique = 0;
 	protected int cntColsInClique = 0;
 
-	// The arrays grow dynamically and represent set R for rows and
-	// respectively columns
-	private List<Integer> compsubRows = new ArrayList<Integer>();
-	private List<Integer> compsubCols = new ArrayList<Integer>();
+	// Represent set R for rows and respectively columns, filled up
+	// to cntRowsInClique and cntColsInClique
+	private int[] compsubRows;
+	private int[] compsubCols;
+
+	// X u P of rows and columns for each recursion depth. Depth 0
+	// holds the initial sets, depth d the sets after d nodes have
+	// been added to R.
+	protected Nodes[] rowsStack;
+	protected Nodes[] colsStack;
+	// Pivot and non-neighbours of the pivot for each recursion depth
+	private Pivot[] pivotStack;
+	private long[][] nonNeighboursStack;
+
+	// Search frames: the stage of the frame on each depth and the
+	// node it is currently extending with. The search is iterative,
+	// so the depth of a search is not bounded by the thread stack.
+	private static final int FRAME_START = 0;
+	private static final int FRAME_NON_NEIGHBOURS = 1;
+	private static final int FRAME_NEXT = 2;
+	private int[] frameStage;
+	private int[] frameSelection;
+	private boolean[] frameSelectionIsRow;
 
 	protected List<Bicluster> biclusters =
 			new ArrayList<Bicluster>();
@@ -71,6 +103,21 @@ BronKerboschBipartite {
 	// maximal count of biclusters to report
 	private long maxBiclusters = Long.MAX_VALUE;
 
+	// receives the biclusters as soon as they are found
+	private BiclusterSink sink;
+
+	// set when the sink asked to stop the enumeration
+	protected boolean stopped = false;
+
+	// default sink that collects the biclusters in the list
+	private final BiclusterSink listSink = new BiclusterSink() {
+		@Override
+		public boolean accept(Bicluster bicluster) {
+			biclusters.add(bicluster);
+			return true;
+		}
+	};
+
 	/*
 	 * Method for calling a biclustering of the input matrix with
 	 * given minimum size restrictions on the number of rows and
@@ -93,13 +140,32 @@ BronKerboschBipartite {
 	public List<Bicluster> findBiclusters(
 			BinaryMatrix connectivityMatrix, BitSet requiredRows,
 			BitSet requiredCols) {
+		findBiclusters(connectivityMatrix, requiredRows,
+				requiredCols, listSink);
+		return biclusters;
+	}
+
+	/*
+	 * Method for streaming the biclusters of the input matrix to a
+	 * sink, conditioned on the required rows and columns as above.
+	 */
+	@Override
+	public long findBiclusters(BinaryMatrix connectivityMatrix,
+			BitSet requiredRows, BitSet requiredCols,
+			BiclusterSink sink) {
+		if (sink == null) {
+			throw new IllegalArgumentException(
+					"sink must not be null");
+		}
+		this.sink = sink;
+		this.stopped = false;
 		boolean validInput =
 				initialize(connectivityMatrix, requiredRows,
 						requiredCols);
 		if (validInput) {
 			findBiclusters();
 		}
-		return biclusters;
+		return numBiclusters;
 	}
 
 	private boolean initialize(BinaryMatrix connectivityMatrix,
@@ -135,267 +201,355 @@ BronKerboschBipartite {
 		if (inputMatrix != null) {
 			numRows = inputMatrix.getNumRows();
 			numCols = inputMatrix.getNumColumns();
+			initializeSearch();
 		}
 		return inputMatrix != null;
 	}
 
-	protected void findBiclusters() {
-		Nodes rowsData = new Nodes(NodeType.ROW, numRows);
-		Nodes colsData = new Nodes(NodeType.COL, numCols);
-		bkv2(rowsData, colsData);
+	/**
+	 * Builds the bit set adjacency of the preprocessed matrix and
+	 * the (lazily filled) per-depth stacks. Afterwards depth 0 of
+	 * the stacks holds X = {} and P = all nodes.
+	 */
+	private void initializeSearch() {
+		// the preprocessed matrix is packed already
+		PackedBinaryMatrix rowsMatrix =
+				PackedBinaryMatrix.pack(inputMatrix);
+		PackedBinaryMatrix colsMatrix = rowsMatrix.getTransposed();
+		rowNeighbours = new long[numRows][];
+		colNeighbours = new long[numCols][];
+		for (int r = 0; r < numRows; ++r) {
+			rowNeighbours[r] = rowsMatrix.getRowWords(r);
+		}
+		for (int c = 0; c < numCols; ++c) {
+			colNeighbours[c] = colsMatrix.getRowWords(c);
+		}
+
+		int maxDepth = numRows + numCols + 1;
+		rowsStack = new Nodes[maxDepth];
+		colsStack = new Nodes[maxDepth];
+		pivotStack = new Pivot[maxDepth];
+		nonNeighboursStack = new long[maxDepth][];
+		frameStage = new int[maxDepth];
+		frameSelection = new int[maxDepth];
+		frameSelectionIsRow = new boolean[maxDepth];
+		compsubRows = new int[numRows];
+		compsubCols = new int[numCols];
+		cntRowsInClique = 0;
+		cntColsInClique = 0;
+
+		rowsAt(0).reset(numRows);
+		colsAt(0).reset(numCols);
 	}
 
 	/**
-	 * Main recursive call of algorithm. Prerequisite: there are
-	 * candidate nodes in either rows or columns yet to be processed.
+	 * Returns the X u P of rows for the given recursion depth,
+	 * allocating it on first use.
 	 */
-	private long bkv2(Nodes rows, Nodes columns) {
+	protected Nodes rowsAt(int depth) {
+		if (rowsStack[depth] == null) {
+			rowsStack[depth] = new Nodes(NodeType.ROW, numRows);
+		}
+		return rowsStack[depth];
+	}
 
-		// abort algorithm when maximal number of biclusters is
-		// exceeded
-		if (numBiclusters >= maxBiclusters) {
-			return 0;
+	/**
+	 * Returns the X u P of columns for the given recursion depth,
+	 * allocating it on first use.
+	 */
+	protected Nodes colsAt(int depth) {
+		if (colsStack[depth] == null) {
+			colsStack[depth] = new Nodes(NodeType.COL, numCols);
+		}
+		return colsStack[depth];
+	}
+
+	private Pivot pivotAt(int depth) {
+		if (pivotStack[depth] == null) {
+			pivotStack[depth] = new Pivot();
 		}
+		pivotStack[depth].reset();
+		return pivotStack[depth];
+	}
 
-		long biclustersFound = 0;
-		Pivot pivot = new Pivot();
-
-		if (columns.candidatesEnd > columns.notEnd
-				&& rows.candidatesEnd > rows.notEnd) {
-			// look if pivot can be row
-			pivot.findPivot(rows, columns, inputMatrix);
-			// look if pivot can be column
-			pivot.findPivot(columns, rows, inputMatrix);
-		} else if (columns.candidatesEnd <= columns.notEnd) {
-			// if columns have no candidates, and rows have
-			// candidates choose pivot from rows only
-			pivot.findPivot(rows, columns, inputMatrix);
-		} else if (rows.candidatesEnd <= rows.notEnd) {
-			// if rows have no candidates, and columns have
-			// candidates choose pivot from columns only
-			pivot.findPivot(columns, rows, inputMatrix);
+	private long[] nonNeighboursAt(int depth) {
+		if (nonNeighboursStack[depth] == null) {
+			nonNeighboursStack[depth] =
+					BitUtils.newWords(Math.max(numRows, numCols));
 		}
+		return nonNeighboursStack[depth];
+	}
 
-		int selectedNode = pivot.selectedNode;
-		int node;
+	protected void findBiclusters() {
+		frameStage[0] = FRAME_START;
+		runFrames(0);
+	}
 
-		if (pivot.pivotFromP == true) {
-			if (pivot.selType.equals(NodeType.ROW)) {
-				biclustersFound +=
-						extendSelection(rows, columns, selectedNode);
+	/**
+	 * Runs the search frames iteratively, starting with the frame on
+	 * 'baseDepth', until that frame is exhausted. A frame corresponds
+	 * to one recursive call of the Bron-Kerbosch algorithm on the X u
+	 * P of rows and columns of its depth.
+	 */
+	private void runFrames(int baseDepth) {
+		int depth = baseDepth;
+		while (depth >= baseDepth) {
+			Nodes rows = rowsStack[depth];
+			Nodes columns = colsStack[depth];
+			int sel = nextSelection(depth, rows, columns);
+			if (sel < 0) {
+				// frame exhausted, finish the selection of the parent
+				depth--;
+				if (depth >= baseDepth) {
+					leaveSelection(
+							frameSelectionIsRow[depth] ? rowsStack[depth]
+									: colsStack[depth],
+									frameSelection[depth]);
+				}
+			} else if (frameSelectionIsRow[depth]) {
+				if (enterSelection(rows, columns, sel)) {
+					frameStage[++depth] = FRAME_START;
+				} else {
+					leaveSelection(rows, sel);
+				}
 			} else {
-				biclustersFound +=
-						extendSelection(columns, rows, selectedNode);
+				if (enterSelection(columns, rows, sel)) {
+					frameStage[++depth] = FRAME_START;
+				} else {
+					leaveSelection(columns, sel);
+				}
 			}
 		}
-		if (pivot.pivotType.equals(NodeType.ROW)) {
-			for (node = pivot.minDisconnections; node >= 1; node--) {
-				for (selectedNode = columns.notEnd; selectedNode < columns.candidatesEnd
-						&& inputMatrix.get(pivot.pivot,
-								columns.nodes[selectedNode]); selectedNode++) {
-					;
-				}
-				biclustersFound +=
-						extendSelection(columns, rows, selectedNode);
+	}
+
+	/**
+	 * Returns the next node the frame on 'depth' extends with, or -1
+	 * if the frame is exhausted. The pivot is extended first if it is
+	 * from P, then all candidates not connected to the pivot.
+	 * Prerequisite: there are candidate nodes in either rows or
+	 * columns yet to be processed.
+	 */
+	private int nextSelection(int depth, Nodes rows, Nodes columns) {
+		if (frameStage[depth] == FRAME_START) {
+			// abort algorithm when maximal number of biclusters is
+			// exceeded
+			if (stopped || numBiclusters >= maxBiclusters) {
+				return -1;
 			}
-		} else {
-			for (node = pivot.minDisconnections; node >= 1; node--) {
-				for (selectedNode = rows.notEnd; selectedNode < rows.candidatesEnd
-						&& inputMatrix.get(rows.nodes[selectedNode],
-								pivot.pivot); selectedNode++) {
-					;
-				}
-				biclustersFound +=
-						extendSelection(rows, columns, selectedNode);
+
+			Pivot pivot = pivotAt(depth);
+			if (columns.hasCandidates() && rows.hasCandidates()) {
+				// look if pivot can be row
+				pivot.findPivot(rows, columns, rowNeighbours);
+				// look if pivot can be column
+				pivot.findPivot(columns, rows, colNeighbours);
+			} else if (!columns.hasCandidates()) {
+				// if columns have no candidates, and rows have
+				// candidates choose pivot from rows only
+				pivot.findPivot(rows, columns, rowNeighbours);
+			} else if (!rows.hasCandidates()) {
+				// if rows have no candidates, and columns have
+				// candidates choose pivot from columns only
+				pivot.findPivot(columns, rows, colNeighbours);
 			}
+
+			frameStage[depth] = FRAME_NON_NEIGHBOURS;
+			if (pivot.pivotFromP == true) {
+				frameSelectionIsRow[depth] =
+						pivot.selType == NodeType.ROW;
+				frameSelection[depth] = pivot.selectedNode;
+				return pivot.selectedNode;
+			}
+		}
+
+		long[] nonNeighbours = nonNeighboursAt(depth);
+		if (frameStage[depth] == FRAME_NON_NEIGHBOURS) {
+			// the candidates not connected to the pivot are fixed
+			// before the first extension since each extension only
+			// moves its own node from P to X
+			Pivot pivot = pivotStack[depth];
+			if (pivot.pivotType == NodeType.ROW) {
+				BitUtils.andNot(nonNeighbours, columns.candidates,
+						rowNeighbours[pivot.pivot]);
+				frameSelectionIsRow[depth] = false;
+			} else {
+				BitUtils.andNot(nonNeighbours, rows.candidates,
+						colNeighbours[pivot.pivot]);
+				frameSelectionIsRow[depth] = true;
+			}
+			frameSelection[depth] = -1;
+			frameStage[depth] = FRAME_NEXT;
 		}
-		return biclustersFound;
+
+		if (stopped) {
+			return -1;
+		}
+		frameSelection[depth] =
+				BitUtils.nextSetBit(nonNeighbours,
+						frameSelection[depth] + 1);
+		return frameSelection[depth];
 	}
 
 	/**
-	 * The selected node is from the set selectedSet and it will be
-	 * added to the X set. The X,P sets are updated for both rows and
-	 * columns.
+	 * The selected node 'sel' is from the P of selectedSet and it
+	 * will be added to the X set. The X,P sets are updated for both
+	 * rows and columns.
 	 */
 	protected long extendSelection(Nodes selectedSet,
-			Nodes checkSet, int s) {
-		long biclustersFound = 0;
-		int p = selectedSet.nodes[s];
-		selectedSet.nodes[s] = selectedSet.nodes[selectedSet.notEnd];
-		int sel = selectedSet.nodes[selectedSet.notEnd] = p;
+			Nodes checkSet, int sel) {
+		long biclustersBefore = numBiclusters;
+		int depth = cntRowsInClique + cntColsInClique;
+		if (enterSelection(selectedSet, checkSet, sel)) {
+			frameStage[depth + 1] = FRAME_START;
+			runFrames(depth + 1);
+		}
+		leaveSelection(selectedSet, sel);
+		return numBiclusters - biclustersBefore;
+	}
+
+	/**
+	 * Adds 'sel' to R and computes the X u P of rows and columns for
+	 * the next depth. A bicluster is reported if R is maximal.
+	 * Returns true if the search has to continue on the next depth.
+	 */
+	private boolean enterSelection(Nodes selectedSet, Nodes checkSet,
+			int sel) {
+		int depth = cntRowsInClique + cntColsInClique;
 
 		// update the new indices
-		boolean selectionIsRow = false;
-		if (selectedSet.nodeType.equals(NodeType.ROW))
-			selectionIsRow = true;
-
-		int[] newCheck = new int[checkSet.candidatesEnd];
-		int newNotEndCheck = 0;
-		int newCandidateEndCheck = 0;
-
-		// Update X and P for the checkSet
-		switch (selectedSet.nodeType) {
-		case ROW:
-			// intersect X with neighbors of the selected node
-			for (int i = 0; i < checkSet.notEnd; i++) {
-				if (inputMatrix.get(sel, checkSet.nodes[i]))
-					newCheck[newNotEndCheck++] = checkSet.nodes[i];
-			}
-			newCandidateEndCheck = newNotEndCheck;
-			// intersect P with neighbors of the selected node
-			for (int i = checkSet.notEnd; i < checkSet.candidatesEnd; i++) {
-				if (inputMatrix.get(sel, checkSet.nodes[i]))
-					newCheck[newCandidateEndCheck++] =
-					checkSet.nodes[i];
-			}
-			break;
-		case COL:
-			// similar as above, but for columns
-			for (int i = 0; i < checkSet.notEnd; i++) {
-				if (inputMatrix.get(checkSet.nodes[i], sel))
-					newCheck[newNotEndCheck++] = checkSet.nodes[i];
-			}
-			newCandidateEndCheck = newNotEndCheck;
-			for (int i = checkSet.notEnd; i < checkSet.candidatesEnd; i++) {
-				if (inputMatrix.get(checkSet.nodes[i], sel))
-					newCheck[newCandidateEndCheck++] =
-					checkSet.nodes[i];
-			}
-			break;
-		default:
-			break;
+		boolean selectionIsRow = selectedSet.nodeType == NodeType.ROW;
+
+		// Update X and P for the checkSet: intersect X and P with
+		// the neighbors of the selected node
+		Nodes newCheck;
+		if (selectionIsRow) {
+			newCheck = colsAt(depth + 1);
+			newCheck.intersect(checkSet, rowNeighbours[sel]);
+		} else {
+			newCheck = rowsAt(depth + 1);
+			newCheck.intersect(checkSet, colNeighbours[sel]);
 		}
 
-		int newNotEndSelected = selectedSet.notEnd;
-		int newCandidateEndSelected = 0;
-		if (selectedSet.candidatesEnd > 0)
-			newCandidateEndSelected = selectedSet.candidatesEnd - 1;
+		// The selected node is eliminated from P, the rest of the
+		// elements are left unchanged.
+		selectedSet.removeCandidate(sel);
+
+		int newNotSelected = selectedSet.notCount;
+		int newCandidatesSelected = selectedSet.candidatesCount;
+		int newNotCheck = newCheck.notCount;
+		int newCandidatesCheck = newCheck.candidatesCount;
 
 		boolean hasOtherNodes = false;
 		int totRows = -1;
 		int totCols = -1;
 
-		switch (selectedSet.nodeType) {
-		case ROW:
-			compsubRows.add(sel);
-			cntRowsInClique++;
+		if (selectionIsRow) {
+			compsubRows[cntRowsInClique++] = sel;
 			hasOtherNodes = cntColsInClique > 0;
-			totRows =
-					newCandidateEndSelected - newNotEndSelected
-					+ cntRowsInClique;
-			totCols =
-					newCandidateEndCheck - newNotEndCheck
-					+ cntColsInClique;
-			break;
-		case COL:
-			compsubCols.add(sel);
-			cntColsInClique++;
+			totRows = newCandidatesSelected + cntRowsInClique;
+			totCols = newCandidatesCheck + cntColsInClique;
+		} else {
+			compsubCols[cntColsInClique++] = sel;
 			hasOtherNodes = cntRowsInClique > 0;
-			totRows =
-					newCandidateEndCheck - newNotEndCheck
-					+ cntRowsInClique;
-			totCols =
-					newCandidateEndSelected - newNotEndSelected
-					+ cntColsInClique;
-			break;
-		default:
-			break;
+			totRows = newCandidatesCheck + cntRowsInClique;
+			totCols = newCandidatesSelected + cntColsInClique;
 		}
 
-		if (totRows >= minRows && totCols >= minCols) {
-			if (((newCandidateEndSelected == 0 && newCandidateEndCheck == 0)
-					|| (newCandidateEndSelected == 0 && newNotEndCheck == 0) || (newCandidateEndCheck == 0 && newNotEndSelected == 0))) {
-				numBiclusters++;
-				biclustersFound++;
-				Bicluster bc = new BitSetBicluster();
-
-				for (int i = 0; i < compsubRows.size(); ++i)
-					bc.addRow(rowMapId[compsubRows.get(i)]);
-				for (int i = 0; i < compsubCols.size(); ++i)
-					bc.addColumn(colMapId[compsubCols.get(i)]);
-
-				if (selectionIsRow) {
-					// add all rows connected with the rest
-					for (int i = newNotEndSelected + 1; i <= newCandidateEndSelected; ++i) {
-						bc.addRow(rowMapId[selectedSet.nodes[i]]);
-					}
-					for (int i = newNotEndCheck; i < newCandidateEndCheck; ++i) {
-						bc.addColumn(colMapId[newCheck[i]]);
-					}
-				} else {
-					for (int i = newNotEndSelected + 1; i <= newCandidateEndSelected; ++i) {
-						bc.addColumn(colMapId[selectedSet.nodes[i]]);
-					}
-					for (int i = newNotEndCheck; i < newCandidateEndCheck; ++i) {
-						bc.addRow(rowMapId[newCheck[i]]);
-					}
-				}
-				biclusters.add(bc);
+		if (totRows < minRows || totCols < minCols) {
+			return false;
+		}
+
+		boolean emptySelected =
+				newNotSelected + newCandidatesSelected == 0;
+		boolean emptyCheck = newNotCheck + newCandidatesCheck == 0;
+		if ((emptySelected && emptyCheck)
+				|| (emptySelected && newNotCheck == 0)
+				|| (emptyCheck && newNotSelected == 0)) {
+			numBiclusters++;
+			Bicluster bc = new BitSetBicluster();
+
+			for (int i = 0; i < cntRowsInClique; ++i)
+				bc.addRow(rowMapId[compsubRows[i]]);
+			for (int i = 0; i < cntColsInClique; ++i)
+				bc.addColumn(colMapId[compsubCols[i]]);
+
+			if (selectionIsRow) {
+				// add all rows connected with the rest
+				addRows(bc, selectedSet.candidates);
+				addColumns(bc, newCheck.candidates);
 			} else {
-				boolean hasCandidatesPivot =
-						(newNotEndSelected < newCandidateEndSelected);
-				boolean hasCandidatesCheck =
-						(newNotEndCheck < newCandidateEndCheck);
-
-				if ((hasCandidatesPivot && hasCandidatesCheck)
-						|| // we have candidates in rows and cols
-						(hasCandidatesPivot && !hasCandidatesCheck
-								&& hasOtherNodes && newNotEndSelected == 0)
-								|| (hasCandidatesCheck
-										&& !hasCandidatesPivot && newNotEndCheck == 0)) {
-
-					int[] newSelected =
-							new int[selectedSet.candidatesEnd];
-					// Update X and P for the set which contains the
-					// selected node.
-					// The selected node is eliminated from X and P,
-					// the rest of the elements are left unchanged.
-					System.arraycopy(selectedSet.nodes, 0,
-							newSelected, 0, selectedSet.notEnd);
-					if (selectedSet.candidatesEnd != 0) {
-						System.arraycopy(selectedSet.nodes,
-								selectedSet.notEnd + 1, newSelected,
-								selectedSet.notEnd,
-								newCandidateEndSelected
-								- newNotEndSelected);
-					}
-
-					Nodes newselected =
-							new Nodes(selectedSet.nodeType,
-									newSelected,
-									newCandidateEndSelected,
-									newNotEndSelected);
-					Nodes newcheck =
-							new Nodes(checkSet.nodeType, newCheck,
-									newCandidateEndCheck,
-									newNotEndCheck);
-
-					if (selectedSet.nodeType.equals(NodeType.ROW)) {
-						biclustersFound +=
-								bkv2(newselected, newcheck);
-					} else {
-						biclustersFound +=
-								bkv2(newcheck, newselected);
-					}
-				}
+				addColumns(bc, selectedSet.candidates);
+				addRows(bc, newCheck.candidates);
+			}
+			if (!sink.accept(bc)) {
+				stopped = true;
+			}
+			return false;
+		}
+
+		boolean hasCandidatesPivot = newCandidatesSelected > 0;
+		boolean hasCandidatesCheck = newCandidatesCheck > 0;
+
+		if ((hasCandidatesPivot && hasCandidatesCheck)
+				|| // we have candidates in rows and cols
+				(hasCandidatesPivot && !hasCandidatesCheck
+						&& hasOtherNodes && newNotSelected == 0)
+						|| (hasCandidatesCheck && !hasCandidatesPivot && newNotCheck == 0)) {
+			// Update X and P for the set which contains the
+			// selected node.
+			if (selectionIsRow) {
+				rowsAt(depth + 1).copyOf(selectedSet);
+			} else {
+				colsAt(depth + 1).copyOf(selectedSet);
 			}
+			return true;
 		}
+		return false;
+	}
+
+	/**
+	 * Moves 'sel' from the P to the X of selectedSet without
+	 * extending the selection, e.g. because all biclusters containing
+	 * it were found in a previous run.
+	 */
+	protected void skipSelection(Nodes selectedSet, int sel) {
+		selectedSet.removeCandidate(sel);
+		selectedSet.addNot(sel);
+	}
 
-		switch (selectedSet.nodeType) {
-		case ROW:
-			compsubRows.remove(compsubRows.size() - 1);
+	/**
+	 * Returns true if the enumeration was stopped by the sink or by
+	 * the maximal number of biclusters.
+	 */
+	protected boolean isInterrupted() {
+		return stopped || numBiclusters >= maxBiclusters;
+	}
+
+	/**
+	 * Removes 'sel' from R again and adds it to the X of
+	 * selectedSet.
+	 */
+	private void leaveSelection(Nodes selectedSet, int sel) {
+		if (selectedSet.nodeType == NodeType.ROW) {
 			cntRowsInClique--;
-			break;
-		case COL:
-			compsubCols.remove(compsubCols.size() - 1);
+		} else {
 			cntColsInClique--;
-			break;
-		default:
-			break;
 		}
+		selectedSet.addNot(sel);
+	}
 
-		selectedSet.notEnd++;
-		return biclustersFound;
+	private void addRows(Bicluster bc, long[] rows) {
+		for (int r = BitUtils.nextSetBit(rows, 0); r > -1; r =
+				BitUtils.nextSetBit(rows, r + 1)) {
+			bc.addRow(rowMapId[r]);
+		}
+	}
+
+	private void addColumns(Bicluster bc, long[] columns) {
+		for (int c = BitUtils.nextSetBit(columns, 0); c > -1; c =
+				BitUtils.nextSetBit(columns, c + 1)) {
+			bc.addColumn(colMapId[c]);
+		}
 	}
 
 	@Override
@@ -413,4 +567,4 @@ BronKerboschBipartite {
 		this.maxBiclusters = maxBiclusters;
 	}
 
-}
+}
\ No newline at end of file
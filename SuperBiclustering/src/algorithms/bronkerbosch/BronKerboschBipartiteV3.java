@@ -21,20 +21,31 @@ package algorithms.bronkerbosch;
 
 public class BronKerboschBipartiteV3 extends BronKerboschBipartiteV2 {
 
+	// finished nodes of a previous run, may be null
+	private EnumerationCheckpoint checkpoint;
+
+	/**
+	 * Nodes that are done in 'checkpoint' are skipped and every node
+	 * is marked as done in it once all biclusters containing the
+	 * node were found. The checkpoint should be the sink of the
+	 * enumeration so that it holds these biclusters.
+	 */
+	public BronKerboschBipartiteV3 setCheckpoint(
+			EnumerationCheckpoint checkpoint) {
+		this.checkpoint = checkpoint;
+		return this;
+	}
+
 	@Override
 	protected void findBiclusters() {
 
 		int[] vert =
 				DegeneracyOrdering.orderGraph(inputMatrix, true);
 
-		// row nodes have indices between [0, numberOfRows) in vert
-		Nodes rowsData =
-				new Nodes(NodeType.ROW, numRows, vert, 0, numRows);
-		// col nodes have indices between [numberOfRows, numberOfRows
-		// + numberOfColumns) in vert
-		Nodes colsData =
-				new Nodes(NodeType.COL, numCols, vert, numRows,
-						numRows + numCols);
+		// the level 0 X u P hold all rows and columns; nodes are
+		// extended in degeneracy order
+		Nodes rowsData = rowsAt(0);
+		Nodes colsData = colsAt(0);
 
 		bkv3(rowsData, colsData, vert);
 	}
@@ -43,15 +54,32 @@ public class BronKerboschBipartiteV3 extends BronKerboschBipartiteV2 {
 	 * Main call of the Bron-Kerbosch Algorithm (Version 3).
 	 */
 	private void bkv3(Nodes rowsData, Nodes colsData, int[] vert) {
-		int idrow = 0;
-		int idcol = 0;
-		for (int v = 0; v < vert.length; ++v) {
+		// row nodes have indices between [0, numberOfRows) in vert,
+		// col nodes between [numberOfRows, numberOfRows +
+		// numberOfColumns)
+		for (int v = 0; v < vert.length && !stopped; ++v) {
 			if (vert[v] < numRows) {
-				extendSelection(rowsData, colsData, idrow);
-				idrow++;
+				int row = vert[v];
+				if (checkpoint != null
+						&& checkpoint.isRowDone(rowMapId[row])) {
+					skipSelection(rowsData, row);
+					continue;
+				}
+				extendSelection(rowsData, colsData, row);
+				if (checkpoint != null && !isInterrupted()) {
+					checkpoint.markRowDone(rowMapId[row]);
+				}
 			} else {
-				extendSelection(colsData, rowsData, idcol);
-				idcol++;
+				int col = vert[v] - numRows;
+				if (checkpoint != null
+						&& checkpoint.isColumnDone(colMapId[col])) {
+					skipSelection(colsData, col);
+					continue;
+				}
+				extendSelection(colsData, rowsData, col);
+				if (checkpoint != null && !isInterrupted()) {
+					checkpoint.markColumnDone(colMapId[col]);
+				}
 			}
 		}
 	}
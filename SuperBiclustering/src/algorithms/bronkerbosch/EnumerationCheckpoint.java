@@ -0,0 +1,419 @@
+/* Bimax 2 - A biclustering algorithm based on the Bron-Kerbosch
+ * Maximal Clique Enumeration Algorithm.
+ * Copyright (C) 2014 Oliver Voggenreiter
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package algorithms.bronkerbosch;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.util.AbstractCollection;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import datatype.bicluster.Bicluster;
+import datatype.bicluster.BitSetBicluster;
+import datatype.matrix.BinaryMatrix;
+import datatype.matrix.PackedBinaryMatrix;
+
+/**
+ * Checkpoint of an enumeration that extends the nodes of the input
+ * matrix one after another (see BronKerboschBipartiteV3). The
+ * biclusters are appended to a text file as they are found and a
+ * node is marked as done once all biclusters containing it have been
+ * written. When resuming, the biclusters of finished nodes are
+ * restored and the finished nodes can be skipped; biclusters written
+ * after the last finished node are discarded since their node is
+ * enumerated again.
+ *
+ * The biclusters are not kept in memory; getBiclusters() reads them
+ * back from the file once the enumeration is finished. If the file
+ * cannot be written, the enumeration is stopped, since its biclusters
+ * would be lost.
+ *
+ * Format, one record per line, separated by tabs:
+ *
+ * <pre>
+ * M numRows numColumns matrixHash parameters
+ * B row,row,... column,column,...
+ * R row
+ * C column
+ * </pre>
+ *
+ * The header identifies the run by the size and a hash of the ones of
+ * the matrix and by the enumeration parameters; a checkpoint of any
+ * other run is not resumed. The file is written as ASCII, so every
+ * character of a line is one byte.
+ */
+public class EnumerationCheckpoint implements BiclusterSink {
+
+	private static final Logger LOGGER = LoggerFactory
+			.getLogger(EnumerationCheckpoint.class);
+
+	private static final String CHARSET = "US-ASCII";
+
+	private final String filename;
+	private final BitSet doneRows = new BitSet();
+	private final BitSet doneColumns = new BitSet();
+	private int biclusterCount = 0;
+	private BufferedWriter writer;
+	private boolean failed = false;
+
+	/**
+	 * Opens the checkpoint file for enumerating 'matrix' with the
+	 * given 'parameters' (plain ASCII without tabs). If 'resume' is
+	 * set and the file exists, its finished nodes and their
+	 * biclusters are restored, otherwise a new file is started.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the existing checkpoint belongs to another matrix
+	 *             or other parameters
+	 */
+	public EnumerationCheckpoint(String filename, boolean resume,
+			BinaryMatrix matrix, String parameters) throws IOException {
+		if (filename == null) {
+			throw new NullPointerException("Checkpoint file was null!");
+		}
+		this.filename = filename;
+		String header =
+				String.format("M\t%d\t%d\t%016x\t%s", matrix
+						.getNumRows(), matrix.getNumColumns(),
+						getMatrixHash(matrix), parameters);
+		if (resume && new File(filename).exists()) {
+			long committed = restore(header);
+			// drop the records of the node that was not finished
+			RandomAccessFile file =
+					new RandomAccessFile(filename, "rw");
+			try {
+				file.setLength(committed);
+			} finally {
+				file.close();
+			}
+			writer = openWriter(true);
+			if (committed == 0) {
+				writeLine(header);
+			}
+			LOGGER.info(String.format(
+					"Resumed %1d biclusters and %1d/%1d finished rows/columns from %s",
+					biclusterCount, doneRows.cardinality(),
+					doneColumns.cardinality(), filename));
+		} else {
+			writer = openWriter(false);
+			writeLine(header);
+		}
+		writer.flush();
+	}
+
+	private BufferedWriter openWriter(boolean append)
+			throws IOException {
+		return new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(filename, append), CHARSET));
+	}
+
+	/**
+	 * Hashes the ones of 'matrix' row by row.
+	 */
+	private static long getMatrixHash(BinaryMatrix matrix) {
+		PackedBinaryMatrix packed = PackedBinaryMatrix.pack(matrix);
+		long hash = 0xcbf29ce484222325L;
+		for (int row = 0; row < packed.getNumRows(); row++) {
+			for (long word : packed.getRowWords(row)) {
+				hash = (hash ^ word) * 0x100000001b3L;
+				hash ^= hash >>> 29;
+			}
+			hash = (hash ^ row) * 0x100000001b3L;
+		}
+		return hash;
+	}
+
+	/**
+	 * Reads the checkpoint and returns the length of the file up to
+	 * the last finished node.
+	 */
+	private long restore(String header) throws IOException {
+		int pending = 0;
+		long committed = 0;
+		long offset = 0;
+		long length = new File(filename).length();
+		BufferedReader reader =
+				new BufferedReader(new InputStreamReader(
+						new FileInputStream(filename), CHARSET));
+		try {
+			String line = reader.readLine();
+			if (line == null) {
+				return 0;
+			}
+			if (!line.equals(header)) {
+				throw new IllegalArgumentException(String.format(
+						"Checkpoint %s does not belong to this matrix and these parameters.",
+						filename));
+			}
+			// one byte per character plus the line feed
+			offset += line.length() + 1;
+			committed = offset;
+			while ((line = reader.readLine()) != null) {
+				offset += line.length() + 1;
+				if (offset > length) {
+					// incomplete last line
+					break;
+				}
+				String[] fields = line.split("\t", -1);
+				if (fields[0].equals("B") && fields.length == 3) {
+					// only checked here, getBiclusters() reads it again
+					parseBicluster(fields[1], fields[2]);
+					pending++;
+				} else if (fields[0].equals("R") && fields.length == 2) {
+					doneRows.set(Integer.parseInt(fields[1]));
+				} else if (fields[0].equals("C") && fields.length == 2) {
+					doneColumns.set(Integer.parseInt(fields[1]));
+				} else {
+					throw new NumberFormatException(line);
+				}
+				if (!fields[0].equals("B")) {
+					biclusterCount += pending;
+					pending = 0;
+					committed = offset;
+				}
+			}
+		} catch (NumberFormatException e) {
+			LOGGER.error(String.format(
+					"Checkpoint %s is corrupt after byte %1d.",
+					filename, committed));
+		} finally {
+			reader.close();
+		}
+		return committed;
+	}
+
+	private Bicluster parseBicluster(String rows, String columns) {
+		Bicluster bicluster = new BitSetBicluster();
+		if (!rows.isEmpty()) {
+			for (String row : rows.split(",")) {
+				bicluster.addRow(Integer.parseInt(row));
+			}
+		}
+		if (!columns.isEmpty()) {
+			for (String column : columns.split(",")) {
+				bicluster.addColumn(Integer.parseInt(column));
+			}
+		}
+		return bicluster;
+	}
+
+	/**
+	 * Returns true if all biclusters containing the row (index in
+	 * the input matrix) have been written.
+	 */
+	public boolean isRowDone(int row) {
+		return doneRows.get(row);
+	}
+
+	/**
+	 * Returns true if all biclusters containing the column (index in
+	 * the input matrix) have been written.
+	 */
+	public boolean isColumnDone(int column) {
+		return doneColumns.get(column);
+	}
+
+	/**
+	 * Returns the restored biclusters followed by all biclusters
+	 * accepted since. They are read from the file whenever the
+	 * collection is iterated, so it must only be used after close().
+	 *
+	 * @throws IllegalStateException
+	 *             if writing the checkpoint failed
+	 */
+	public Collection<Bicluster> getBiclusters() {
+		if (failed) {
+			throw new IllegalStateException(String.format(
+					"Checkpoint %s could not be written, its biclusters are incomplete.",
+					filename));
+		}
+		return new AbstractCollection<Bicluster>() {
+
+			@Override
+			public Iterator<Bicluster> iterator() {
+				return new BiclusterIterator();
+			}
+
+			@Override
+			public int size() {
+				return biclusterCount;
+			}
+
+		};
+	}
+
+	/**
+	 * Returns false, which stops the enumeration, once the checkpoint
+	 * can no longer be written.
+	 */
+	@Override
+	public boolean accept(Bicluster bicluster) {
+		biclusterCount++;
+		StringBuilder line = new StringBuilder("B\t");
+		appendIndices(line, bicluster.getRowIterator());
+		line.append('\t');
+		appendIndices(line, bicluster.getColumnIterator());
+		writeLine(line.toString());
+		return !failed;
+	}
+
+	private void appendIndices(StringBuilder line,
+			Iterator<Integer> indices) {
+		while (indices.hasNext()) {
+			line.append(indices.next());
+			if (indices.hasNext()) {
+				line.append(',');
+			}
+		}
+	}
+
+	public void markRowDone(int row) {
+		doneRows.set(row);
+		writeLine("R\t" + row);
+		flush();
+	}
+
+	public void markColumnDone(int column) {
+		doneColumns.set(column);
+		writeLine("C\t" + column);
+		flush();
+	}
+
+	private void writeLine(String line) {
+		if (writer == null) {
+			return;
+		}
+		try {
+			writer.write(line);
+			writer.write('\n');
+		} catch (IOException e) {
+			failed(e);
+		}
+	}
+
+	private void flush() {
+		if (writer == null) {
+			return;
+		}
+		try {
+			writer.flush();
+		} catch (IOException e) {
+			failed(e);
+		}
+	}
+
+	/**
+	 * Stops writing the checkpoint after an IO error.
+	 */
+	private void failed(IOException e) {
+		LOGGER.error(String.format(
+				"Failed to write checkpoint %s, enumeration stopped.",
+				filename), e);
+		writer = null;
+		failed = true;
+	}
+
+	public void close() {
+		if (writer == null) {
+			return;
+		}
+		try {
+			writer.close();
+		} catch (IOException e) {
+			failed(e);
+		}
+		writer = null;
+	}
+
+	/**
+	 * Reads the biclusters of the checkpoint file one line at a time.
+	 */
+	private class BiclusterIterator implements Iterator<Bicluster> {
+		private BufferedReader reader;
+		private Bicluster next;
+
+		public BiclusterIterator() {
+			try {
+				reader =
+						new BufferedReader(new InputStreamReader(
+								new FileInputStream(filename), CHARSET));
+				// the header
+				reader.readLine();
+			} catch (IOException e) {
+				throw readFailed(e);
+			}
+			next = readNext();
+		}
+
+		private Bicluster readNext() {
+			try {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					String[] fields = line.split("\t", -1);
+					if (fields[0].equals("B")) {
+						return parseBicluster(fields[1], fields[2]);
+					}
+				}
+				reader.close();
+				return null;
+			} catch (IOException e) {
+				throw readFailed(e);
+			}
+		}
+
+		private IllegalStateException readFailed(IOException e) {
+			return new IllegalStateException(String.format(
+					"Failed to read checkpoint %s.", filename), e);
+		}
+
+		@Override
+		public boolean hasNext() {
+			return next != null;
+		}
+
+		@Override
+		public Bicluster next() {
+			if (next == null) {
+				throw new NoSuchElementException();
+			}
+			Bicluster bicluster = next;
+			next = readNext();
+			return bicluster;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+}
@@ -19,85 +19,86 @@
 
 package algorithms.bronkerbosch;
 
-import java.util.BitSet;
+import util.BitUtils;
 
 /**
  * Class for storing the set of nodes in X u P (corresponding to rows
- * or to columns).
+ * or to columns). Both sets are kept as bit sets over the node
+ * indices so that they can be intersected with the neighbourhood of
+ * a node one word at a time.
  **/
-public class Nodes implements Cloneable {
+public class Nodes {
 
-	public NodeType nodeType;
+	public final NodeType nodeType;
 	/**
-	 * The nodes in X u P are stored in an array. [0,...,notEnd_-1]
-	 * are the nodes in X, [notEnd_,...,candidatesEnd_-1] are the
-	 * nodes in P.
+	 * The nodes in X, i.e. nodes that were already processed and may
+	 * not be added to the current selection anymore.
 	 */
-	public int[] nodes;
-	public int notEnd;
-	public int candidatesEnd;
-
-	public Nodes(NodeType nodeType, int[] nodes,
-			int candidateEndPivot, int notEndPivot) {
-		this.nodeType = nodeType;
-		this.nodes = nodes;
-		this.notEnd = notEndPivot;
-		this.candidatesEnd = candidateEndPivot;
-	}
+	public final long[] not;
+	/**
+	 * The nodes in P, i.e. the candidates for extending the current
+	 * selection.
+	 */
+	public final long[] candidates;
+	// cached cardinalities of X and P
+	public int notCount;
+	public int candidatesCount;
 
 	/**
-	 * Constructor which is called only in the beginning, before the
-	 * first call to bkv2(..)
-	 * */
+	 * Creates an empty set of X u P for 'numNodes' nodes. Instances
+	 * are allocated once per recursion depth and reused afterwards.
+	 */
 	public Nodes(NodeType nodeType, int numNodes) {
 		this.nodeType = nodeType;
-		this.notEnd = 0;
-		this.candidatesEnd = numNodes;
+		this.not = BitUtils.newWords(numNodes);
+		this.candidates = BitUtils.newWords(numNodes);
+	}
 
-		nodes = new int[numNodes];
-		for (int n = 0; n < numNodes; ++n) {
-			nodes[n] = n;
-		}
+	/**
+	 * Resets the sets such that X is empty and P contains all nodes.
+	 * This is called only in the beginning, before the first call to
+	 * bkv2(..) or bkv3(..).
+	 */
+	public void reset(int numNodes) {
+		BitUtils.setRange(not, 0);
+		BitUtils.setRange(candidates, numNodes);
+		notCount = 0;
+		candidatesCount = numNodes;
 	}
 
 	/**
-	 * Constructor which is called only in the beginning, before the
-	 * first call to bkv3(..)
+	 * Overwrites this X u P with a copy of 'other'.
 	 */
-	public Nodes(NodeType nodeType, int numNodes, int[] vert,
-			int first, int last) {
-		this.nodeType = nodeType;
-		this.notEnd = 0;
-		this.candidatesEnd = numNodes;
+	public void copyOf(Nodes other) {
+		System.arraycopy(other.not, 0, not, 0, not.length);
+		System.arraycopy(other.candidates, 0, candidates, 0,
+				candidates.length);
+		notCount = other.notCount;
+		candidatesCount = other.candidatesCount;
+	}
 
-		nodes = new int[numNodes];
-		int id = 0;
-		for (int n = 0; n < vert.length; ++n) {
-			if (first <= vert[n] && vert[n] < last) {
-				nodes[id] = vert[n] - first;
-				id++;
-			}
-		}
+	/**
+	 * Overwrites this X u P with the intersection of 'other' and the
+	 * neighbours of a node.
+	 */
+	public void intersect(Nodes other, long[] neighbours) {
+		notCount = BitUtils.and(not, other.not, neighbours);
+		candidatesCount =
+				BitUtils.and(candidates, other.candidates, neighbours);
 	}
 
-	Nodes(NodeType nodeType, int numNodes, BitSet consideredNodes) {
-		this.nodeType = nodeType;
-		this.notEnd = 0;
-		this.candidatesEnd = numNodes;
+	public void removeCandidate(int node) {
+		BitUtils.clear(candidates, node);
+		candidatesCount--;
+	}
 
-		nodes = new int[numNodes];
-		int id = 0;
-		for (int n = consideredNodes.nextSetBit(0); n > -1; n =
-				consideredNodes.nextSetBit(n + 1)) {
-			nodes[id] = n;
-			id++;
-		}
+	public void addNot(int node) {
+		BitUtils.set(not, node);
+		notCount++;
 	}
 
-	@Override
-	public Nodes clone() {
-		return new Nodes(nodeType, nodes.clone(), candidatesEnd,
-				notEnd);
+	public boolean hasCandidates() {
+		return candidatesCount > 0;
 	}
 
 }
@@ -19,7 +19,7 @@
 
 package algorithms.bronkerbosch;
 
-import datatype.matrix.BinaryMatrix;
+import util.BitUtils;
 
 /**
  * The class is used for storing the indices that are computed in the
@@ -27,7 +27,7 @@ import datatype.matrix.BinaryMatrix;
  * */
 public class Pivot {
 
-	private final static int MAX_DISCONNECTIONS = 30000;
+	private final static int MAX_DISCONNECTIONS = Integer.MAX_VALUE;
 
 	/**
 	 * Minimum number of disconnections that a node in X u P has. The
@@ -54,10 +54,9 @@ public class Pivot {
 	public int pivot = -1;
 
 	/**
-	 * The variable can have the value 0 or 1. If the value is 0, the
-	 * pivot was chosen from the X. If the value is 1, the pivot was
-	 * chosen from P and needs to be first added to be first extended
-	 * and then added to set X.
+	 * If false, the pivot was chosen from X. If true, the pivot was
+	 * chosen from P and needs to be first extended and then added to
+	 * set X.
 	 */
 	public boolean pivotFromP = false;
 
@@ -66,63 +65,59 @@ public class Pivot {
 	// type of the pivot node (ROW or COL)
 	public NodeType pivotType;
 
+	/**
+	 * Resets the pivot so that the instance can be reused for the
+	 * next recursion step.
+	 */
+	public void reset() {
+		minDisconnections = MAX_DISCONNECTIONS;
+		selectedNode = -1;
+		pivot = -1;
+		pivotFromP = false;
+		selType = null;
+		pivotType = null;
+	}
+
 	/**
 	 * This method is called only if we still have elements in
-	 * setCheckDisconnections. Ouput: The method updates the
-	 * BKIndices structure which contains bk.minnod = minimum number
-	 * of disconnections bk.selectedNode = index of the selected
-	 * node; bk.pivot = index of the selected node; bk.node = 0 or 1;
-	 * The node is 0 if the pivot is from X, or 1 otherwise.
+	 * setCheckDisconnections. The disconnections of a possible pivot
+	 * p are the popcount of (P AND NOT neighbours(p)), where P are
+	 * the candidates of setCheckDisconnections and 'neighbours' holds
+	 * the adjacency words of the possible pivots. Nodes in X are
+	 * considered before nodes in P.
 	 */
 	public void findPivot(Nodes setPossiblePivots,
-			Nodes setCheckDisconnections,
-			BinaryMatrix preprocessedMatrix) {
-		int count;
-		int pos = 0;
-		int p;
-		boolean pivotIsRow = false;
-		if (setPossiblePivots.nodeType.equals(NodeType.ROW)) {
-			pivotIsRow = true;
-		}
-		// iterate over X u P in rows
-		for (int i = 0; i < setPossiblePivots.candidatesEnd
-				&& minDisconnections != 0; i++) {
-			p = setPossiblePivots.nodes[i];
-			count = 0;
-			// find the disconections in P cols
-			for (int j = setCheckDisconnections.notEnd; j < setCheckDisconnections.candidatesEnd
-					&& count < minDisconnections; j++) {
-				// if it is a row
-				if (pivotIsRow) {
-					if (preprocessedMatrix.get(p,
-							setCheckDisconnections.nodes[j]) == false) {
-						count++;
-						pos = j;
-					}
-				} else {
-					if (preprocessedMatrix.get(
-							setCheckDisconnections.nodes[j], p) == false) {
-						count++;
-						pos = j;
-					}
-				}
-			}
+			Nodes setCheckDisconnections, long[][] neighbours) {
+		findPivot(setPossiblePivots, setPossiblePivots.not, false,
+				setCheckDisconnections, neighbours);
+		findPivot(setPossiblePivots, setPossiblePivots.candidates,
+				true, setCheckDisconnections, neighbours);
+	}
+
+	private void findPivot(Nodes setPossiblePivots,
+			long[] possiblePivots, boolean fromP,
+			Nodes setCheckDisconnections, long[][] neighbours) {
+		long[] checkCandidates = setCheckDisconnections.candidates;
+		for (int p = BitUtils.nextSetBit(possiblePivots, 0); p > -1
+				&& minDisconnections != 0; p =
+				BitUtils.nextSetBit(possiblePivots, p + 1)) {
+			int count =
+					BitUtils.cardinalityAndNot(checkCandidates,
+							neighbours[p]);
 			if (count < minDisconnections) {
 				pivot = p;
 				minDisconnections = count;
 				pivotType = setPossiblePivots.nodeType;
-				if (i < setPossiblePivots.notEnd) {
+				pivotFromP = fromP;
+				if (fromP) {
+					// the selected node is from the pivot set
+					selectedNode = p;
+					selType = setPossiblePivots.nodeType;
+				} else {
 					// the selected node is from the checkSet (e.g
 					// first non neighbor)
-					selectedNode = pos;
+					selectedNode = -1;
 					selType = setCheckDisconnections.nodeType;
-					pivotFromP = false;
-				} else {
-					// the selected node is from the pivot set
-					selectedNode = i;
-					pivotFromP = true;
-					selType = setPossiblePivots.nodeType;
-					;
 				}
 			}
 		}
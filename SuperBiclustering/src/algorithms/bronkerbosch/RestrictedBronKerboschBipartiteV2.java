@@ -23,12 +23,15 @@ import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.List;
 
+import util.BitUtils;
 import datatype.bicluster.Bicluster;
 import datatype.bicluster.BitSetBicluster;
 import datatype.matrix.BinaryMatrix;
+import datatype.matrix.PackedBinaryMatrix;
 
 /**
- * Bron-Kerbosch algorithm V2 adapted for bipartite graphs.
+ * Bron-Kerbosch algorithm V2 adapted for bipartite graphs. X and P
+ * are kept as bit sets, see BronKerboschBipartiteV2.
  */
 public class RestrictedBronKerboschBipartiteV2 implements
 BronKerboschBipartite {
@@ -43,12 +46,32 @@ BronKerboschBipartite {
 	// Preprocessed adjacency matrix
 	protected BinaryMatrix inputMatrix;
 
+	// Adjacency of the preprocessed matrix as bit sets: the columns
+	// connected to each row and the rows connected to each column
+	protected long[][] rowNeighbours;
+	protected long[][] colNeighbours;
+
 	protected int minRows; // minimum nbr of rows in a bicluster
 	protected int minCols; // minimum nbr of cols in a bicluster
 
 	// if false, only the number of biclusters is kept.
 	private boolean saveBiclusters = false;
 
+	// receives the biclusters if they are saved
+	private BiclusterSink sink;
+
+	// set when the sink asked to stop the enumeration
+	protected boolean stopped = false;
+
+	// default sink that collects the biclusters in the list
+	private final BiclusterSink listSink = new BiclusterSink() {
+		@Override
+		public boolean accept(Bicluster bicluster) {
+			biclusters.add(bicluster);
+			return true;
+		}
+	};
+
 	// Mapping of the indices from the reduced 2D matrix to the
 	// initial 2D matrix
 	protected int[] rowMapId;
@@ -59,10 +82,27 @@ BronKerboschBipartite {
 	protected int cntRowsInClique = 0;
 	protected int cntColsInClique = 0;
 
-	// The arrays grow dynamically and represent set R for rows and
-	// respectively columns.
-	private List<Integer> compsubRows = new ArrayList<Integer>();
-	private List<Integer> compsubCols = new ArrayList<Integer>();
+	// Represent set R for rows and respectively columns, filled up
+	// to cntRowsInClique and cntColsInClique
+	private int[] compsubRows;
+	private int[] compsubCols;
+
+	// X u P of rows and columns for each recursion depth
+	protected Nodes[] rowsStack;
+	protected Nodes[] colsStack;
+	// Pivot and non-neighbours of the pivot for each recursion depth
+	private Pivot[] pivotStack;
+	private long[][] nonNeighboursStack;
+
+	// Search frames: the stage and level of the frame on each depth
+	// and the node it is currently extending with
+	private static final int FRAME_START = 0;
+	private static final int FRAME_NON_NEIGHBOURS = 1;
+	private static final int FRAME_NEXT = 2;
+	private int[] frameStage;
+	private int[] frameLevel;
+	private int[] frameSelection;
+	private boolean[] frameSelectionIsRow;
 
 	protected List<Bicluster> biclusters =
 			new ArrayList<Bicluster>();
@@ -94,12 +134,43 @@ BronKerboschBipartite {
 	public List<Bicluster> findBiclusters(
 			BinaryMatrix connectivityMatrix, BitSet requiredRows,
 			BitSet requiredCols) {
+		this.sink = listSink;
+		enumerate(connectivityMatrix, requiredRows, requiredCols);
+		return biclusters;
+	}
+
+	/**
+	 * Streams the biclusters to 'sink'. Unlike the list based
+	 * methods, the biclusters are always built when a sink is given.
+	 */
+	@Override
+	public long findBiclusters(BinaryMatrix connectivityMatrix,
+			BitSet requiredRows, BitSet requiredCols,
+			BiclusterSink sink) {
+		if (sink == null) {
+			throw new IllegalArgumentException(
+					"sink must not be null");
+		}
+		boolean save = saveBiclusters;
+		this.sink = sink;
+		this.saveBiclusters = true;
+		try {
+			enumerate(connectivityMatrix, requiredRows,
+					requiredCols);
+		} finally {
+			this.saveBiclusters = save;
+		}
+		return numBiclusters;
+	}
+
+	private void enumerate(BinaryMatrix connectivityMatrix,
+			BitSet requiredRows, BitSet requiredCols) {
+		this.stopped = false;
 		boolean validInput =
 				init(connectivityMatrix, requiredRows, requiredCols);
 		if (validInput) {
 			findMaxCliques();
 		}
-		return biclusters;
 	}
 
 	private boolean init(BinaryMatrix connectivityMatrix,
@@ -135,346 +206,351 @@ BronKerboschBipartite {
 		if (inputMatrix != null) {
 			numRows = inputMatrix.getNumRows();
 			numCols = inputMatrix.getNumColumns();
+			initializeSearch();
 		}
 		return inputMatrix != null;
 	}
 
-	protected void findMaxCliques() {
-		Nodes rowsData = new Nodes(NodeType.ROW, numRows);
-		Nodes colsData = new Nodes(NodeType.COL, numCols);
-		bkv2(rowsData, colsData, 0);
-	}
-
 	/**
-	 * Main recursive call of algorithm. Prerequisite: there are more
-	 * candidate nodes in rows or columns (not necessarily in both)
+	 * Builds the bit set adjacency of the preprocessed matrix and
+	 * the per-depth stacks; depth 0 holds X = {} and P = all nodes.
 	 */
-	private long bkv2(Nodes rowsData, Nodes colsData,
-			int level) {
+	private void initializeSearch() {
+		// the preprocessed matrix is packed already
+		PackedBinaryMatrix rowsMatrix =
+				PackedBinaryMatrix.pack(inputMatrix);
+		PackedBinaryMatrix colsMatrix = rowsMatrix.getTransposed();
+		rowNeighbours = new long[numRows][];
+		colNeighbours = new long[numCols][];
+		for (int r = 0; r < numRows; ++r) {
+			rowNeighbours[r] = rowsMatrix.getRowWords(r);
+		}
+		for (int c = 0; c < numCols; ++c) {
+			colNeighbours[c] = colsMatrix.getRowWords(c);
+		}
+
+		int maxDepth = numRows + numCols + 1;
+		rowsStack = new Nodes[maxDepth];
+		colsStack = new Nodes[maxDepth];
+		pivotStack = new Pivot[maxDepth];
+		nonNeighboursStack = new long[maxDepth][];
+		frameStage = new int[maxDepth];
+		frameLevel = new int[maxDepth];
+		frameSelection = new int[maxDepth];
+		frameSelectionIsRow = new boolean[maxDepth];
+		compsubRows = new int[numRows];
+		compsubCols = new int[numCols];
+		cntRowsInClique = 0;
+		cntColsInClique = 0;
+
+		rowsAt(0).reset(numRows);
+		colsAt(0).reset(numCols);
+	}
 
-		// abort algorithm when maximal number of biclusters is
-		// exceeded
-		if (maxBiclusters > 0 && numBiclusters > maxBiclusters) {
-			return 0;
+	protected Nodes rowsAt(int depth) {
+		if (rowsStack[depth] == null) {
+			rowsStack[depth] = new Nodes(NodeType.ROW, numRows);
 		}
+		return rowsStack[depth];
+	}
 
-		long biclustersFound = 0;
-		Pivot pivot = new Pivot();
-		// minDisconnections can not be greater than
-		// MAXDISCONNECTIONS
-		// In constructor:
-		/*
-		 * bk.minDisconnections = MAXDISCONNECTIONS; // 30000
-		 * bk.selectedNode = -1; bk.pivot = -1; bk.node = 0;
-		 * bk.selType = null; bk.pivotType = null;
-		 */
-
-		if (colsData.candidatesEnd > colsData.notEnd
-				&& rowsData.candidatesEnd > rowsData.notEnd) {
-			// look if pivot can be row
-			pivot.findPivot(rowsData, colsData, inputMatrix);
-			// look if pivot can be column
-			pivot.findPivot(colsData, rowsData, inputMatrix);
-		} else if (colsData.candidatesEnd <= colsData.notEnd) {
-			// if columns have no candidates, and rows have
-			// candidates choose pivot from rows only
-			pivot.findPivot(rowsData, colsData, inputMatrix);
-		} else if (rowsData.candidatesEnd <= rowsData.notEnd) {
-			pivot.findPivot(colsData, rowsData, inputMatrix);
+	protected Nodes colsAt(int depth) {
+		if (colsStack[depth] == null) {
+			colsStack[depth] = new Nodes(NodeType.COL, numCols);
 		}
+		return colsStack[depth];
+	}
 
-		int selectedNode = pivot.selectedNode;
-		int node;
+	private Pivot pivotAt(int depth) {
+		if (pivotStack[depth] == null) {
+			pivotStack[depth] = new Pivot();
+		}
+		pivotStack[depth].reset();
+		return pivotStack[depth];
+	}
 
-		if (pivot.pivotFromP == true) {
-			if (pivot.selType.equals(NodeType.ROW)) {
-				biclustersFound +=
-						extendSelection(rowsData, colsData,
-								selectedNode, level + 1);
-			} else {
-				biclustersFound +=
-						extendSelection(colsData, rowsData,
-								selectedNode, level + 1);
-			}
+	private long[] nonNeighboursAt(int depth) {
+		if (nonNeighboursStack[depth] == null) {
+			nonNeighboursStack[depth] =
+					BitUtils.newWords(Math.max(numRows, numCols));
 		}
-		if (pivot.pivotType.equals(NodeType.ROW)) {
-			for (node = pivot.minDisconnections; node >= 1; node--) {
-				for (selectedNode = colsData.notEnd; selectedNode < colsData.candidatesEnd
-						&& inputMatrix.get(pivot.pivot,
-								colsData.nodes[selectedNode]); selectedNode++) {
-					;
+		return nonNeighboursStack[depth];
+	}
+
+	protected void findMaxCliques() {
+		startFrame(0, 0);
+		runFrames(0);
+	}
+
+	private void startFrame(int depth, int level) {
+		frameStage[depth] = FRAME_START;
+		frameLevel[depth] = level;
+	}
+
+	/**
+	 * Runs the search frames iteratively, starting with the frame on
+	 * 'baseDepth', until that frame is exhausted. A frame corresponds
+	 * to one recursive call of the algorithm.
+	 */
+	private void runFrames(int baseDepth) {
+		int depth = baseDepth;
+		while (depth >= baseDepth) {
+			Nodes rowsData = rowsStack[depth];
+			Nodes colsData = colsStack[depth];
+			int level = frameLevel[depth] + 1;
+			int sel = nextSelection(depth, rowsData, colsData);
+			if (sel < 0) {
+				// frame exhausted, finish the selection of the parent
+				depth--;
+				if (depth >= baseDepth) {
+					leaveSelection(
+							frameSelectionIsRow[depth] ? rowsStack[depth]
+									: colsStack[depth],
+									frameSelection[depth]);
 				}
-				biclustersFound +=
-						extendSelection(colsData, rowsData,
-								selectedNode, level + 1);
-			}
-		} else {
-			for (node = pivot.minDisconnections; node >= 1; node--) {
-				for (selectedNode = rowsData.notEnd; selectedNode < rowsData.candidatesEnd
-						&& inputMatrix.get(
-								rowsData.nodes[selectedNode],
-								pivot.pivot); selectedNode++) {
-					;
+			} else if (frameSelectionIsRow[depth]) {
+				if (enterSelection(rowsData, colsData, sel, level)) {
+					startFrame(++depth, level + 1);
+				} else {
+					leaveSelection(rowsData, sel);
+				}
+			} else {
+				if (enterSelection(colsData, rowsData, sel, level)) {
+					startFrame(++depth, level + 1);
+				} else {
+					leaveSelection(colsData, sel);
 				}
-				biclustersFound +=
-						extendSelection(rowsData, colsData,
-								selectedNode, level + 1);
 			}
 		}
-		return biclustersFound;
 	}
 
 	/**
-	 * This method is called only if we still have elements in
-	 * setCheckDisconnections. Ouput: The method updates the
-	 * BKIndices structure which contains bk.minnod = minimum number
-	 * of disconnections bk.selectedNode = index of the selected
-	 * node; bk.pivot = index of the selected node; bk.node = 0 or 1;
-	 * The node is 0 if the pivot is from X, or 1 otherwise.
+	 * Returns the next node the frame on 'depth' extends with, or -1
+	 * if the frame is exhausted. Prerequisite: there are more
+	 * candidate nodes in rows or columns (not necessarily in both)
 	 */
-	protected void selectPivot(Nodes setPossiblePivots,
-			Nodes setCheckDisconnections, Pivot pivot) {
-		int count;
-		int pos = 0;
-		int p;
-		boolean pivotIsRow = false;
-		if (setPossiblePivots.nodeType.equals(NodeType.ROW)) {
-			pivotIsRow = true;
-		}
-		// iterate over X u P in rows
-		for (int i = 0; i < setPossiblePivots.candidatesEnd
-				&& pivot.minDisconnections != 0; i++) {
-			p = setPossiblePivots.nodes[i];
-			count = 0;
-			// find the disconections in P cols
-			for (int j = setCheckDisconnections.notEnd; j < setCheckDisconnections.candidatesEnd
-					&& count < pivot.minDisconnections; j++) {
-				// if it is a row
-				if (pivotIsRow) {
-					if (inputMatrix.get(p,
-							setCheckDisconnections.nodes[j]) == false) {
-						count++;
-						pos = j;
-					}
-				} else {
-					if (inputMatrix.get(
-							setCheckDisconnections.nodes[j], p) == false) {
-						count++;
-						pos = j;
-					}
-				}
+	private int nextSelection(int depth, Nodes rowsData,
+			Nodes colsData) {
+		if (frameStage[depth] == FRAME_START) {
+			// abort algorithm when maximal number of biclusters is
+			// exceeded
+			if (stopped
+					|| (maxBiclusters > 0 && numBiclusters > maxBiclusters)) {
+				return -1;
 			}
-			if (count < pivot.minDisconnections) {
-				pivot.pivot = p;
-				pivot.minDisconnections = count;
-				pivot.pivotType = setPossiblePivots.nodeType;
-				if (i < setPossiblePivots.notEnd) {
-					pivot.selectedNode = pos;
-					pivot.selType = setCheckDisconnections.nodeType;
-					pivot.pivotFromP = false;
-				} else {
-					pivot.selectedNode = i;
-					pivot.pivotFromP = true;
-					pivot.selType = setPossiblePivots.nodeType;
-					;
-				}
+
+			Pivot pivot = pivotAt(depth);
+			if (colsData.hasCandidates() && rowsData.hasCandidates()) {
+				// look if pivot can be row
+				pivot.findPivot(rowsData, colsData, rowNeighbours);
+				// look if pivot can be column
+				pivot.findPivot(colsData, rowsData, colNeighbours);
+			} else if (!colsData.hasCandidates()) {
+				// if columns have no candidates, and rows have
+				// candidates choose pivot from rows only
+				pivot.findPivot(rowsData, colsData, rowNeighbours);
+			} else if (!rowsData.hasCandidates()) {
+				pivot.findPivot(colsData, rowsData, colNeighbours);
+			}
+
+			frameStage[depth] = FRAME_NON_NEIGHBOURS;
+			if (pivot.pivotFromP == true) {
+				frameSelectionIsRow[depth] =
+						pivot.selType == NodeType.ROW;
+				frameSelection[depth] = pivot.selectedNode;
+				return pivot.selectedNode;
 			}
 		}
+
+		long[] nonNeighbours = nonNeighboursAt(depth);
+		if (frameStage[depth] == FRAME_NON_NEIGHBOURS) {
+			// extend with all candidates not connected to the pivot
+			Pivot pivot = pivotStack[depth];
+			if (pivot.pivotType == NodeType.ROW) {
+				BitUtils.andNot(nonNeighbours, colsData.candidates,
+						rowNeighbours[pivot.pivot]);
+				frameSelectionIsRow[depth] = false;
+			} else {
+				BitUtils.andNot(nonNeighbours, rowsData.candidates,
+						colNeighbours[pivot.pivot]);
+				frameSelectionIsRow[depth] = true;
+			}
+			frameSelection[depth] = -1;
+			frameStage[depth] = FRAME_NEXT;
+		}
+
+		if (stopped) {
+			return -1;
+		}
+		frameSelection[depth] =
+				BitUtils.nextSetBit(nonNeighbours,
+						frameSelection[depth] + 1);
+		return frameSelection[depth];
 	}
 
 	/**
-	 * The selected node is from the set selectedSet and it will be
-	 * added to the X set. The X,P sets are updated for both rows and
-	 * columns.
+	 * The selected node 'sel' is from the P of selectedSet and it
+	 * will be added to the X set. The X,P sets are updated for both
+	 * rows and columns.
 	 */
 	protected long extendSelection(Nodes selectedSet,
-			Nodes checkSet, int s, int level) {
-		long biclustersFound = 0;
-		int p = selectedSet.nodes[s];
-		selectedSet.nodes[s] = selectedSet.nodes[selectedSet.notEnd];
-		int sel = selectedSet.nodes[selectedSet.notEnd] = p;
+			Nodes checkSet, int sel, int level) {
+		long biclustersBefore = numBiclusters;
+		int depth = cntRowsInClique + cntColsInClique;
+		if (enterSelection(selectedSet, checkSet, sel, level)) {
+			startFrame(depth + 1, level + 1);
+			runFrames(depth + 1);
+		}
+		leaveSelection(selectedSet, sel);
+		return numBiclusters - biclustersBefore;
+	}
 
-		// update the new indices
-		boolean selectionIsRow = false;
-		if (selectedSet.nodeType.equals(NodeType.ROW))
-			selectionIsRow = true;
+	/**
+	 * Adds 'sel' to R and computes the X u P of rows and columns for
+	 * the next depth. A bicluster is reported if R is maximal or the
+	 * maximal level is exceeded. Returns true if the search has to
+	 * continue on the next depth.
+	 */
+	private boolean enterSelection(Nodes selectedSet,
+			Nodes checkSet, int sel, int level) {
+		int depth = cntRowsInClique + cntColsInClique;
 
-		int[] newCheck = new int[checkSet.candidatesEnd];
-		int newNotEndCheck = 0;
-		int newCandidateEndCheck = 0;
+		// update the new indices
+		boolean selectionIsRow = selectedSet.nodeType == NodeType.ROW;
 
 		// Update X and P for the checkSet
-		switch (selectedSet.nodeType) {
-		case ROW:
-			// intersect X with neighbors of the selected node
-			for (int i = 0; i < checkSet.notEnd; i++) {
-				if (inputMatrix.get(sel, checkSet.nodes[i]))
-					newCheck[newNotEndCheck++] = checkSet.nodes[i];
-			}
-			newCandidateEndCheck = newNotEndCheck;
-			// intersect P with neighbors of the selected node
-			for (int i = checkSet.notEnd; i < checkSet.candidatesEnd; i++) {
-				if (inputMatrix.get(sel, checkSet.nodes[i]))
-					newCheck[newCandidateEndCheck++] =
-					checkSet.nodes[i];
-			}
-			break;
-		case COL:
-			// similar as above, but for columns
-			for (int i = 0; i < checkSet.notEnd; i++) {
-				if (inputMatrix.get(checkSet.nodes[i], sel))
-					newCheck[newNotEndCheck++] = checkSet.nodes[i];
-			}
-			newCandidateEndCheck = newNotEndCheck;
-			for (int i = checkSet.notEnd; i < checkSet.candidatesEnd; i++) {
-				if (inputMatrix.get(checkSet.nodes[i], sel))
-					newCheck[newCandidateEndCheck++] =
-					checkSet.nodes[i];
-			}
-			break;
-		default:
-			break;
+		Nodes newCheck;
+		if (selectionIsRow) {
+			newCheck = colsAt(depth + 1);
+			newCheck.intersect(checkSet, rowNeighbours[sel]);
+		} else {
+			newCheck = rowsAt(depth + 1);
+			newCheck.intersect(checkSet, colNeighbours[sel]);
 		}
 
-		int newNotEndSelected = selectedSet.notEnd;
-		int newCandidateEndSelected = 0;
-		if (selectedSet.candidatesEnd > 0)
-			newCandidateEndSelected = selectedSet.candidatesEnd - 1;
+		// The selected node is eliminated from P, the rest of the
+		// elements are left unchanged.
+		selectedSet.removeCandidate(sel);
+
+		int newNotSelected = selectedSet.notCount;
+		int newCandidatesSelected = selectedSet.candidatesCount;
+		int newNotCheck = newCheck.notCount;
+		int newCandidatesCheck = newCheck.candidatesCount;
 
 		boolean hasOtherNodes = false;
 		int totRows = -1;
 		int totCols = -1;
 
-		switch (selectedSet.nodeType) {
-		case ROW:
-			if (saveBiclusters)
-				compsubRows.add(sel);
-			cntRowsInClique++;
+		if (selectionIsRow) {
+			compsubRows[cntRowsInClique++] = sel;
 			hasOtherNodes = cntColsInClique > 0;
-			totRows =
-					newCandidateEndSelected - newNotEndSelected
-					+ cntRowsInClique;
-			totCols =
-					newCandidateEndCheck - newNotEndCheck
-					+ cntColsInClique;
-			break;
-		case COL:
-			if (saveBiclusters)
-				compsubCols.add(sel);
-			cntColsInClique++;
+			totRows = newCandidatesSelected + cntRowsInClique;
+			totCols = newCandidatesCheck + cntColsInClique;
+		} else {
+			compsubCols[cntColsInClique++] = sel;
 			hasOtherNodes = cntRowsInClique > 0;
-			totRows =
-					newCandidateEndCheck - newNotEndCheck
-					+ cntRowsInClique;
-			totCols =
-					newCandidateEndSelected - newNotEndSelected
-					+ cntColsInClique;
-			break;
-		default:
-			break;
+			totRows = newCandidatesCheck + cntRowsInClique;
+			totCols = newCandidatesSelected + cntColsInClique;
 		}
 
-		if (totRows >= minRows && totCols >= minCols) {
-			if (((level > maxLevel)
-					|| (newCandidateEndSelected == 0 && newCandidateEndCheck == 0)
-					|| (newCandidateEndSelected == 0 && newNotEndCheck == 0) || (newCandidateEndCheck == 0 && newNotEndSelected == 0))) {
-				numBiclusters++;
-				biclustersFound++;
-				if (saveBiclusters) {
-					Bicluster bc = new BitSetBicluster();
-
-					for (int i = 0; i < compsubRows.size(); ++i)
-						bc.addRow(rowMapId[compsubRows.get(i)]);
-					for (int i = 0; i < compsubCols.size(); ++i)
-						bc.addColumn(colMapId[compsubCols.get(i)]);
-
-					if (selectionIsRow) {
-						// add all rows connected with the rest
-						for (int i = newNotEndSelected + 1; i <= newCandidateEndSelected; ++i) {
-							bc.addRow(rowMapId[selectedSet.nodes[i]]);
-						}
-						for (int i = newNotEndCheck; i < newCandidateEndCheck; ++i) {
-							bc.addColumn(colMapId[newCheck[i]]);
-						}
-					} else {
-						for (int i = newNotEndSelected + 1; i <= newCandidateEndSelected; ++i) {
-							bc.addColumn(colMapId[selectedSet.nodes[i]]);
-						}
-						for (int i = newNotEndCheck; i < newCandidateEndCheck; ++i) {
-							bc.addRow(rowMapId[newCheck[i]]);
-						}
-					}
-					biclusters.add(bc);
+		if (totRows < minRows || totCols < minCols) {
+			return false;
+		}
+
+		boolean emptySelected =
+				newNotSelected + newCandidatesSelected == 0;
+		boolean emptyCheck = newNotCheck + newCandidatesCheck == 0;
+		if ((level > maxLevel) || (emptySelected && emptyCheck)
+				|| (emptySelected && newNotCheck == 0)
+				|| (emptyCheck && newNotSelected == 0)) {
+			numBiclusters++;
+			if (saveBiclusters) {
+				Bicluster bc = new BitSetBicluster();
+
+				for (int i = 0; i < cntRowsInClique; ++i)
+					bc.addRow(rowMapId[compsubRows[i]]);
+				for (int i = 0; i < cntColsInClique; ++i)
+					bc.addColumn(colMapId[compsubCols[i]]);
+
+				if (selectionIsRow) {
+					// add all rows connected with the rest
+					addRows(bc, selectedSet.candidates);
+					addColumns(bc, newCheck.candidates);
+				} else {
+					addColumns(bc, selectedSet.candidates);
+					addRows(bc, newCheck.candidates);
 				}
-			} else {
-				boolean hasCandidatesPivot =
-						(newNotEndSelected < newCandidateEndSelected);
-				boolean hasCandidatesCheck =
-						(newNotEndCheck < newCandidateEndCheck);
-
-				if ((hasCandidatesPivot && hasCandidatesCheck)
-						|| // we have candidates in rows and cols
-						(hasCandidatesPivot && !hasCandidatesCheck
-								&& hasOtherNodes && newNotEndSelected == 0)
-								|| (hasCandidatesCheck
-										&& !hasCandidatesPivot && newNotEndCheck == 0)) {
-
-					int[] newSelected =
-							new int[selectedSet.candidatesEnd];
-					// Update X and P for the set which contains the
-					// selected node.
-					// The selected node is eliminated from X and P,
-					// the rest of the elements are left unchanged.
-					System.arraycopy(selectedSet.nodes, 0,
-							newSelected, 0, selectedSet.notEnd);
-					if (selectedSet.candidatesEnd != 0) {
-						System.arraycopy(selectedSet.nodes,
-								selectedSet.notEnd + 1, newSelected,
-								selectedSet.notEnd,
-								newCandidateEndSelected
-								- newNotEndSelected);
-					}
-
-					Nodes newselected =
-							new Nodes(selectedSet.nodeType,
-									newSelected,
-									newCandidateEndSelected,
-									newNotEndSelected);
-					Nodes newcheck =
-							new Nodes(checkSet.nodeType,
-									newCheck, newCandidateEndCheck,
-									newNotEndCheck);
-
-					if (selectedSet.nodeType.equals(NodeType.ROW)) {
-						biclustersFound +=
-								bkv2(newselected, newcheck,
-										level + 1);
-					} else {
-						biclustersFound +=
-								bkv2(newcheck, newselected,
-										level + 1);
-					}
+				if (!sink.accept(bc)) {
+					stopped = true;
 				}
 			}
+			return false;
 		}
 
-		switch (selectedSet.nodeType) {
-		case ROW:
-			if (saveBiclusters)
-				compsubRows.remove(compsubRows.size() - 1);
+		boolean hasCandidatesPivot = newCandidatesSelected > 0;
+		boolean hasCandidatesCheck = newCandidatesCheck > 0;
+
+		if ((hasCandidatesPivot && hasCandidatesCheck)
+				|| // we have candidates in rows and cols
+				(hasCandidatesPivot && !hasCandidatesCheck
+						&& hasOtherNodes && newNotSelected == 0)
+						|| (hasCandidatesCheck && !hasCandidatesPivot && newNotCheck == 0)) {
+			// Update X and P for the set which contains the
+			// selected node.
+			if (selectionIsRow) {
+				rowsAt(depth + 1).copyOf(selectedSet);
+			} else {
+				colsAt(depth + 1).copyOf(selectedSet);
+			}
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Moves 'sel' from the P to the X of selectedSet without
+	 * extending the selection, e.g. because all biclusters containing
+	 * it were found in a previous run.
+	 */
+	protected void skipSelection(Nodes selectedSet, int sel) {
+		selectedSet.removeCandidate(sel);
+		selectedSet.addNot(sel);
+	}
+
+	/**
+	 * Returns true if the enumeration was stopped by the sink or by
+	 * the maximal number of biclusters.
+	 */
+	protected boolean isInterrupted() {
+		return stopped
+				|| (maxBiclusters > 0 && numBiclusters > maxBiclusters);
+	}
+
+	/**
+	 * Removes 'sel' from R again and adds it to the X of
+	 * selectedSet.
+	 */
+	private void leaveSelection(Nodes selectedSet, int sel) {
+		if (selectedSet.nodeType == NodeType.ROW) {
 			cntRowsInClique--;
-			break;
-		case COL:
-			if (saveBiclusters)
-				compsubCols.remove(compsubCols.size() - 1);
+		} else {
 			cntColsInClique--;
-			break;
-		default:
-			break;
 		}
+		selectedSet.addNot(sel);
+	}
+
+	private void addRows(Bicluster bc, long[] rows) {
+		for (int r = BitUtils.nextSetBit(rows, 0); r > -1; r =
+				BitUtils.nextSetBit(rows, r + 1)) {
+			bc.addRow(rowMapId[r]);
+		}
+	}
 
-		selectedSet.notEnd++;
-		return biclustersFound;
+	private void addColumns(Bicluster bc, long[] columns) {
+		for (int c = BitUtils.nextSetBit(columns, 0); c > -1; c =
+				BitUtils.nextSetBit(columns, c + 1)) {
+			bc.addColumn(colMapId[c]);
+		}
 	}
 
 	@Override
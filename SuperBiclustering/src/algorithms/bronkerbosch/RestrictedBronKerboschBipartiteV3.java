@@ -22,6 +22,21 @@ package algorithms.bronkerbosch;
 public class RestrictedBronKerboschBipartiteV3 extends
 RestrictedBronKerboschBipartiteV2 {
 
+	// finished nodes of a previous run, may be null
+	private EnumerationCheckpoint checkpoint;
+
+	/**
+	 * Nodes that are done in 'checkpoint' are skipped and every node
+	 * is marked as done in it once all biclusters containing the
+	 * node were found. The checkpoint should be the sink of the
+	 * enumeration so that it holds these biclusters.
+	 */
+	public RestrictedBronKerboschBipartiteV3 setCheckpoint(
+			EnumerationCheckpoint checkpoint) {
+		this.checkpoint = checkpoint;
+		return this;
+	}
+
 	public RestrictedBronKerboschBipartiteV3(int maxLevel) {
 		super(maxLevel);
 	}
@@ -32,14 +47,10 @@ RestrictedBronKerboschBipartiteV2 {
 		int[] vert =
 				DegeneracyOrdering.orderGraph(inputMatrix, true);
 
-		// row nodes have indices between [0, numberOfRows) in vert
-		Nodes rowsData =
-				new Nodes(NodeType.ROW, numRows, vert, 0, numRows);
-		// col nodes have indices between [numberOfRows, numberOfRows
-		// + numberOfColumns) in vert
-		Nodes colsData =
-				new Nodes(NodeType.COL, numCols, vert, numRows,
-						numRows + numCols);
+		// the level 0 X u P hold all rows and columns; nodes are
+		// extended in degeneracy order
+		Nodes rowsData = rowsAt(0);
+		Nodes colsData = colsAt(0);
 
 		bkv3(rowsData, colsData, vert, 0);
 	}
@@ -49,15 +60,32 @@ RestrictedBronKerboschBipartiteV2 {
 	 */
 	private void bkv3(Nodes rowsData, Nodes colsData, int[] vert,
 			int level) {
-		int idrow = 0;
-		int idcol = 0;
-		for (int v = 0; v < vert.length; ++v) {
+		// row nodes have indices between [0, numberOfRows) in vert,
+		// col nodes between [numberOfRows, numberOfRows +
+		// numberOfColumns)
+		for (int v = 0; v < vert.length && !stopped; ++v) {
 			if (vert[v] < numRows) {
-				extendSelection(rowsData, colsData, idrow, level);
-				idrow++;
+				int row = vert[v];
+				if (checkpoint != null
+						&& checkpoint.isRowDone(rowMapId[row])) {
+					skipSelection(rowsData, row);
+					continue;
+				}
+				extendSelection(rowsData, colsData, row, level);
+				if (checkpoint != null && !isInterrupted()) {
+					checkpoint.markRowDone(rowMapId[row]);
+				}
 			} else {
-				extendSelection(colsData, rowsData, idcol, level);
-				idcol++;
+				int col = vert[v] - numRows;
+				if (checkpoint != null
+						&& checkpoint.isColumnDone(colMapId[col])) {
+					skipSelection(colsData, col);
+					continue;
+				}
+				extendSelection(colsData, rowsData, col, level);
+				if (checkpoint != null && !isInterrupted()) {
+					checkpoint.markColumnDone(colMapId[col]);
+				}
 			}
 		}
 	}
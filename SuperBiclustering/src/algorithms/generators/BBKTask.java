@@ -78,77 +78,164 @@ public class BBKTask {
 	int[] rows;
 	int[] columns;
 
+	// Search frames, one per depth: the bounds of the frame and
+	// whether it is new or chooses rows or columns. The search is
+	// iterative so that its depth is not bounded by the thread stack.
+	private static final int FRAME_NEW = 0;
+	private static final int FRAME_CHOOSE_ROW = 1;
+	private static final int FRAME_CHOOSE_COLUMN = 2;
+	private int[] frameStage;
+	private int[] frameRowTEnd;
+	private int[] frameRowEnd;
+	private int[] frameColTEnd;
+	private int[] frameColEnd;
+
 	public List<Bicluster> run() {
 		biclusters = new ArrayList<Bicluster>(maxBiclusters);
+		int maxDepth = rows.length + columns.length;
+		if (frameStage == null || frameStage.length < maxDepth) {
+			frameStage = new int[maxDepth];
+			frameRowTEnd = new int[maxDepth];
+			frameRowEnd = new int[maxDepth];
+			frameColTEnd = new int[maxDepth];
+			frameColEnd = new int[maxDepth];
+		}
 		bicluster(1, rows.length, 1, columns.length);
 		return biclusters;
 	}
 
 	private void bicluster(int rowTEnd, int rowEnd, int colTEnd,
 			int colEnd) {
+		int depth = 0;
+		pushFrame(depth, rowTEnd, rowEnd, colTEnd, colEnd);
+		while (depth >= 0) {
+			if (frameStage[depth] == FRAME_NEW) {
+				frameStage[depth] = chooseStage(depth);
+				if (frameStage[depth] == FRAME_NEW) {
+					depth--;
+					continue;
+				}
+			} else if (frameStage[depth] == FRAME_CHOOSE_ROW) {
+				// the row was processed, remove it
+				frameRowEnd[depth]--;
+				swap(rows, frameRowTEnd[depth], frameRowEnd[depth]);
+			} else {
+				// the column was processed, remove it
+				frameColEnd[depth]--;
+				swap(columns, frameColEnd[depth],
+						frameColTEnd[depth]);
+			}
+
+			boolean pushed;
+			if (frameStage[depth] == FRAME_CHOOSE_ROW) {
+				pushed = chooseRow(depth);
+			} else {
+				pushed = chooseColumn(depth);
+			}
+			if (pushed) {
+				depth++;
+			} else {
+				depth--;
+			}
+		}
+	}
+
+	private void pushFrame(int depth, int rowTEnd, int rowEnd,
+			int colTEnd, int colEnd) {
+		frameStage[depth] = FRAME_NEW;
+		frameRowTEnd[depth] = rowTEnd;
+		frameRowEnd[depth] = rowEnd;
+		frameColTEnd[depth] = colTEnd;
+		frameColEnd[depth] = colEnd;
+	}
+
+	/**
+	 * Decides whether the frame chooses rows or columns next.
+	 * Returns FRAME_NEW if the frame is a bicluster or can not
+	 * become one.
+	 */
+	private int chooseStage(int depth) {
+		int rowTEnd = frameRowTEnd[depth];
+		int rowEnd = frameRowEnd[depth];
+		int colTEnd = frameColTEnd[depth];
+		int colEnd = frameColEnd[depth];
+
 		if (biclusters.size() > maxBiclusters) {
-			return;
+			return FRAME_NEW;
 		}
 		if (rowTEnd >= minSize && colTEnd >= minSize) {
 			biclusters.add(BiclusterFactory.newBicluster(rows,
 					rowTEnd, columns, colTEnd));
-			return;
+			return FRAME_NEW;
 		}
 		if (rowEnd < minSize || colEnd < minSize) {
-			return;
+			return FRAME_NEW;
 		}
 
 		if (rowTEnd > colTEnd && (colEnd - colTEnd) > 0) {
 			// Choose Column
-			chooseColumn(rowTEnd, rowEnd, colTEnd, colEnd);
+			return FRAME_CHOOSE_COLUMN;
 		} else if (colTEnd > rowTEnd && (rowEnd - rowTEnd) > 0) {
 			// Choose Row
-			chooseRow(rowTEnd, rowEnd, colTEnd, colEnd);
+			return FRAME_CHOOSE_ROW;
 		} else if ((rowEnd - rowTEnd) > 0) {
 			// Choose Row
-			chooseRow(rowTEnd, rowEnd, colTEnd, colEnd);
+			return FRAME_CHOOSE_ROW;
 		} else if ((colEnd - colTEnd) > 0) {
 			// Choose Column
-			chooseColumn(rowTEnd, rowEnd, colTEnd, colEnd);
+			return FRAME_CHOOSE_COLUMN;
 		}
+		return FRAME_NEW;
 	}
 
-	private void chooseRow(int rowTEnd, int rowEnd, int colTEnd,
-			int colEnd) {
-		while (rowTEnd < rowEnd) {
-			int j = colTEnd;
-			int newColEnd = colEnd;
-			while (j < newColEnd) {
-				if (matrix.get(rows[rowTEnd], columns[j])) {
-					j++;
-				} else {
-					newColEnd--;
-					swap(columns, newColEnd, j);
-				}
+	/**
+	 * Pushes the frame for the next row of the frame on 'depth'.
+	 * Returns false if all rows have been chosen.
+	 */
+	private boolean chooseRow(int depth) {
+		int rowTEnd = frameRowTEnd[depth];
+		int rowEnd = frameRowEnd[depth];
+		int colTEnd = frameColTEnd[depth];
+		if (rowTEnd >= rowEnd) {
+			return false;
+		}
+		int j = colTEnd;
+		int newColEnd = frameColEnd[depth];
+		while (j < newColEnd) {
+			if (matrix.get(rows[rowTEnd], columns[j])) {
+				j++;
+			} else {
+				newColEnd--;
+				swap(columns, newColEnd, j);
 			}
-			bicluster(rowTEnd + 1, rowEnd, colTEnd, newColEnd);
-			rowEnd--;
-			swap(rows, rowTEnd, rowEnd);
 		}
+		pushFrame(depth + 1, rowTEnd + 1, rowEnd, colTEnd, newColEnd);
+		return true;
 	}
 
-	private void chooseColumn(int rowTEnd, int rowEnd, int colTEnd,
-			int colEnd) {
-		while (colTEnd < colEnd) {
-			int j = rowTEnd;
-			int newRowEnd = rowEnd;
-			while (j < newRowEnd) {
-				if (matrix.get(rows[j], columns[colTEnd])) {
-					j++;
-				} else {
-					newRowEnd--;
-					swap(rows, newRowEnd, j);
-				}
+	/**
+	 * Pushes the frame for the next column of the frame on 'depth'.
+	 * Returns false if all columns have been chosen.
+	 */
+	private boolean chooseColumn(int depth) {
+		int rowTEnd = frameRowTEnd[depth];
+		int colTEnd = frameColTEnd[depth];
+		int colEnd = frameColEnd[depth];
+		if (colTEnd >= colEnd) {
+			return false;
+		}
+		int j = rowTEnd;
+		int newRowEnd = frameRowEnd[depth];
+		while (j < newRowEnd) {
+			if (matrix.get(rows[j], columns[colTEnd])) {
+				j++;
+			} else {
+				newRowEnd--;
+				swap(rows, newRowEnd, j);
 			}
-			bicluster(rowTEnd, newRowEnd, colTEnd + 1, colEnd);
-			colEnd--;
-			swap(columns, colEnd, colTEnd);
 		}
+		pushFrame(depth + 1, rowTEnd, newRowEnd, colTEnd + 1, colEnd);
+		return true;
 	}
 
 	private void swap(int[] array, int a, int b) {
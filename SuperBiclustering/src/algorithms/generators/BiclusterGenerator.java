@@ -19,6 +19,8 @@
 
 package algorithms.generators;
 
+import java.io.IOException;
+import java.util.BitSet;
 import java.util.Collection;
 
 import org.slf4j.Logger;
@@ -26,6 +28,7 @@ import org.slf4j.LoggerFactory;
 
 import algorithms.GeneratorBlock;
 import algorithms.bronkerbosch.BronKerboschBipartiteV3;
+import algorithms.bronkerbosch.EnumerationCheckpoint;
 import datatype.bicluster.Bicluster;
 import datatype.matrix.BinaryMatrix;
 
@@ -34,6 +37,8 @@ public class BiclusterGenerator extends GeneratorBlock {
 	private static final Logger LOGGER = LoggerFactory.getLogger(BiclusterGenerator.class);
 	private int minRow;
 	private int minColumn;
+	private String checkpointFile;
+	private boolean resume;
 
 	public BiclusterGenerator(int minRows, int minColumns) {
 		this.minRow = minRows;
@@ -41,6 +46,18 @@ public class BiclusterGenerator extends GeneratorBlock {
 		LOGGER.info(String.format("Created Bicluster Generator with minimum row/col of %1d/%1d.", minRow, minColumn));
 	}
 
+	/**
+	 * Appends the biclusters and the finished nodes to
+	 * 'checkpointFile' while enumerating. If 'resume' is set, the
+	 * nodes finished in an existing checkpoint are skipped.
+	 */
+	public BiclusterGenerator setCheckpoint(String checkpointFile,
+			boolean resume) {
+		this.checkpointFile = checkpointFile;
+		this.resume = resume;
+		return this;
+	}
+
 	@Override
 	public String getName() {
 		return String.format("Bicluster Generator - Min Rows: %1d - Min Columns: %1d", minRow, minColumn);
@@ -57,7 +74,31 @@ public class BiclusterGenerator extends GeneratorBlock {
 				new BronKerboschBipartiteV3();
 		bronKerboschBipartiteV3.setMinRows(minRow);
 		bronKerboschBipartiteV3.setMinColumns(minColumn);
-		return bronKerboschBipartiteV3.findBiclusters(matrix);
+		if (checkpointFile == null) {
+			return bronKerboschBipartiteV3.findBiclusters(matrix);
+		}
+
+		EnumerationCheckpoint checkpoint;
+		try {
+			checkpoint =
+					new EnumerationCheckpoint(checkpointFile, resume,
+							matrix, String.format(
+									"minRows=%d minColumns=%d",
+									minRow, minColumn));
+		} catch (IOException e) {
+			LOGGER.error(String.format(
+					"Could not open checkpoint %s, running without it.",
+					checkpointFile), e);
+			return bronKerboschBipartiteV3.findBiclusters(matrix);
+		}
+		try {
+			bronKerboschBipartiteV3.setCheckpoint(checkpoint)
+			.findBiclusters(matrix, new BitSet(), new BitSet(),
+					checkpoint);
+		} finally {
+			checkpoint.close();
+		}
+		return checkpoint.getBiclusters();
 	}
 
 }
@@ -26,13 +26,12 @@ import java.util.List;
 import java.util.Random;
 
 import map.KeyValuePair;
+import util.RandomStreams;
 import datatype.bicluster.Bicluster;
 import datatype.matrix.BinaryMatrix;
 
 public class Degeneracy {
 
-	private static final Random rand = new Random(999);
-
 	public static List<Bicluster> computeBicluster(
 			int minDegeneracy, BinaryMatrix matrix) {
 		MatrixStats stats = computeNodeDegree(matrix);
@@ -87,6 +86,7 @@ public class Degeneracy {
 		private Integer[] columns;
 		private int[] rowDegreeIndices;
 		private int[] columnDegreeIndices;
+		private Random rand;
 
 		private int chooseRow(BinaryMatrix matrix) {
 			int lowestRow = rows[rowDegreeIndices[0]];
@@ -166,6 +166,9 @@ public class Degeneracy {
 	private static MatrixStats
 	computeNodeDegree(BinaryMatrix matrix) {
 		MatrixStats md = new MatrixStats();
+		md.rand =
+				RandomStreams.newRandom(Degeneracy.class,
+						matrix.hashCode());
 		md.rowsD = new int[matrix.getNumRows()];
 		md.columnsD = new int[matrix.getNumColumns()];
 		for (int i = 0; i < matrix.getNumRows(); i++) {
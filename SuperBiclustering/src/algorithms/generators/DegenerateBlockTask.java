@@ -0,0 +1,156 @@
+/* SuperBiclustering - A biclustering algorithm designed to
+ * handle sparse and noisy input.
+ * Copyright (C) 2014 Oliver Voggenreiter
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package algorithms.generators;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import map.KeyValuePair;
+import map.MapAlgorithm;
+import util.BitUtils;
+import datatype.bicluster.Bicluster;
+import datatype.bicluster.BitSetBicluster;
+import datatype.matrix.PackedBinaryMatrix;
+
+/**
+ * Builds the degenerate blocks recorded by a DegeneratePeeling. The
+ * input values are block indices; the output pairs each index with
+ * its block. Blocks that turn out smaller than the minimum threshold
+ * on the side of their starting node are dropped. Since the peeling
+ * is only read, one task can be shared by all MapController threads.
+ */
+public class DegenerateBlockTask implements
+		MapAlgorithm<Integer, KeyValuePair<Integer, Bicluster>> {
+
+	private final DegeneratePeeling peeling;
+
+	public DegenerateBlockTask(DegeneratePeeling peeling) {
+		this.peeling = peeling;
+	}
+
+	@Override
+	public List<KeyValuePair<Integer, Bicluster>> map(
+			List<Integer> blockIndices) {
+		List<KeyValuePair<Integer, Bicluster>> tuples =
+				new ArrayList<KeyValuePair<Integer, Bicluster>>();
+
+		for (int blockIndex : blockIndices) {
+			Bicluster block = buildBlock(blockIndex);
+			if (block != null) {
+				tuples.add(new KeyValuePair<Integer, Bicluster>(
+						blockIndex, block));
+			}
+		}
+
+		return tuples;
+	}
+
+	/**
+	 * Builds the block of the given index: its node, the neighbours of
+	 * that node still left at its removal, and all nodes on the side
+	 * of the starting node that were left at that time and have at
+	 * least minThreshold connections into those neighbours. Returns
+	 * null if the side of the starting node ends up smaller than
+	 * minThreshold.
+	 */
+	public Bicluster buildBlock(int blockIndex) {
+		int node = peeling.getBlockNode(blockIndex);
+		int step = peeling.getRemovalStep(node);
+		int numRows = peeling.getNumRows();
+		long[] rows;
+		long[] columns;
+
+		if (node < numRows) {
+			columns =
+					getNeighboursLeft(peeling.getRowsMatrix(), node,
+							numRows, step);
+			rows =
+					getConnectedLeft(peeling.getRowsMatrix(), columns,
+							0, step);
+			BitUtils.set(rows, node);
+			if (BitUtils.cardinality(rows) < peeling.getMinThreshold()) {
+				return null;
+			}
+		} else {
+			int column = node - numRows;
+			rows =
+					getNeighboursLeft(peeling.getColumnsMatrix(),
+							column, 0, step);
+			columns =
+					getConnectedLeft(peeling.getColumnsMatrix(), rows,
+							numRows, step);
+			BitUtils.set(columns, column);
+			if (BitUtils.cardinality(columns) < peeling
+					.getMinThreshold()) {
+				return null;
+			}
+		}
+
+		Bicluster bicluster = new BitSetBicluster();
+		for (int row = BitUtils.nextSetBit(rows, 0); row > -1; row =
+				BitUtils.nextSetBit(rows, row + 1)) {
+			bicluster.addRow(row);
+		}
+		for (int column = BitUtils.nextSetBit(columns, 0); column > -1; column =
+				BitUtils.nextSetBit(columns, column + 1)) {
+			bicluster.addColumn(column);
+		}
+		return bicluster;
+	}
+
+	/**
+	 * Returns the neighbours of row 'index' of 'matrix' that were left
+	 * after 'step'. 'offset' maps the neighbours to node ids.
+	 */
+	private long[] getNeighboursLeft(PackedBinaryMatrix matrix,
+			int index, int offset, int step) {
+		long[] neighbours = matrix.getRowWords(index).clone();
+		for (int i = BitUtils.nextSetBit(neighbours, 0); i > -1; i =
+				BitUtils.nextSetBit(neighbours, i + 1)) {
+			if (!peeling.isLeftAfter(offset + i, step)) {
+				BitUtils.clear(neighbours, i);
+			}
+		}
+		return neighbours;
+	}
+
+	/**
+	 * Returns the rows of 'matrix' that were left after 'step' and
+	 * have at least minThreshold ones in 'neighbours'. 'offset' maps
+	 * the rows to node ids.
+	 */
+	private long[] getConnectedLeft(PackedBinaryMatrix matrix,
+			long[] neighbours, int offset, int step) {
+		long[] connected = BitUtils.newWords(matrix.getNumRows());
+		if (BitUtils.cardinality(neighbours) < peeling
+				.getMinThreshold()) {
+			return connected;
+		}
+		for (int i = 0; i < matrix.getNumRows(); i++) {
+			if (peeling.isLeftAfter(offset + i, step)
+					&& BitUtils.cardinalityAnd(matrix.getRowWords(i),
+							neighbours) >= peeling.getMinThreshold()) {
+				BitUtils.set(connected, i);
+			}
+		}
+		return connected;
+	}
+
+}
@@ -0,0 +1,101 @@
+/* SuperBiclustering - A biclustering algorithm designed to
+ * handle sparse and noisy input.
+ * Copyright (C) 2014 Oliver Voggenreiter
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package algorithms.generators;
+
+import datatype.matrix.PackedBinaryMatrix;
+
+/**
+ * The outcome of the sequential peel of RestrictiveMatrixDegeneracy.
+ * Instead of copying the remaining rows and columns whenever a block
+ * is started, the peel records the step at which each row and column
+ * was removed; the rows/columns left right after step t are exactly
+ * those removed after t. Together with the list of nodes that start a
+ * block, this is all that is needed to build the blocks
+ * independently of each other (see DegenerateBlockTask).
+ *
+ * Nodes are numbered as in MatrixDegeneracy: rows first, followed by
+ * the columns at an offset of the number of rows.
+ */
+public class DegeneratePeeling {
+
+	/** Removal step of nodes that were still left when the peel ended. */
+	public static final int NEVER_REMOVED = Integer.MAX_VALUE;
+
+	private final PackedBinaryMatrix rowsMatrix;
+	private final PackedBinaryMatrix columnsMatrix;
+	private final int[] removalSteps;
+	private final int[] blockNodes;
+	private final int minThreshold;
+
+	public DegeneratePeeling(PackedBinaryMatrix rowsMatrix,
+			PackedBinaryMatrix columnsMatrix, int[] removalSteps,
+			int[] blockNodes, int minThreshold) {
+		this.rowsMatrix = rowsMatrix;
+		this.columnsMatrix = columnsMatrix;
+		this.removalSteps = removalSteps;
+		this.blockNodes = blockNodes;
+		this.minThreshold = minThreshold;
+	}
+
+	public PackedBinaryMatrix getRowsMatrix() {
+		return rowsMatrix;
+	}
+
+	/**
+	 * The transpose of getRowsMatrix(), i.e. one packed row per
+	 * column.
+	 */
+	public PackedBinaryMatrix getColumnsMatrix() {
+		return columnsMatrix;
+	}
+
+	public int getNumRows() {
+		return rowsMatrix.getNumRows();
+	}
+
+	public int getRemovalStep(int node) {
+		return removalSteps[node];
+	}
+
+	/**
+	 * Returns whether 'node' was still left after the given step.
+	 */
+	public boolean isLeftAfter(int node, int step) {
+		return removalSteps[node] > step;
+	}
+
+	public int getNumberOfBlocks() {
+		return blockNodes.length;
+	}
+
+	/**
+	 * Returns the node that starts the block with the given index.
+	 * Blocks are indexed in the order in which the peel removed their
+	 * nodes.
+	 */
+	public int getBlockNode(int blockIndex) {
+		return blockNodes[blockIndex];
+	}
+
+	public int getMinThreshold() {
+		return minThreshold;
+	}
+
+}
@@ -0,0 +1,245 @@
+/* SuperBiclustering - A biclustering algorithm designed to
+ * handle sparse and noisy input.
+ * Copyright (C) 2014 Oliver Voggenreiter
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package algorithms.generators;
+
+import java.util.Arrays;
+
+/**
+ * Bucket queue of nodes keyed by their degree, as used for
+ * degeneracy orderings. The lowest non-empty bucket is tracked with a
+ * pointer that only moves down by one per decrement.
+ *
+ * Unlike the bucket queue of DegeneracyOrdering, moves and picks are
+ * not O(1). That queue removes a node by swapping the last node of
+ * its bucket into its place, which reorders the bucket. Each bucket
+ * here keeps its nodes in the order in which they were added, exactly
+ * like the list based degeneracy groups did, so that choosing the
+ * n-th node of the lowest bucket with a seeded random number picks
+ * the same node as before. Finding the n-th live node then needs a
+ * Fenwick tree over the slots of each bucket, so moving a node to the
+ * next lower bucket and removing the n-th node of a bucket take
+ * O(log(bucket size)). Buckets are compacted once half of their
+ * slots are empty.
+ */
+public class DegreeBucketQueue {
+
+	private final int[] degree;
+	// bucket and slot of each node, -1 once the node was removed
+	private final int[] slot;
+	private final Bucket[] buckets;
+	private int minDegree = 0;
+	private int size;
+
+	/**
+	 * Adds the nodes 0..(N - 1) in ascending order to the buckets of
+	 * their degrees.
+	 */
+	public DegreeBucketQueue(int[] degrees) {
+		this.degree = degrees.clone();
+		this.slot = new int[degrees.length];
+		int maxDegree = 0;
+		for (int d : degrees) {
+			maxDegree = Math.max(maxDegree, d);
+		}
+		int[] bucketSizes = new int[maxDegree + 1];
+		for (int d : degrees) {
+			bucketSizes[d]++;
+		}
+		buckets = new Bucket[maxDegree + 1];
+		for (int d = 0; d <= maxDegree; d++) {
+			buckets[d] = new Bucket(bucketSizes[d], slot);
+		}
+		for (int node = 0; node < degrees.length; node++) {
+			slot[node] = buckets[degrees[node]].add(node);
+		}
+		size = degrees.length;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int getDegree(int node) {
+		return degree[node];
+	}
+
+	public boolean contains(int node) {
+		return slot[node] >= 0;
+	}
+
+	/**
+	 * Returns the degree of the lowest non-empty bucket, or -1 if the
+	 * queue is empty.
+	 */
+	public int getMinDegree() {
+		if (size == 0) {
+			return -1;
+		}
+		while (buckets[minDegree].size == 0) {
+			minDegree++;
+		}
+		return minDegree;
+	}
+
+	public int getBucketSize(int degree) {
+		return buckets[degree].size;
+	}
+
+	/**
+	 * Removes and returns the node at 'position' (in the order in
+	 * which the nodes were added) of the bucket 'degree'.
+	 */
+	public int remove(int degree, int position) {
+		Bucket bucket = buckets[degree];
+		int nodeSlot = bucket.find(position);
+		int node = bucket.nodes[nodeSlot];
+		bucket.remove(nodeSlot);
+		slot[node] = -1;
+		size--;
+		return node;
+	}
+
+	/**
+	 * Decreases the degree of 'node' by one, moving it to the end of
+	 * the next lower bucket.
+	 */
+	public void decrement(int node) {
+		int d = degree[node];
+		buckets[d].remove(slot[node]);
+		degree[node] = d - 1;
+		slot[node] = buckets[d - 1].add(node);
+		if (d - 1 < minDegree) {
+			minDegree = d - 1;
+		}
+	}
+
+	/**
+	 * The nodes of one degree in insertion order. Removed nodes leave
+	 * an empty slot; 'tree' is a Fenwick tree over the occupied slots
+	 * for finding the n-th remaining node. When the bucket is full,
+	 * the empty slots are reclaimed first if they are at least half of
+	 * it, so its capacity follows the nodes it holds and not the number
+	 * of decrements.
+	 */
+	private static class Bucket {
+
+		// slot of each node, updated when the bucket is compacted
+		private final int[] slot;
+		private int[] nodes;
+		private int[] tree;
+		private int used = 0;
+		private int size = 0;
+
+		Bucket(int capacity, int[] slot) {
+			this.slot = slot;
+			int treeSize = Integer.highestOneBit(Math.max(capacity, 1));
+			if (treeSize < capacity) {
+				treeSize <<= 1;
+			}
+			nodes = new int[treeSize];
+			tree = new int[treeSize + 1];
+		}
+
+		int add(int node) {
+			if (used == nodes.length) {
+				if (size * 2 <= used) {
+					compact();
+				} else {
+					grow();
+				}
+			}
+			nodes[used] = node;
+			update(used, 1);
+			size++;
+			return used++;
+		}
+
+		void remove(int nodeSlot) {
+			nodes[nodeSlot] = -1;
+			update(nodeSlot, -1);
+			size--;
+		}
+
+		/**
+		 * Returns the slot of the 'position'-th occupied slot.
+		 */
+		int find(int position) {
+			int index = 0;
+			int remaining = position;
+			for (int step = nodes.length; step > 0; step >>= 1) {
+				if (tree[index + step] <= remaining) {
+					index += step;
+					remaining -= tree[index];
+				}
+			}
+			return index;
+		}
+
+		private void update(int nodeSlot, int delta) {
+			for (int i = nodeSlot + 1; i < tree.length; i += i & -i) {
+				tree[i] += delta;
+			}
+		}
+
+		/**
+		 * Moves the remaining nodes to the front, keeping their order.
+		 */
+		private void compact() {
+			int target = 0;
+			for (int i = 0; i < used; i++) {
+				if (nodes[i] >= 0) {
+					nodes[target] = nodes[i];
+					slot[nodes[target]] = target;
+					target++;
+				}
+			}
+			Arrays.fill(nodes, target, used, -1);
+			used = target;
+			rebuildTree();
+		}
+
+		/**
+		 * Doubles the capacity.
+		 */
+		private void grow() {
+			nodes = Arrays.copyOf(nodes, nodes.length * 2);
+			tree = new int[nodes.length + 1];
+			rebuildTree();
+		}
+
+		/**
+		 * Rebuilds the Fenwick tree in linear time.
+		 */
+		private void rebuildTree() {
+			Arrays.fill(tree, 0);
+			for (int i = 1; i < tree.length; i++) {
+				if (i <= used && nodes[i - 1] >= 0) {
+					tree[i]++;
+				}
+				int parent = i + (i & -i);
+				if (parent < tree.length) {
+					tree[parent] += tree[i];
+				}
+			}
+		}
+
+	}
+
+}
@@ -19,13 +19,12 @@
 
 package algorithms.generators;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Random;
 
-import datatype.bicluster.BinaryVector;
-import datatype.bicluster.BitSetBinaryVector;
+import util.BitUtils;
+import util.RandomStreams;
 import datatype.matrix.BinaryMatrix;
+import datatype.matrix.PackedBinaryMatrix;
 
 /**
  * This is an implementation of
@@ -42,16 +41,17 @@ import datatype.matrix.BinaryMatrix;
  */
 public class MatrixDegeneracy {
 
-	private static final Random RANDOM = new Random(1337);
-
 	/**
 	 * Calculates a degeneracy ordering of the rows and columns of
 	 * matrix and returns it as an integer array.
 	 */
 	public static int[]
 			computeDegeneracyOrdering(BinaryMatrix matrix) {
-		int[] counts = computeNodeDegrees(matrix);
-		int[] ordering = computeOrdering(counts, matrix);
+		PackedBinaryMatrix rowsMatrix = PackedBinaryMatrix.pack(matrix);
+		PackedBinaryMatrix columnsMatrix = rowsMatrix.getTransposed();
+		int[] counts = computeNodeDegrees(rowsMatrix, columnsMatrix);
+		int[] ordering =
+				computeOrdering(counts, rowsMatrix, columnsMatrix);
 
 		return ordering;
 	}
@@ -62,62 +62,74 @@ public class MatrixDegeneracy {
 	 * starting at matrix.getNumRows() offset.
 	 */
 	public static int[] computeNodeDegrees(BinaryMatrix matrix) {
+		PackedBinaryMatrix rowsMatrix = PackedBinaryMatrix.pack(matrix);
+		return computeNodeDegrees(rowsMatrix,
+				rowsMatrix.getTransposed());
+	}
+
+	/**
+	 * Same as computeNodeDegrees(BinaryMatrix), given the packed
+	 * matrix and its packed transpose.
+	 */
+	public static int[] computeNodeDegrees(PackedBinaryMatrix rowsMatrix,
+			PackedBinaryMatrix columnsMatrix) {
+		int numRows = rowsMatrix.getNumRows();
 		int[] connectivityCounts =
-				new int[matrix.getNumRows() + matrix.getNumColumns()];
-
-		for (int iRow = 0; iRow < matrix.getNumRows(); iRow++) {
-			for (int iColumn = 0; iColumn < matrix.getNumColumns(); iColumn++) {
-				if (matrix.get(iRow, iColumn)) {
-					connectivityCounts[iRow]++;
-					connectivityCounts[matrix.getNumRows() + iColumn]++;
-				}
-			}
+				new int[numRows + rowsMatrix.getNumColumns()];
+
+		for (int iRow = 0; iRow < numRows; iRow++) {
+			connectivityCounts[iRow] =
+					BitUtils.cardinality(rowsMatrix.getRowWords(iRow));
+		}
+		for (int iColumn = 0; iColumn < rowsMatrix.getNumColumns(); iColumn++) {
+			connectivityCounts[numRows + iColumn] =
+					BitUtils.cardinality(columnsMatrix
+							.getRowWords(iColumn));
 		}
 
 		return connectivityCounts;
 	}
 
 	private static int[] computeOrdering(int[] connectivityValues,
-			BinaryMatrix matrix) {
+			PackedBinaryMatrix rowsMatrix,
+			PackedBinaryMatrix columnsMatrix) {
+		int numRows = rowsMatrix.getNumRows();
 		int[] degeneracyOrdering =
-				initializeAscendingArray(matrix.getNumRows()
-						+ matrix.getNumColumns());
-		int[] connectivity = connectivityValues.clone();
-		BinaryVector rowsLeft =
-				new BitSetBinaryVector(matrix.getNumRows(), true);
-		BinaryVector columnsLeft =
-				new BitSetBinaryVector(matrix.getNumColumns(), true);
-		List<List<Integer>> degeneracyGroups =
-				computeDegeneracyGroups(connectivity);
+				initializeAscendingArray(numRows
+						+ rowsMatrix.getNumColumns());
+		int[] orderingPositions =
+				initializeAscendingArray(degeneracyOrdering.length);
+		long[] rowsLeft = BitUtils.newWords(numRows);
+		BitUtils.setRange(rowsLeft, numRows);
+		long[] columnsLeft =
+				BitUtils.newWords(rowsMatrix.getNumColumns());
+		BitUtils.setRange(columnsLeft, rowsMatrix.getNumColumns());
+		DegreeBucketQueue degeneracyGroups =
+				new DegreeBucketQueue(connectivityValues);
+		Random random =
+				RandomStreams.newRandom(MatrixDegeneracy.class,
+						rowsMatrix.hashCode());
 
 		for (int iPosition = 0; iPosition < degeneracyOrdering.length; iPosition++) {
-			int firstNonEmptyGroup =
-					computeIndexOfFirstNonEmptyList(degeneracyGroups);
-			int chosenPosition =
-					chooseRandomNodePositionInGroup(
-							firstNonEmptyGroup, degeneracyGroups);
 			int chosenNode =
-					degeneracyGroups.get(firstNonEmptyGroup).remove(
-							chosenPosition);
-			connectivity[chosenNode] = 0;
+					removeRandomNode(
+							degeneracyGroups.getMinDegree(),
+							degeneracyGroups, random);
 
-			if (chosenNode < matrix.getNumRows()) {
+			if (chosenNode < numRows) {
 				// Choice is a Row!
-				rowsLeft.set(chosenNode, false);
+				BitUtils.clear(rowsLeft, chosenNode);
 				updateColumnNeighbours(chosenNode, degeneracyGroups,
-						connectivity, columnsLeft, matrix);
+						columnsLeft, rowsMatrix);
 			} else {
 				// Choice is Column!
-				columnsLeft.set(chosenNode - matrix.getNumRows(),
-						false);
-				updateRowNeighbours(
-						chosenNode - matrix.getNumRows(),
-						degeneracyGroups, connectivity, rowsLeft,
-						matrix);
+				BitUtils.clear(columnsLeft, chosenNode - numRows);
+				updateRowNeighbours(chosenNode - numRows,
+						degeneracyGroups, rowsLeft, columnsMatrix);
 			}
 
-			updateDegeneracyOrder(degeneracyOrdering, iPosition,
-					chosenNode);
+			updateDegeneracyOrder(degeneracyOrdering,
+					orderingPositions, iPosition, chosenNode);
 		}
 
 		return degeneracyOrdering;
@@ -135,114 +147,49 @@ public class MatrixDegeneracy {
 	}
 
 	/**
-	 * Takes a set of degree counts for rows and columns of a matrix
-	 * and arranges the indices accordingly. For every type of degree
-	 * count that exists in the matrix, we have an arraylist that
-	 * stores the corresponding indices.
-	 *
+	 * Chooses one of the nodes in the given degree group at random
+	 * and removes it from the queue. The nodes of a group are kept in
+	 * the order in which they entered it, so a given seed always
+	 * yields the same choice.
 	 */
-	public static List<List<Integer>> computeDegeneracyGroups(
-			int[] connectivityValues) {
-		List<List<Integer>> degeneracyGroups =
-				new ArrayList<List<Integer>>();
-
-		for (int iNode = 0; iNode < connectivityValues.length; iNode++) {
-			while (degeneracyGroups.size() <= connectivityValues[iNode]) {
-				degeneracyGroups.add(new ArrayList<Integer>());
-			}
-			degeneracyGroups.get(connectivityValues[iNode]).add(
-					iNode);
-		}
-
-		return degeneracyGroups;
-	}
-
-	/**
-	 * Takes one of the group lists generated by
-	 * computeDegeneracyGroups and determines the first arraylist in
-	 * that list of groups that is non-empty.
-	 *
-	 */
-	public static int computeIndexOfFirstNonEmptyList(
-			List<List<Integer>> lists) {
-		int index = 0;
-		while (lists.get(index).size() == 0) {
-			index++;
-		}
-		return index;
-	}
-
-	/**
-	 * Chooses one of the indices given in the first non-empty group
-	 * of the degeneracy group list.
-	 */
-	public static int chooseRandomNodePositionInGroup(
-			int groupIndex, List<List<Integer>> groups) {
-		int groupSize = groups.get(groupIndex).size();
-		int randomPosition = RANDOM.nextInt(groupSize);
-		return randomPosition;
+	public static int removeRandomNode(int degree,
+			DegreeBucketQueue degeneracyGroups, Random random) {
+		int groupSize = degeneracyGroups.getBucketSize(degree);
+		int randomPosition = random.nextInt(groupSize);
+		return degeneracyGroups.remove(degree, randomPosition);
 	}
 
 	private static void updateColumnNeighbours(int row,
-			List<List<Integer>> degeneracyGroups,
-			int[] connectivityValues, BinaryVector columns,
-			BinaryMatrix matrix) {
-		for (int column : columns) {
-			if (matrix.get(row, column)) {
-				int connectedColumn = matrix.getNumRows() + column;
-				int connectedColumnPosition =
-						degeneracyGroups.get(
-								connectivityValues[connectedColumn])
-								.indexOf(connectedColumn);
-				degeneracyGroups.get(
-						connectivityValues[connectedColumn]).remove(
-								connectedColumnPosition);
-				connectivityValues[connectedColumn]--;
-				degeneracyGroups.get(
-						connectivityValues[connectedColumn]).add(
-								connectedColumn);
-			}
+			DegreeBucketQueue degeneracyGroups, long[] columnsLeft,
+			PackedBinaryMatrix rowsMatrix) {
+		long[] rowWords = rowsMatrix.getRowWords(row);
+		for (int column =
+				BitUtils.nextSetBitAnd(rowWords, columnsLeft, 0); column > -1; column =
+				BitUtils.nextSetBitAnd(rowWords, columnsLeft,
+						column + 1)) {
+			degeneracyGroups.decrement(rowsMatrix.getNumRows() + column);
 		}
 	}
 
 	private static void updateRowNeighbours(int column,
-			List<List<Integer>> degeneracyGroups,
-			int[] connectivity, BinaryVector rows,
-			BinaryMatrix matrix) {
-		for (int row : rows) {
-			if (matrix.get(row, column)) {
-				int connectedRowPosition =
-						degeneracyGroups.get(connectivity[row])
-						.indexOf(row);
-				degeneracyGroups.get(connectivity[row]).remove(
-						connectedRowPosition);
-				connectivity[row]--;
-				degeneracyGroups.get(connectivity[row]).add(row);
-			}
+			DegreeBucketQueue degeneracyGroups, long[] rowsLeft,
+			PackedBinaryMatrix columnsMatrix) {
+		long[] columnWords = columnsMatrix.getRowWords(column);
+		for (int row =
+				BitUtils.nextSetBitAnd(columnWords, rowsLeft, 0); row > -1; row =
+				BitUtils.nextSetBitAnd(columnWords, rowsLeft, row + 1)) {
+			degeneracyGroups.decrement(row);
 		}
 	}
 
 	private static void updateDegeneracyOrder(
-			int[] degeneracyOrdering, int position, int chosenNode) {
-		int chosenNodePosition =
-				computeChosenNodePosition(position,
-						degeneracyOrdering, chosenNode);
-		swapIndices(degeneracyOrdering, chosenNodePosition, position);
-	}
-
-	private static int computeChosenNodePosition(int startPosition,
-			int[] degeneracyOrdering, int chosenNode) {
-		int search = startPosition;
-		while (degeneracyOrdering[search] != chosenNode) {
-			search++;
-		}
-		return search;
-	}
-
-	private static void swapIndices(int[] list, int index1,
-			int index2) {
-		int temp = list[index1];
-		list[index1] = list[index2];
-		list[index2] = temp;
+			int[] degeneracyOrdering, int[] orderingPositions,
+			int position, int chosenNode) {
+		int chosenNodePosition = orderingPositions[chosenNode];
+		int displacedNode = degeneracyOrdering[position];
+		degeneracyOrdering[chosenNodePosition] = displacedNode;
+		degeneracyOrdering[position] = chosenNode;
+		orderingPositions[displacedNode] = chosenNodePosition;
+		orderingPositions[chosenNode] = position;
 	}
 }
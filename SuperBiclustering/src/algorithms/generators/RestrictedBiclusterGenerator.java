@@ -19,13 +19,15 @@
 
 package algorithms.generators;
 
+import java.io.IOException;
+import java.util.BitSet;
 import java.util.Collection;
-import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import algorithms.GeneratorBlock;
+import algorithms.bronkerbosch.EnumerationCheckpoint;
 import algorithms.bronkerbosch.RestrictedBronKerboschBipartiteV3;
 import datatype.bicluster.Bicluster;
 import datatype.matrix.BinaryMatrix;
@@ -38,6 +40,8 @@ public class RestrictedBiclusterGenerator extends GeneratorBlock {
 	private int maxLevel;
 	private int minRows;
 	private int minCols;
+	private String checkpointFile;
+	private boolean resume;
 
 	public RestrictedBiclusterGenerator(int maxLevel, int minRows,
 			int minColumns) {
@@ -46,6 +50,19 @@ public class RestrictedBiclusterGenerator extends GeneratorBlock {
 		this.minCols = minColumns;
 	}
 
+	/**
+	 * Appends the biclusters and the finished nodes to
+	 * 'checkpointFile' while enumerating. If 'resume' is set, the
+	 * nodes finished in an existing checkpoint are skipped. With a
+	 * checkpoint the biclusters are kept and not only counted.
+	 */
+	public RestrictedBiclusterGenerator setCheckpoint(
+			String checkpointFile, boolean resume) {
+		this.checkpointFile = checkpointFile;
+		this.resume = resume;
+		return this;
+	}
+
 	@Override
 	public String getName() {
 		return String.format("Restricted Bicluster Generator");
@@ -64,13 +81,42 @@ public class RestrictedBiclusterGenerator extends GeneratorBlock {
 				new RestrictedBronKerboschBipartiteV3(maxLevel);
 		restrictedBronKerboschBipartiteV3.setMinRows(minRows);
 		restrictedBronKerboschBipartiteV3.setMinColumns(minCols);
-		List<Bicluster> biclusters =
-				restrictedBronKerboschBipartiteV3
-				.findBiclusters(matrix);
+		Collection<? extends Bicluster> biclusters =
+				checkpointFile == null ? restrictedBronKerboschBipartiteV3
+						.findBiclusters(matrix)
+						: findBiclusters(restrictedBronKerboschBipartiteV3,
+								matrix);
 		LOGGER.debug(String.format("Found %1d biclusters.",
 				biclusters.size()));
 		LOGGER.debug("######################################");
 		return biclusters;
 	}
 
+	private Collection<? extends Bicluster> findBiclusters(
+			RestrictedBronKerboschBipartiteV3 restrictedBronKerboschBipartiteV3,
+			BinaryMatrix matrix) {
+		EnumerationCheckpoint checkpoint;
+		try {
+			checkpoint =
+					new EnumerationCheckpoint(checkpointFile, resume,
+							matrix, String.format(
+									"restricted maxLevel=%d minRows=%d minColumns=%d",
+									maxLevel, minRows, minCols));
+		} catch (IOException e) {
+			LOGGER.error(String.format(
+					"Could not open checkpoint %s, running without it.",
+					checkpointFile), e);
+			return restrictedBronKerboschBipartiteV3
+					.findBiclusters(matrix);
+		}
+		try {
+			restrictedBronKerboschBipartiteV3.setCheckpoint(checkpoint)
+			.findBiclusters(matrix, new BitSet(), new BitSet(),
+					checkpoint);
+		} finally {
+			checkpoint.close();
+		}
+		return checkpoint.getBiclusters();
+	}
+
 }
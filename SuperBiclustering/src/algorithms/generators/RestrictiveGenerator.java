@@ -19,7 +19,12 @@
 
 package algorithms.generators;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+
+import map.KeyValuePair;
+import map.MapController;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -44,7 +49,9 @@ import datatype.matrix.BinaryMatrix;
  *
  * This class is a wrapper for the actual algorithm in order to meet
  * the requirements of the GeneratorBlock interface. For the logic of
- * the algorithm, please see RestrictiveMatrixDegeneracy.
+ * the algorithm, please see RestrictiveMatrixDegeneracy. The peel
+ * itself is sequential, while the blocks it records are built in
+ * parallel on the MapController.
  *
  * @author "Oliver Voggenreiter"
  * @date Mar 7, 2013
@@ -77,9 +84,10 @@ public class RestrictiveGenerator extends GeneratorBlock {
 			BinaryMatrix matrix) {
 		LOGGER.debug("######## Restrictive Generator ########");
 
-		Collection<? extends Bicluster> superBiclusters =
-				RestrictiveMatrixDegeneracy.computeDegenerateBlocks(
-						matrix, minDegeneracy);
+		DegeneratePeeling peeling =
+				RestrictiveMatrixDegeneracy.computePeeling(matrix,
+						minDegeneracy);
+		List<Bicluster> superBiclusters = buildBlocks(peeling);
 
 		LOGGER.info(String.format("Created %1d Degenerate Blocks.",
 				superBiclusters.size()));
@@ -89,4 +97,36 @@ public class RestrictiveGenerator extends GeneratorBlock {
 		return superBiclusters;
 	}
 
+	/**
+	 * Builds the blocks recorded by the peel in parallel and returns
+	 * them in the order of the peel.
+	 */
+	private List<Bicluster> buildBlocks(DegeneratePeeling peeling) {
+		List<Bicluster> blocks = new ArrayList<Bicluster>();
+		if (peeling.getNumberOfBlocks() == 0) {
+			return blocks;
+		}
+
+		List<Integer> blockIndices =
+				new ArrayList<Integer>(peeling.getNumberOfBlocks());
+		for (int iBlock = 0; iBlock < peeling.getNumberOfBlocks(); iBlock++) {
+			blockIndices.add(iBlock);
+		}
+		List<KeyValuePair<Integer, Bicluster>> builtBlocks =
+				MapController.execute(new DegenerateBlockTask(peeling),
+						blockIndices);
+
+		Bicluster[] orderedBlocks =
+				new Bicluster[peeling.getNumberOfBlocks()];
+		for (KeyValuePair<Integer, Bicluster> block : builtBlocks) {
+			orderedBlocks[block.getKey()] = block.getValue();
+		}
+		for (Bicluster block : orderedBlocks) {
+			if (block != null) {
+				blocks.add(block);
+			}
+		}
+		return blocks;
+	}
+
 }
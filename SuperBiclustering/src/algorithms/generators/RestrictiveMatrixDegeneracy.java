@@ -20,13 +20,15 @@
 package algorithms.generators;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
+import util.BitUtils;
+import util.RandomStreams;
 import datatype.bicluster.Bicluster;
-import datatype.bicluster.BinaryVector;
-import datatype.bicluster.BitSetBicluster;
-import datatype.bicluster.BitSetBinaryVector;
 import datatype.matrix.BinaryMatrix;
+import datatype.matrix.PackedBinaryMatrix;
 
 /**
  * This alternate form of the MatrixDegeneracy forgoes calculating
@@ -51,167 +53,102 @@ public class RestrictiveMatrixDegeneracy {
 	 */
 	public static List<Bicluster> computeDegenerateBlocks(
 			BinaryMatrix matrix, int minSize) {
-		int[] counts = MatrixDegeneracy.computeNodeDegrees(matrix);
-		List<Bicluster> biclusters =
-				computeBlocks(counts, matrix, minSize);
+		DegeneratePeeling peeling = computePeeling(matrix, minSize);
+		DegenerateBlockTask blockTask =
+				new DegenerateBlockTask(peeling);
+		List<Bicluster> biclusters = new ArrayList<Bicluster>();
+
+		for (int iBlock = 0; iBlock < peeling.getNumberOfBlocks(); iBlock++) {
+			Bicluster bicluster = blockTask.buildBlock(iBlock);
+			if (bicluster != null)
+				biclusters.add(bicluster);
+		}
 
 		return biclusters;
 	}
 
-	private static List<Bicluster> computeBlocks(
-			int[] connectivityValues, BinaryMatrix matrix,
+	/**
+	 * Runs only the sequential part of computeDegenerateBlocks: the
+	 * degeneracy peel, recording when each row/column was removed and
+	 * which removals start a block. The blocks themselves can then be
+	 * built independently with a DegenerateBlockTask.
+	 */
+	public static DegeneratePeeling computePeeling(BinaryMatrix matrix,
 			int minThreshold) {
-		List<Bicluster> biclusters = new ArrayList<Bicluster>();
-		int[] connectivity = connectivityValues.clone();
-		BinaryVector rowsLeft =
-				new BitSetBinaryVector(matrix.getNumRows(), true);
-		BinaryVector columnsLeft =
-				new BitSetBinaryVector(matrix.getNumColumns(), true);
-		List<List<Integer>> degeneracyGroups =
-				MatrixDegeneracy
-				.computeDegeneracyGroups(connectivity);
-
-		while (rowsLeft.cardinality() >= minThreshold
-				&& columnsLeft.cardinality() >= minThreshold) {
-			int firstNonEmptyGroup =
-					MatrixDegeneracy
-					.computeIndexOfFirstNonEmptyList(degeneracyGroups);
-
-			int chosenPosition =
-					MatrixDegeneracy
-					.chooseRandomNodePositionInGroup(
-							firstNonEmptyGroup,
-							degeneracyGroups);
+		PackedBinaryMatrix rowsMatrix = PackedBinaryMatrix.pack(matrix);
+		PackedBinaryMatrix columnsMatrix = rowsMatrix.getTransposed();
+		int numRows = matrix.getNumRows();
+		int[] connectivityValues =
+				MatrixDegeneracy.computeNodeDegrees(rowsMatrix,
+						columnsMatrix);
+		int[] removalSteps = new int[connectivityValues.length];
+		Arrays.fill(removalSteps, DegeneratePeeling.NEVER_REMOVED);
+		int[] blockNodes = new int[connectivityValues.length];
+		int blockCount = 0;
+		long[] rowsLeft = BitUtils.newWords(numRows);
+		BitUtils.setRange(rowsLeft, numRows);
+		long[] columnsLeft = BitUtils.newWords(matrix.getNumColumns());
+		BitUtils.setRange(columnsLeft, matrix.getNumColumns());
+		int rowsLeftCount = numRows;
+		int columnsLeftCount = matrix.getNumColumns();
+		DegreeBucketQueue degeneracyGroups =
+				new DegreeBucketQueue(connectivityValues);
+		Random random =
+				RandomStreams.newRandom(
+						RestrictiveMatrixDegeneracy.class,
+						rowsMatrix.hashCode());
+
+		for (int step = 0; rowsLeftCount >= minThreshold
+				&& columnsLeftCount >= minThreshold; step++) {
+			int firstNonEmptyGroup = degeneracyGroups.getMinDegree();
 			int chosenNode =
-					degeneracyGroups.get(firstNonEmptyGroup).remove(
-							chosenPosition);
-			connectivity[chosenNode] = 0;
+					MatrixDegeneracy.removeRandomNode(
+							firstNonEmptyGroup, degeneracyGroups, random);
+			removalSteps[chosenNode] = step;
+			if (firstNonEmptyGroup >= minThreshold) {
+				blockNodes[blockCount++] = chosenNode;
+			}
 
-			if (chosenNode < matrix.getNumRows()) {
+			if (chosenNode < numRows) {
 				// Choice is a Row!
-				rowsLeft.set(chosenNode, false);
-				if (firstNonEmptyGroup >= minThreshold) {
-					Bicluster bicluster =
-							getDegenerateBicluster(chosenNode,
-									rowsLeft, columnsLeft, matrix,
-									minThreshold);
-					if (bicluster.getNumberOfRows() >= minThreshold)
-						biclusters.add(bicluster);
-				}
+				BitUtils.clear(rowsLeft, chosenNode);
+				rowsLeftCount--;
 				updateColumnNeighbours(chosenNode, degeneracyGroups,
-						connectivity, columnsLeft, matrix);
+						columnsLeft, rowsMatrix);
 			} else {
 				// Choice is Column!
-				columnsLeft.set(chosenNode - matrix.getNumRows(),
-						false);
-				if (firstNonEmptyGroup >= minThreshold) {
-					Bicluster bicluster =
-							getDegenerateBicluster(chosenNode,
-									rowsLeft, columnsLeft, matrix,
-									minThreshold);
-					if (bicluster.getNumberOfColumns() >= minThreshold)
-						biclusters.add(bicluster);
-				}
-				updateRowNeighbours(
-						chosenNode - matrix.getNumRows(),
-						degeneracyGroups, connectivity, rowsLeft,
-						matrix);
-			}
-
-		}
-
-		return biclusters;
-	}
-
-	private static Bicluster getDegenerateBicluster(int chosenNode,
-			BinaryVector rowsLeft, BinaryVector columnsLeft,
-			BinaryMatrix matrix, int minThreshold) {
-		Bicluster bicluster = new BitSetBicluster();
-
-		if (chosenNode < matrix.getNumRows()) {
-			bicluster.addRow(chosenNode);
-			for (int column : columnsLeft) {
-				if (matrix.get(chosenNode, column))
-					bicluster.addColumn(column);
-			}
-			for (int row : rowsLeft) {
-				int columnCount = 0;
-				for (int column : bicluster.getColumns()) {
-					if (matrix.get(row, column)) {
-						columnCount++;
-						if (columnCount >= minThreshold) {
-							// if ((float) columnCount /
-							// bicluster.getNumberOfColumns() >=
-							// 0.4f) {//minThreshold) {
-							bicluster.addRow(row);
-							break;
-						}
-					}
-				}
-			}
-		} else {
-			bicluster.addColumn(chosenNode - matrix.getNumRows());
-			for (int row : rowsLeft) {
-				if (matrix
-						.get(row, chosenNode - matrix.getNumRows()))
-					bicluster.addRow(row);
-			}
-			for (int column : columnsLeft) {
-				int rowCount = 0;
-				for (int row : bicluster.getRows()) {
-					if (matrix.get(row, column)) {
-						rowCount++;
-						if (rowCount >= minThreshold) {
-							// if ((float) rowCount /
-							// bicluster.getNumberOfRows() >= 0.4f){
-							// //minThreshold) {
-							bicluster.addColumn(column);
-							break;
-						}
-					}
-				}
+				BitUtils.clear(columnsLeft, chosenNode - numRows);
+				columnsLeftCount--;
+				updateRowNeighbours(chosenNode - numRows,
+						degeneracyGroups, rowsLeft, columnsMatrix);
 			}
 		}
 
-		return bicluster;
+		return new DegeneratePeeling(rowsMatrix, columnsMatrix,
+				removalSteps, Arrays.copyOf(blockNodes, blockCount),
+				minThreshold);
 	}
 
 	private static void updateColumnNeighbours(int row,
-			List<List<Integer>> degeneracyGroups,
-			int[] connectivityValues, BinaryVector columns,
-			BinaryMatrix matrix) {
-		for (int column : columns) {
-			if (matrix.get(row, column)) {
-				int connectedColumn = matrix.getNumRows() + column;
-				int connectedColumnPosition =
-						degeneracyGroups.get(
-								connectivityValues[connectedColumn])
-								.indexOf(connectedColumn);
-				degeneracyGroups.get(
-						connectivityValues[connectedColumn]).remove(
-								connectedColumnPosition);
-				connectivityValues[connectedColumn]--;
-				degeneracyGroups.get(
-						connectivityValues[connectedColumn]).add(
-								connectedColumn);
-			}
+			DegreeBucketQueue degeneracyGroups, long[] columnsLeft,
+			PackedBinaryMatrix rowsMatrix) {
+		long[] rowWords = rowsMatrix.getRowWords(row);
+		for (int column =
+				BitUtils.nextSetBitAnd(rowWords, columnsLeft, 0); column > -1; column =
+				BitUtils.nextSetBitAnd(rowWords, columnsLeft,
+						column + 1)) {
+			degeneracyGroups.decrement(rowsMatrix.getNumRows() + column);
 		}
 	}
 
 	private static void updateRowNeighbours(int column,
-			List<List<Integer>> degeneracyGroups,
-			int[] connectivity, BinaryVector rows,
-			BinaryMatrix matrix) {
-		for (int row : rows) {
-			if (matrix.get(row, column)) {
-				int connectedRowPosition =
-						degeneracyGroups.get(connectivity[row])
-						.indexOf(row);
-				degeneracyGroups.get(connectivity[row]).remove(
-						connectedRowPosition);
-				connectivity[row]--;
-				degeneracyGroups.get(connectivity[row]).add(row);
-			}
+			DegreeBucketQueue degeneracyGroups, long[] rowsLeft,
+			PackedBinaryMatrix columnsMatrix) {
+		long[] columnWords = columnsMatrix.getRowWords(column);
+		for (int row =
+				BitUtils.nextSetBitAnd(columnWords, rowsLeft, 0); row > -1; row =
+				BitUtils.nextSetBitAnd(columnWords, rowsLeft, row + 1)) {
+			degeneracyGroups.decrement(row);
 		}
 	}
 }
@@ -98,9 +98,16 @@ public class BlockSplitterTransformer extends TransformerBlock {
 		// SetCoverGroup superBlocks = new SetCoverGroup(matrix);
 		MapController.setThreadCount(coreCount);
 
+		// large sub blocks come back from the task and are split in
+		// the next round, spread over all threads
+		SplitTask task = new SplitTask(matrix, minSize, minDensity);
+		List<SplitTask.Block> pendingBlocks =
+				SplitTask.toBlocks(biclusters);
+		while (!pendingBlocks.isEmpty()) {
+			pendingBlocks = MapController.execute(task, pendingBlocks);
+		}
 		List<KeyValuePair<Integer, Bicluster>> denseBlocks =
-				MapController.execute(new SplitTask(matrix, minSize,
-						minDensity), biclusters);
+				task.getDenseBlocks();
 
 		Collections.sort(denseBlocks, new LevelComparator());
 
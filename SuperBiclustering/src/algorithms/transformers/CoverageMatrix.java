@@ -20,47 +20,128 @@
 package algorithms.transformers;
 
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 
+import util.BitUtils;
 import datatype.bicluster.Bicluster;
-import datatype.matrix.BasicFloatMatrix;
 import datatype.matrix.BinaryMatrix;
+import datatype.matrix.PackedBinaryMatrix;
 
-@SuppressWarnings("serial")
-public class CoverageMatrix extends BasicFloatMatrix {
+/**
+ * Counts how many biclusters cover each cell of a matrix.
+ *
+ * The counts are kept as 16 bit counters; a counter at its maximum
+ * value is saturated and the exact count of the cell is kept in an
+ * overflow map. Next to the counters a bitmap of the cells covered
+ * exactly once is maintained on every change, so the significant
+ * ones of a bicluster are a masked popcount over its rows. Rows are
+ * allocated when they are covered for the first time.
+ */
+public class CoverageMatrix {
 
-	public CoverageMatrix(int numRows, int numColumns) {
-		super(numRows, numColumns);
-	}
+	private static final int SATURATED = Character.MAX_VALUE;
+
+	private final int numRows;
+	private final int numColumns;
+	private final char[][] counts;
+	private final long[][] singles;
+	private final Map<Long, Integer> overflow =
+			new HashMap<Long, Integer>();
 
-	public CoverageMatrix(int numRows, int numColumns, float[][] data) {
-		super(numRows, numColumns, data);
+	public CoverageMatrix(int numRows, int numColumns) {
+		this.numRows = numRows;
+		this.numColumns = numColumns;
+		counts = new char[numRows][];
+		singles = new long[numRows][];
 	}
 
 	public CoverageMatrix(int numRows, int numColumns,
 			Collection<? extends Bicluster> biclusters) {
-		super(numRows, numColumns);
+		this(numRows, numColumns);
 		addOnes(biclusters);
 	}
 
+	public int getNumRows() {
+		return numRows;
+	}
+
+	public int getNumColumns() {
+		return numColumns;
+	}
+
+	/**
+	 * Returns the number of biclusters covering the cell.
+	 */
+	public int getCount(int row, int column) {
+		if (counts[row] == null) {
+			return 0;
+		}
+		int count = counts[row][column];
+		if (count == SATURATED) {
+			return overflow.get(getCellKey(row, column));
+		}
+		return count;
+	}
+
 	public void addOne(int row, int column) {
-		data[row][column]++;
+		if (counts[row] == null) {
+			counts[row] = new char[numColumns];
+			singles[row] = BitUtils.newWords(numColumns);
+		}
+		int count = counts[row][column];
+		if (count == SATURATED) {
+			Long key = getCellKey(row, column);
+			overflow.put(key, overflow.get(key) + 1);
+			return;
+		}
+		if (count + 1 == SATURATED) {
+			overflow.put(getCellKey(row, column), count + 1);
+		}
+		counts[row][column] = (char) (count + 1);
+		if (count == 0) {
+			BitUtils.set(singles[row], column);
+		} else if (count == 1) {
+			BitUtils.clear(singles[row], column);
+		}
 	}
 
 	public void removeOne(int row, int column) {
-		data[row][column]--;
+		int count = counts[row] == null ? 0 : counts[row][column];
+		if (count == 0) {
+			throw new IllegalStateException(String.format(
+					"Cell (%d, %d) is not covered.", row, column));
+		}
+		if (count == SATURATED) {
+			Long key = getCellKey(row, column);
+			int exact = overflow.get(key) - 1;
+			if (exact >= SATURATED) {
+				overflow.put(key, exact);
+				return;
+			}
+			overflow.remove(key);
+		}
+		counts[row][column] = (char) (count - 1);
+		if (count == 1) {
+			BitUtils.clear(singles[row], column);
+		} else if (count == 2) {
+			BitUtils.set(singles[row], column);
+		}
 	}
 
 	public void removeOnes(Bicluster bicluster) {
+		int[] columns = getColumns(bicluster);
 		for (int row : bicluster.getRows()) {
-			for (int column : bicluster.getColumns()) {
+			for (int column : columns) {
 				removeOne(row, column);
 			}
 		}
 	}
 
 	public void addOnes(Bicluster bicluster) {
+		int[] columns = getColumns(bicluster);
 		for (int row : bicluster.getRows()) {
-			for (int column : bicluster.getColumns()) {
+			for (int column : columns) {
 				addOne(row, column);
 			}
 		}
@@ -72,12 +153,61 @@ public class CoverageMatrix extends BasicFloatMatrix {
 		}
 	}
 
+	/**
+	 * Returns the number of ones of 'matrix' within the bicluster
+	 * that are covered by no other bicluster. Only the words from the
+	 * lowest to the highest column of the bicluster are counted; if
+	 * the bicluster has fewer columns than that, its cells are
+	 * checked one by one instead.
+	 */
+	public int computeSignificantOnesCount(Bicluster bicluster,
+			PackedBinaryMatrix matrix) {
+		int[] columns = getColumns(bicluster);
+		ColumnMask mask = new ColumnMask(columns);
+		int significantOnes = 0;
+		for (int row : bicluster.getRows()) {
+			long[] single = singles[row];
+			if (single == null) {
+				continue;
+			}
+			long[] rowWords = matrix.getRowWords(row);
+			if (mask.words == null) {
+				for (int column : columns) {
+					if (BitUtils.get(single, column)
+							&& BitUtils.get(rowWords, column)) {
+						significantOnes++;
+					}
+				}
+			} else {
+				for (int i = 0; i < mask.words.length; i++) {
+					int word = mask.fromWord + i;
+					significantOnes +=
+							Long.bitCount(single[word] & rowWords[word]
+									& mask.words[i]);
+				}
+			}
+		}
+		return significantOnes;
+	}
+
+	/**
+	 * Same as above for any matrix, checking the cells covered once
+	 * one by one.
+	 */
 	public int computeSignificantOnesCount(Bicluster bicluster,
 			BinaryMatrix matrix) {
+		if (matrix instanceof PackedBinaryMatrix) {
+			return computeSignificantOnesCount(bicluster,
+					(PackedBinaryMatrix) matrix);
+		}
+		int[] columns = getColumns(bicluster);
 		int significantOnes = 0;
 		for (int row : bicluster.getRows()) {
-			for (int column : bicluster.getColumns()) {
-				if (this.get(row, column) == 1
+			if (singles[row] == null) {
+				continue;
+			}
+			for (int column : columns) {
+				if (BitUtils.get(singles[row], column)
 						&& matrix.get(row, column)) {
 					significantOnes++;
 				}
@@ -85,4 +215,48 @@ public class CoverageMatrix extends BasicFloatMatrix {
 		}
 		return significantOnes;
 	}
+
+	private int[] getColumns(Bicluster bicluster) {
+		int[] columns = new int[bicluster.getNumberOfColumns()];
+		int index = 0;
+		for (int column : bicluster.getColumns()) {
+			columns[index++] = column;
+		}
+		return columns;
+	}
+
+	private Long getCellKey(int row, int column) {
+		return (long) row * numColumns + column;
+	}
+
+	/**
+	 * The columns of a bicluster as the words [fromWord, fromWord +
+	 * words.length) of a row. 'words' is null if there are fewer
+	 * columns than words, so that checking each cell is cheaper.
+	 */
+	private static class ColumnMask {
+		private int fromWord = 0;
+		private long[] words = null;
+
+		private ColumnMask(int[] columns) {
+			if (columns.length == 0) {
+				return;
+			}
+			int min = Integer.MAX_VALUE;
+			int max = -1;
+			for (int column : columns) {
+				min = Math.min(min, column);
+				max = Math.max(max, column);
+			}
+			fromWord = min >>> 6;
+			int wordCount = (max >>> 6) + 1 - fromWord;
+			if (columns.length < wordCount) {
+				return;
+			}
+			words = new long[wordCount];
+			for (int column : columns) {
+				words[(column >>> 6) - fromWord] |= 1L << column;
+			}
+		}
+	}
 }
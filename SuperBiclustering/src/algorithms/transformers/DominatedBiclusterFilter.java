@@ -0,0 +1,84 @@
+/* SuperBiclustering - A biclustering algorithm designed to
+ * handle sparse and noisy input.
+ * Copyright (C) 2014 Oliver Voggenreiter
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package algorithms.transformers;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import util.BiclusterOverlapIndex;
+import algorithms.TransformerBlock;
+import datatype.bicluster.Bicluster;
+import datatype.matrix.BinaryMatrix;
+
+/**
+ * Removes biclusters that are strictly dominated by another
+ * bicluster of the input, i.e. whose rows and columns are all part
+ * of a larger bicluster (see BiclusterUtils.strictlyDominates).
+ * Equal biclusters do not dominate each other. The dominating
+ * biclusters are found through a BiclusterOverlapIndex, so each
+ * bicluster is only compared to the biclusters in its least
+ * covered row or column.
+ */
+public class DominatedBiclusterFilter extends TransformerBlock {
+
+	private static final Logger LOGGER = LoggerFactory
+			.getLogger(DominatedBiclusterFilter.class);
+
+	@Override
+	public String getName() {
+		return "Dominated Bicluster Filter";
+	}
+
+	@Override
+	public String getShortName() {
+		return "DBF";
+	}
+
+	@Override
+	public Collection<? extends Bicluster> findBlocks(
+			Collection<? extends Bicluster> biclusters,
+			BinaryMatrix matrix) {
+		LOGGER.info("####### Dominated Bicluster Filter #######");
+		LOGGER.info("Biclusters before filtering: "
+				+ biclusters.size());
+
+		List<Bicluster> input = new ArrayList<Bicluster>(biclusters);
+		BiclusterOverlapIndex index =
+				new BiclusterOverlapIndex(input, matrix.getNumRows(),
+						matrix.getNumColumns());
+
+		List<Bicluster> superBiclusters = new ArrayList<Bicluster>();
+		for (Bicluster bicluster : input) {
+			if (index.getDominating(bicluster).length == 0) {
+				superBiclusters.add(bicluster);
+			}
+		}
+
+		LOGGER.info("Biclusters after filtering: "
+				+ superBiclusters.size());
+		LOGGER.info("##########################################");
+
+		return superBiclusters;
+	}
+
+}
@@ -19,22 +19,31 @@
 
 package algorithms.transformers;
 
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 
 import map.MapAlgorithm;
-import util.BiclusterUtils;
+import util.BitUtils;
 import datatype.bicluster.Bicluster;
-import datatype.bicluster.BinaryVector;
-import datatype.bicluster.BitSetBinaryVector;
 import datatype.matrix.BinaryMatrix;
+import datatype.matrix.PackedBinaryMatrix;
 
 /**
  * The GreedyBiclusterExpanderTask takes a block and searches for
  * rows in the matrix that are not part of the bicluster that contain
  * at least minDensity columns compared to the biclusters already
  * present rows. Subsequently it does the same with columns. This is
- * not recursively called, in order to minimize accidental explosions
- * in bicluster size.
+ * repeated at most iterationCount times, in order to minimize
+ * accidental explosions in bicluster size.
+ *
+ * The ones of every row within the bicluster's columns (and vice
+ * versa) are counted once and then updated with the added columns
+ * only, either through the columns' own ones or with word-level
+ * popcounts, whichever is cheaper. After the first iteration only
+ * the rows and columns whose counts changed are checked again; the
+ * others cannot have become dense enough. An iteration that adds
+ * nothing ends the expansion.
  *
  * @author "Oliver Voggenreiter"
  * @date Mar 12, 2013
@@ -45,50 +54,165 @@ MapAlgorithm<Bicluster, Bicluster> {
 
 	private float minDensity;
 	private int iterationCount;
-	private BinaryMatrix matrix;
+	private PackedBinaryMatrix rowsMatrix;
+	private PackedBinaryMatrix columnsMatrix;
 
 	public GreedyBiclusterExpanderTask(float minDensity,
 			int iterationCount, BinaryMatrix matrix) {
 		this.minDensity = minDensity;
 		this.iterationCount = iterationCount;
-		this.matrix = matrix;
+		this.rowsMatrix = PackedBinaryMatrix.pack(matrix);
+		this.columnsMatrix = rowsMatrix.getTransposed();
 	}
 
 	@Override
 	public List<Bicluster> map(List<Bicluster> biclusters) {
+		Side rows = new Side(rowsMatrix, columnsMatrix);
+		Side columns = new Side(columnsMatrix, rowsMatrix);
 
 		for (Bicluster bicluster : biclusters) {
+			rows.reset(bicluster.getRowIterator());
+			columns.reset(bicluster.getColumnIterator());
+			rows.addOnes(columns.members, columns.memberCount);
+			columns.addOnes(rows.members, rows.memberCount);
+
 			for (int i = 0; i < iterationCount; i++) {
-				addBestRowsAndColumns(bicluster, matrix);
+				long[] newRows = rows.findDenseLines(columns.memberCount);
+				long[] newColumns =
+						columns.findDenseLines(rows.memberCount);
+				int newRowCount = rows.addMembers(newRows);
+				int newColumnCount = columns.addMembers(newColumns);
+				if (newRowCount == 0 && newColumnCount == 0) {
+					break;
+				}
+				for (int row = BitUtils.nextSetBit(newRows, 0); row > -1; row =
+						BitUtils.nextSetBit(newRows, row + 1)) {
+					bicluster.addRow(row);
+				}
+				for (int column = BitUtils.nextSetBit(newColumns, 0); column > -1; column =
+						BitUtils.nextSetBit(newColumns, column + 1)) {
+					bicluster.addColumn(column);
+				}
+				rows.addOnes(newColumns, newColumnCount);
+				columns.addOnes(newRows, newRowCount);
 			}
 		}
 
 		return biclusters;
 	}
 
-	private void addBestRowsAndColumns(Bicluster bicluster,
-			BinaryMatrix matrix) {
-		BinaryVector newRows = new BitSetBinaryVector();
-		for (int i = 0; i < matrix.getNumRows(); i++) {
-			if (!bicluster.containsRow(i)
-					&& BiclusterUtils.getDensity(i, bicluster
-							.getColumns(), matrix) >= minDensity) {
-				newRows.set(i);
+	/**
+	 * The rows (or columns) of the matrix with respect to one
+	 * bicluster: which of them are members, how many ones each has
+	 * within the bicluster's columns (or rows), and which counts
+	 * changed since the last check.
+	 */
+	private class Side {
+		private final PackedBinaryMatrix lines;
+		private final PackedBinaryMatrix crossLines;
+		private final float averageCrossDegree;
+		private final int[] ones;
+		private long[] members;
+		private int memberCount;
+		private long[] changed;
+		private boolean checkAll;
+
+		private Side(PackedBinaryMatrix lines, PackedBinaryMatrix crossLines) {
+			this.lines = lines;
+			this.crossLines = crossLines;
+			long totalOnes = 0;
+			for (int i = 0; i < crossLines.getNumRows(); i++) {
+				totalOnes +=
+						BitUtils.cardinality(crossLines.getRowWords(i));
+			}
+			this.averageCrossDegree =
+					(float) totalOnes
+							/ Math.max(crossLines.getNumRows(), 1);
+			this.ones = new int[lines.getNumRows()];
+		}
+
+		private void reset(Iterator<Integer> memberIterator) {
+			members = BitUtils.newWords(lines.getNumRows());
+			memberCount = 0;
+			while (memberIterator.hasNext()) {
+				int member = memberIterator.next();
+				if (!BitUtils.get(members, member)) {
+					BitUtils.set(members, member);
+					memberCount++;
+				}
 			}
+			Arrays.fill(ones, 0);
+			changed = BitUtils.newWords(lines.getNumRows());
+			checkAll = true;
 		}
 
-		BinaryVector newColumns = new BitSetBinaryVector();
-		for (int i = 0; i < matrix.getNumColumns(); i++) {
-			if (!bicluster.containsColumn(i)
-					&& BiclusterUtils.getDensity(
-							bicluster.getRows(), i, matrix) >= minDensity) {
-				newColumns.set(i);
+		/**
+		 * Adds the ones of all lines within the 'added' cross lines.
+		 */
+		private void addOnes(long[] added, int addedCount) {
+			int wordCount = BitUtils.getWordCount(crossLines.getNumRows());
+			if (addedCount * averageCrossDegree < (float) lines
+					.getNumRows() * wordCount) {
+				for (int cross = BitUtils.nextSetBit(added, 0); cross > -1; cross =
+						BitUtils.nextSetBit(added, cross + 1)) {
+					long[] lineWords = crossLines.getRowWords(cross);
+					for (int line = BitUtils.nextSetBit(lineWords, 0); line > -1; line =
+							BitUtils.nextSetBit(lineWords, line + 1)) {
+						ones[line]++;
+						BitUtils.set(changed, line);
+					}
+				}
+			} else {
+				for (int line = 0; line < ones.length; line++) {
+					int count =
+							BitUtils.cardinalityAnd(
+									lines.getRowWords(line), added);
+					if (count > 0) {
+						ones[line] += count;
+						BitUtils.set(changed, line);
+					}
+				}
 			}
 		}
 
-		bicluster.addRows(newRows);
-		bicluster.addColumns(newColumns);
+		/**
+		 * Returns the non-member lines whose density within the
+		 * 'crossCount' cross lines of the bicluster is at least
+		 * minDensity. Lines whose count did not change since the last
+		 * call are skipped, unless zero counts can be dense enough.
+		 */
+		private long[] findDenseLines(int crossCount) {
+			long[] dense = BitUtils.newWords(lines.getNumRows());
+			if (checkAll || minDensity <= 0) {
+				for (int line = 0; line < ones.length; line++) {
+					if (!BitUtils.get(members, line)
+							&& (float) ones[line] / crossCount >= minDensity) {
+						BitUtils.set(dense, line);
+					}
+				}
+			} else {
+				for (int line = BitUtils.nextSetBit(changed, 0); line > -1; line =
+						BitUtils.nextSetBit(changed, line + 1)) {
+					if (!BitUtils.get(members, line)
+							&& (float) ones[line] / crossCount >= minDensity) {
+						BitUtils.set(dense, line);
+					}
+				}
+			}
+			Arrays.fill(changed, 0L);
+			checkAll = false;
+			return dense;
+		}
 
+		private int addMembers(long[] newMembers) {
+			int count = 0;
+			for (int i = 0; i < members.length; i++) {
+				members[i] |= newMembers[i];
+				count += Long.bitCount(newMembers[i]);
+			}
+			memberCount += count;
+			return count;
+		}
 	}
 
 }
@@ -24,31 +24,48 @@ import java.util.BitSet;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
 import java.util.Random;
-import java.util.TreeMap;
 
 import map.KeyValuePair;
 import map.MapAlgorithm;
+import util.BiclusterUtils;
+import util.BitUtils;
+import util.IndexedMinHeap;
+import util.RandomStreams;
 import datatype.bicluster.Bicluster;
 import datatype.bicluster.BinaryVector;
 import datatype.bicluster.BitSetBicluster;
 import datatype.matrix.BinaryMatrix;
+import datatype.matrix.PackedBinaryMatrix;
 
+/**
+ * Drills into each block for a dense sub part: the row or column
+ * with the most ones within the block is kept and all columns or rows
+ * where it has a zero are cut off, until the block is dense enough.
+ *
+ * The block is copied into local packed rows and columns. The ones of
+ * every row and column within the block and the ones and area of the
+ * block are updated with every cut, and the rows and columns left to
+ * choose from are kept in a heap by their number of ones.
+ */
 public class GreedyDegenerativeBlockTask
 implements
 MapAlgorithm<KeyValuePair<Integer, Bicluster>, KeyValuePair<Integer, Bicluster>> {
 
-	private static float MIN_DENSITY;
-	private static BinaryMatrix MATRIX;
-	private static boolean RANDOMIZE_CHOICE;
-	private Random rand = new Random();
+	private final float minDensity;
+	private final PackedBinaryMatrix matrix;
+	private final boolean randomizeChoice;
 
+	/**
+	 * If 'randomChoice' is set, each step keeps the row or column
+	 * with the most or the second most ones with equal probability,
+	 * using a random stream keyed by the content of each bicluster.
+	 */
 	public GreedyDegenerativeBlockTask(float minDensity,
 			BinaryMatrix matrix, boolean randomChoice) {
-		MIN_DENSITY = minDensity;
-		MATRIX = matrix;
-		RANDOMIZE_CHOICE = randomChoice;
+		this.minDensity = minDensity;
+		this.matrix = PackedBinaryMatrix.pack(matrix);
+		this.randomizeChoice = randomChoice;
 	}
 
 	@Override
@@ -56,117 +73,200 @@ MapAlgorithm<KeyValuePair<Integer, Bicluster>, KeyValuePair<Integer, Bicluster>>
 			List<KeyValuePair<Integer, Bicluster>> keyValuePairs) {
 		List<KeyValuePair<Integer, Bicluster>> tuples =
 				new ArrayList<KeyValuePair<Integer, Bicluster>>();
+		int[] columnIndices = new int[matrix.getNumColumns()];
+		long[] columnMask = BitUtils.newWords(matrix.getNumColumns());
 
 		for (KeyValuePair<Integer, Bicluster> bicluster : keyValuePairs) {
-			Bicluster denseBicluster = bicluster.getValue().clone();
+			Random rand =
+					RandomStreams.newRandom(
+							GreedyDegenerativeBlockTask.class,
+							BiclusterUtils.getContentHash(bicluster
+									.getValue()));
 
-			tuples.add(new KeyValuePair<Integer, Bicluster>(1,
-					getDenseSubPartThingy(denseBicluster, MATRIX)));
+			Drill drill =
+					new Drill(bicluster.getValue(), columnIndices,
+							columnMask);
+			tuples.add(new KeyValuePair<Integer, Bicluster>(1, drill
+					.getDenseSubPartThingy(rand)));
 		}
 
 		return tuples;
 	}
 
-	private Bicluster getDenseSubPartThingy(Bicluster bicluster,
-			BinaryMatrix matrix) {
-		BinaryVector rows = bicluster.getRows();
-		BinaryVector rowsToIterate = bicluster.getRows();
-		BinaryVector columns = bicluster.getColumns();
-		BinaryVector columnsToIterate = bicluster.getColumns();
-		int[] rowCardinalities = new int[rows.cardinality()];
-		int[] columnCardinalities = new int[columns.cardinality()];
-		Map<Integer, Integer> rowsToIndex =
-				new TreeMap<Integer, Integer>();
-		Map<Integer, Integer> columnsToIndex =
-				new TreeMap<Integer, Integer>();
+	/**
+	 * The block being drilled, in local indices: rows are 0..R-1 and
+	 * columns are R..R+C-1 in the heap of lines left to keep.
+	 */
+	private class Drill {
+		private final int[] rows;
+		private final int[] columns;
+		private final long[][] rowCells;
+		private final long[][] columnCells;
+		private final long[] rowMembers;
+		private final long[] columnMembers;
+		private final int[] rowOnes;
+		private final int[] columnOnes;
+		private final IndexedMinHeap candidates;
+		private long ones = 0;
+		private int rowCount;
+		private int columnCount;
 
-		int columnIndex = 0;
-		for (int column : columns) {
-			columnsToIndex.put(column, columnIndex);
-			columnIndex++;
-		}
+		/**
+		 * 'columnIndices' and 'columnMask' are scratch space over the
+		 * columns of the matrix; the mask is left cleared.
+		 */
+		private Drill(Bicluster bicluster, int[] columnIndices,
+				long[] columnMask) {
+			rows = toArray(bicluster.getRows());
+			columns = toArray(bicluster.getColumns());
+			rowCount = rows.length;
+			columnCount = columns.length;
+			rowCells = new long[rowCount][];
+			columnCells = new long[columnCount][];
+			rowMembers = BitUtils.newWords(rowCount);
+			columnMembers = BitUtils.newWords(columnCount);
+			BitUtils.setRange(rowMembers, rowCount);
+			BitUtils.setRange(columnMembers, columnCount);
+			rowOnes = new int[rowCount];
+			columnOnes = new int[columnCount];
 
-		int rowIndex = 0;
-		for (int row : rows) {
-			rowsToIndex.put(row, rowIndex);
-			for (int column : columns) {
-				if (matrix.get(row, column)) {
-					rowCardinalities[rowIndex]++;
-					columnCardinalities[columnsToIndex.get(column)]++;
+			for (int i = 0; i < columnCount; i++) {
+				columnIndices[columns[i]] = i;
+				BitUtils.set(columnMask, columns[i]);
+				columnCells[i] = BitUtils.newWords(rowCount);
+			}
+			for (int i = 0; i < rowCount; i++) {
+				rowCells[i] = BitUtils.newWords(columnCount);
+				long[] rowWords = matrix.getRowWords(rows[i]);
+				for (int column = BitUtils.nextSetBitAnd(rowWords, columnMask, 0); column > -1; column =
+						BitUtils.nextSetBitAnd(rowWords, columnMask,
+								column + 1)) {
+					int j = columnIndices[column];
+					BitUtils.set(rowCells[i], j);
+					BitUtils.set(columnCells[j], i);
+					rowOnes[i]++;
+					columnOnes[j]++;
 				}
+				ones += rowOnes[i];
+			}
+			for (int i = 0; i < columnCount; i++) {
+				BitUtils.clear(columnMask, columns[i]);
+			}
+
+			candidates = new IndexedMinHeap(rowCount + columnCount);
+			for (int i = 0; i < rowCount; i++) {
+				candidates.add(i, -rowOnes[i]);
+			}
+			for (int j = 0; j < columnCount; j++) {
+				candidates.add(rowCount + j, -columnOnes[j]);
 			}
-			rowIndex++;
 		}
 
-		while (getDensity(rows, columns, matrix) < MIN_DENSITY) {
-			int maxOnes = 0;
-			int bestNode = -1;
-			boolean isRow = true;
-			for (int row : rowsToIterate) {
-				if (rowCardinalities[rowsToIndex.get(row)] > maxOnes) {
-					if (!RANDOMIZE_CHOICE || rand.nextFloat() > 0.5f) {
-						maxOnes =
-								rowCardinalities[rowsToIndex
-								                 .get(row)];
-						bestNode = row;
-					}
-				}
+		private int[] toArray(BinaryVector vector) {
+			int[] array = new int[vector.cardinality()];
+			int index = 0;
+			for (int element : vector) {
+				array[index++] = element;
 			}
-			for (int column : columnsToIterate) {
-				if (columnCardinalities[columnsToIndex.get(column)] > maxOnes) {
-					if (!RANDOMIZE_CHOICE || rand.nextFloat() > 0.5f) {
-						maxOnes =
-								columnCardinalities[columnsToIndex
-								                    .get(column)];
-						bestNode = column;
-						isRow = false;
-					}
+			return array;
+		}
+
+		private Bicluster getDenseSubPartThingy(Random rand) {
+			while ((float) ones / ((long) rowCount * columnCount) < minDensity) {
+				int best = chooseLine(rand);
+				if (best == -1) {
+					break;
+				}
+				if (best < rows.length) {
+					cutColumns(best);
+				} else {
+					cutRows(best - rows.length);
 				}
 			}
-			if (bestNode == -1) {
-				break;
+
+			Bicluster denseBlock = new BitSetBicluster();
+			for (int i = BitUtils.nextSetBit(rowMembers, 0); i > -1; i =
+					BitUtils.nextSetBit(rowMembers, i + 1)) {
+				denseBlock.addRow(rows[i]);
+			}
+			for (int j = BitUtils.nextSetBit(columnMembers, 0); j > -1; j =
+					BitUtils.nextSetBit(columnMembers, j + 1)) {
+				denseBlock.addColumn(columns[j]);
 			}
-			if (isRow) {
-				for (int column : columns) {
-					if (matrix.get(bestNode, column)) {
-						columnCardinalities[columnsToIndex
-						                    .get(column)]--;
-					} else {
-						columnsToIterate.set(column, false);
-						columns.set(column, false);
-					}
+			return denseBlock;
+		}
+
+		/**
+		 * Takes the line to keep next out of the candidates, or
+		 * returns -1 if no candidate has any ones left.
+		 */
+		private int chooseLine(Random rand) {
+			if (candidates.isEmpty()
+					|| candidates.getPriority(candidates.peek()) >= 0) {
+				return -1;
+			}
+			int best = candidates.poll();
+			if (randomizeChoice && !candidates.isEmpty()
+					&& candidates.getPriority(candidates.peek()) < 0
+					&& rand.nextBoolean()) {
+				int second = candidates.poll();
+				candidates.add(best, best < rows.length ? -rowOnes[best]
+						: -columnOnes[best - rows.length]);
+				best = second;
+			}
+			return best;
+		}
+
+		/**
+		 * Removes the columns in which 'row' has a zero.
+		 */
+		private void cutColumns(int row) {
+			long[] cut = new long[columnMembers.length];
+			BitUtils.andNot(cut, columnMembers, rowCells[row]);
+			for (int j = BitUtils.nextSetBit(cut, 0); j > -1; j =
+					BitUtils.nextSetBit(cut, j + 1)) {
+				BitUtils.clear(columnMembers, j);
+				columnCount--;
+				ones -= columnOnes[j];
+				if (candidates.contains(rows.length + j)) {
+					candidates.remove(rows.length + j);
 				}
-				rowsToIterate.set(bestNode, false);
-			} else {
-				for (int row : rows) {
-					if (matrix.get(row, bestNode)) {
-						rowCardinalities[rowsToIndex.get(row)]--;
-					} else {
-						rowsToIterate.set(row, false);
-						rows.set(row, false);
+				long[] cells = columnCells[j];
+				for (int i = BitUtils.nextSetBitAnd(cells, rowMembers, 0); i > -1; i =
+						BitUtils.nextSetBitAnd(cells, rowMembers, i + 1)) {
+					rowOnes[i]--;
+					if (candidates.contains(i)) {
+						candidates.setPriority(i, -rowOnes[i]);
 					}
 				}
-				columnsToIterate.set(bestNode, false);
 			}
 		}
 
-		Bicluster denseBlock = new BitSetBicluster();
-		denseBlock.addRows(rows);
-		denseBlock.addColumns(columns);
-		return denseBlock;
-	}
-
-	private float getDensity(BinaryVector rows,
-			BinaryVector columns, BinaryMatrix matrix) {
-		int size = rows.cardinality() * columns.cardinality();
-		int count = 0;
-		for (int row : rows) {
-			for (int column : columns) {
-				if (matrix.get(row, column))
-					count++;
+		/**
+		 * Removes the rows in which 'column' has a zero.
+		 */
+		private void cutRows(int column) {
+			long[] cut = new long[rowMembers.length];
+			BitUtils.andNot(cut, rowMembers, columnCells[column]);
+			for (int i = BitUtils.nextSetBit(cut, 0); i > -1; i =
+					BitUtils.nextSetBit(cut, i + 1)) {
+				BitUtils.clear(rowMembers, i);
+				rowCount--;
+				ones -= rowOnes[i];
+				if (candidates.contains(i)) {
+					candidates.remove(i);
+				}
+				long[] cells = rowCells[i];
+				for (int j = BitUtils.nextSetBitAnd(cells, columnMembers, 0); j > -1; j =
+						BitUtils.nextSetBitAnd(cells, columnMembers, j + 1)) {
+					columnOnes[j]--;
+					if (candidates.contains(rows.length + j)) {
+						candidates.setPriority(rows.length + j,
+								-columnOnes[j]);
+					}
+				}
 			}
 		}
-		return (float) count / size;
 	}
 
 	@SuppressWarnings("unused")
@@ -20,21 +20,35 @@
 package algorithms.transformers;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import map.MapAlgorithm;
+import util.BitUtils;
 import datatype.bicluster.Bicluster;
 import datatype.bicluster.BinaryVector;
 import datatype.bicluster.BitSetBicluster;
 import datatype.matrix.BinaryMatrix;
-import datatype.matrix.BitSetBinaryMatrix;
+import datatype.matrix.PackedBinaryMatrix;
 
+/**
+ * Splits each bicluster into dense parts that are grown greedily
+ * from the ones that are not covered by an earlier part yet. A row
+ * (column) is scored with five points per one within the columns
+ * (rows) of the part and one point per one within the remaining
+ * columns (rows) of the bicluster, which is kept up to date while
+ * the part grows instead of being recounted.
+ *
+ * Each map call works on a local copy of the bicluster's cells and
+ * coverage, sized to the bicluster and reused for all biclusters of
+ * the call.
+ */
 public class GreedySplitTask implements
 MapAlgorithm<Bicluster, Bicluster> {
 
 	private float minDensity = 1f;
 	private int minSize = 10;
-	private BinaryMatrix matrix;
+	private PackedBinaryMatrix matrix;
 
 	public void setMinDensity(float density) {
 		this.minDensity = density;
@@ -45,33 +59,33 @@ MapAlgorithm<Bicluster, Bicluster> {
 	}
 
 	public void setMatrix(BinaryMatrix binaryMatrix) {
-		this.matrix = binaryMatrix;
+		this.matrix = PackedBinaryMatrix.pack(binaryMatrix);
 	}
 
 	@Override
 	public List<Bicluster> map(List<Bicluster> inputValues) {
 		List<Bicluster> denseBiclusters = new ArrayList<Bicluster>();
+		Workspace workspace = new Workspace();
 
 		for (Bicluster bicluster : inputValues) {
-			denseBiclusters.addAll(breakBicluster(bicluster));
+			denseBiclusters.addAll(breakBicluster(bicluster, workspace));
 		}
 
 		return denseBiclusters;
 	}
 
-	private List<Bicluster> breakBicluster(Bicluster bicluster) {
+	private List<Bicluster> breakBicluster(Bicluster bicluster,
+			Workspace workspace) {
 		List<Bicluster> biclusterParts = new ArrayList<Bicluster>();
-		BinaryMatrix coverage =
-				new BitSetBinaryMatrix(matrix.getNumRows(), matrix
-						.getNumColumns());
-
-		for (int iRow : bicluster.getRows()) {
-			for (int iColumn : bicluster.getColumns()) {
-				if (matrix.get(iRow, iColumn)
-						&& !coverage.get(iRow, iColumn)) {
-					Bicluster part =
-							buildBicluster(iRow, iColumn, bicluster);
-					addCoverage(coverage, part);
+		workspace.load(bicluster);
+
+		for (int iRow = 0; iRow < workspace.rowCount; iRow++) {
+			long[] rowWords = workspace.cells[iRow];
+			for (int iColumn = BitUtils.nextSetBit(rowWords, 0); iColumn > -1; iColumn =
+					BitUtils.nextSetBit(rowWords, iColumn + 1)) {
+				if (!BitUtils.get(workspace.coverage[iRow], iColumn)) {
+					buildBicluster(iRow, iColumn, workspace);
+					Bicluster part = workspace.addPartCoverage();
 					if (part.getNumberOfRows() >= minSize
 							&& part.getNumberOfColumns() >= minSize) {
 						biclusterParts.add(part);
@@ -83,109 +97,75 @@ MapAlgorithm<Bicluster, Bicluster> {
 		return biclusterParts;
 	}
 
-	private void addCoverage(BinaryMatrix coverage, Bicluster part) {
-		for (int iRow : part.getRows()) {
-			for (int iColumn : part.getColumns()) {
-				coverage.set(iRow, iColumn);
-			}
-		}
-	}
-
-	private Bicluster buildBicluster(int row, int column,
-			Bicluster bicluster) {
-		Bicluster densePart = new BitSetBicluster();
-		densePart.addColumn(column);
-		densePart.addRow(row);
+	/**
+	 * Grows the part of the workspace from the cell (row, column),
+	 * both given as local indices.
+	 */
+	private void buildBicluster(int row, int column, Workspace w) {
+		w.startPart(row, column);
 		int numberOfOnes = 1;
 		int partSize = 1;
 
-		BinaryVector columns = bicluster.getColumns().clone();
-		columns.set(column, false);
-		BinaryVector rows = bicluster.getRows().clone();
-		rows.set(row, false);
-
-		boolean columnsLeft = columns.cardinality() > 0;
-		boolean rowsLeft = rows.cardinality() > 0;
+		boolean columnsLeft = w.columnCount > 1;
+		boolean rowsLeft = w.rowCount > 1;
+		int rowCandidates = w.rowCount - 1;
+		int columnCandidates = w.columnCount - 1;
 
 		while (columnsLeft || rowsLeft) {
 			boolean isRow = true;
 			int bestScore = -1;
 			int best = -1;
 			if (rowsLeft) {
-				for (int iRow : rows) {
-					int score = 0;
-					for (int iColumn : densePart.getColumns()) {
-						if (matrix.get(iRow, iColumn)) {
-							score += 5;
-						}
-					}
-					for (int iColumn : columns) {
-						if (matrix.get(iRow, iColumn)) {
-							score += 1;
+				for (int iRow = 0; iRow < w.rowCount; iRow++) {
+					if (!w.partRows[iRow]) {
+						int score = w.rowTotals[iRow] + 4 * w.rowOnes[iRow];
+						if (score > bestScore) {
+							best = iRow;
+							bestScore = score;
 						}
 					}
-					if (score > bestScore) {
-						best = iRow;
-						bestScore = score;
-					}
 				}
 			}
 			if (columnsLeft) {
-				for (int iColumn : columns) {
-					int score = 0;
-					for (int iRow : densePart.getRows()) {
-						if (matrix.get(iRow, iColumn)) {
-							score += 5;
+				for (int iColumn = 0; iColumn < w.columnCount; iColumn++) {
+					if (!w.partColumns[iColumn]) {
+						int score =
+								w.columnTotals[iColumn] + 4
+										* w.columnOnes[iColumn];
+						if (score > bestScore) {
+							best = iColumn;
+							bestScore = score;
+							isRow = false;
 						}
 					}
-					for (int iRow : rows) {
-						if (matrix.get(iRow, iColumn)) {
-							score += 1;
-						}
-					}
-					if (score > bestScore) {
-						best = iColumn;
-						bestScore = score;
-						isRow = false;
-					}
 				}
 			}
 
 			if (isRow) {
-				int newOnes = 0;
-				for (int iColumn : densePart.getColumns()) {
-					if (matrix.get(best, iColumn)) {
-						newOnes++;
-					}
-				}
-				int newPartSize = densePart.getNumberOfColumns();
+				int newOnes = w.rowOnes[best];
+				int newPartSize = w.partColumnCount;
 				if ((float) (numberOfOnes + newOnes)
 						/ (partSize + newPartSize) > minDensity) {
-					densePart.addRow(best);
+					w.addPartRow(best);
 					numberOfOnes += newOnes;
 					partSize += newPartSize;
-					rows.set(best, false);
-					if (rows.cardinality() == 0) {
+					rowCandidates--;
+					if (rowCandidates == 0) {
 						rowsLeft = false;
 					}
 				} else {
 					rowsLeft = false;
 				}
 			} else {
-				int newOnes = 0;
-				for (int iRow : densePart.getRows()) {
-					if (matrix.get(iRow, best)) {
-						newOnes++;
-					}
-				}
-				int newPartSize = densePart.getNumberOfRows();
+				int newOnes = w.columnOnes[best];
+				int newPartSize = w.partRowCount;
 				if ((float) (numberOfOnes + newOnes)
 						/ (partSize + newPartSize) > minDensity) {
-					densePart.addColumn(best);
+					w.addPartColumn(best);
 					numberOfOnes += newOnes;
 					partSize += newPartSize;
-					columns.set(best, false);
-					if (columns.cardinality() == 0) {
+					columnCandidates--;
+					if (columnCandidates == 0) {
 						columnsLeft = false;
 					}
 				} else {
@@ -193,8 +173,174 @@ MapAlgorithm<Bicluster, Bicluster> {
 				}
 			}
 		}
+	}
+
+	/**
+	 * The cells of one bicluster in local coordinates (the rows and
+	 * columns of the bicluster in ascending order), the coverage of
+	 * its parts so far and the part being grown. The arrays only grow
+	 * and are reused for the next bicluster.
+	 */
+	private class Workspace {
+		private int[] rows = new int[0];
+		private int[] columns = new int[0];
+		private int rowCount;
+		private int columnCount;
+		private long[][] cells = new long[0][];
+		private long[][] coverage = new long[0][];
+		// ones of each row (column) within the bicluster
+		private int[] rowTotals = new int[0];
+		private int[] columnTotals = new int[0];
+
+		// the part: its rows and columns, and the ones of each row
+		// (column) within its columns (rows)
+		private boolean[] partRows = new boolean[0];
+		private boolean[] partColumns = new boolean[0];
+		private long[] partColumnMask = new long[0];
+		private int partRowCount;
+		private int partColumnCount;
+		private int[] rowOnes = new int[0];
+		private int[] columnOnes = new int[0];
+
+		// matrix column -> local column, only valid for the columns
+		// set in 'columnMask'
+		private final int[] columnIndices = new int[matrix
+				.getNumColumns()];
+		private final long[] columnMask = BitUtils.newWords(matrix
+				.getNumColumns());
+
+		private void load(Bicluster bicluster) {
+			BinaryVector rowVector = bicluster.getRows();
+			BinaryVector columnVector = bicluster.getColumns();
+			rowCount = rowVector.cardinality();
+			columnCount = columnVector.cardinality();
+			ensureCapacity();
+
+			int i = 0;
+			for (int row : rowVector) {
+				rows[i++] = row;
+			}
+			i = 0;
+			for (int column : columnVector) {
+				columns[i] = column;
+				columnIndices[column] = i;
+				BitUtils.set(columnMask, column);
+				i++;
+			}
+
+			Arrays.fill(columnTotals, 0, columnCount, 0);
+			for (int iRow = 0; iRow < rowCount; iRow++) {
+				long[] local = cells[iRow];
+				Arrays.fill(local, 0L);
+				Arrays.fill(coverage[iRow], 0L);
+				long[] rowWords = matrix.getRowWords(rows[iRow]);
+				int total = 0;
+				for (int column = BitUtils.nextSetBitAnd(rowWords, columnMask, 0); column > -1; column =
+						BitUtils.nextSetBitAnd(rowWords, columnMask,
+								column + 1)) {
+					int iColumn = columnIndices[column];
+					BitUtils.set(local, iColumn);
+					columnTotals[iColumn]++;
+					total++;
+				}
+				rowTotals[iRow] = total;
+			}
+
+			for (int iColumn = 0; iColumn < columnCount; iColumn++) {
+				BitUtils.clear(columnMask, columns[iColumn]);
+			}
+		}
+
+		private void ensureCapacity() {
+			int wordCount = BitUtils.getWordCount(columnCount);
+			if (rowCount > cells.length
+					|| (cells.length > 0 && wordCount > cells[0].length)) {
+				int capacity = Math.max(rowCount, cells.length);
+				int words =
+						Math.max(wordCount,
+								cells.length > 0 ? cells[0].length : 0);
+				cells = new long[capacity][words];
+				coverage = new long[capacity][words];
+				partColumnMask = new long[words];
+			}
+			if (rowCount > rows.length) {
+				rows = new int[rowCount];
+				rowTotals = new int[rowCount];
+				rowOnes = new int[rowCount];
+				partRows = new boolean[rowCount];
+			}
+			if (columnCount > columns.length) {
+				columns = new int[columnCount];
+				columnTotals = new int[columnCount];
+				columnOnes = new int[columnCount];
+				partColumns = new boolean[columnCount];
+			}
+		}
+
+		/**
+		 * Starts a new part with the cell (row, column).
+		 */
+		private void startPart(int row, int column) {
+			Arrays.fill(partRows, 0, rowCount, false);
+			Arrays.fill(partColumns, 0, columnCount, false);
+			Arrays.fill(partColumnMask, 0L);
+			for (int iRow = 0; iRow < rowCount; iRow++) {
+				rowOnes[iRow] = BitUtils.get(cells[iRow], column) ? 1 : 0;
+			}
+			for (int iColumn = 0; iColumn < columnCount; iColumn++) {
+				columnOnes[iColumn] =
+						BitUtils.get(cells[row], iColumn) ? 1 : 0;
+			}
+			partRows[row] = true;
+			partColumns[column] = true;
+			BitUtils.set(partColumnMask, column);
+			partRowCount = 1;
+			partColumnCount = 1;
+		}
 
-		return densePart;
+		private void addPartRow(int row) {
+			partRows[row] = true;
+			partRowCount++;
+			long[] rowWords = cells[row];
+			for (int iColumn = BitUtils.nextSetBit(rowWords, 0); iColumn > -1; iColumn =
+					BitUtils.nextSetBit(rowWords, iColumn + 1)) {
+				columnOnes[iColumn]++;
+			}
+		}
+
+		private void addPartColumn(int column) {
+			partColumns[column] = true;
+			BitUtils.set(partColumnMask, column);
+			partColumnCount++;
+			for (int iRow = 0; iRow < rowCount; iRow++) {
+				if (BitUtils.get(cells[iRow], column)) {
+					rowOnes[iRow]++;
+				}
+			}
+		}
+
+		/**
+		 * Marks the cells of the part as covered and returns the part
+		 * as a bicluster of the matrix.
+		 */
+		private Bicluster addPartCoverage() {
+			Bicluster part = new BitSetBicluster();
+			for (int iRow = 0; iRow < rowCount; iRow++) {
+				if (partRows[iRow]) {
+					part.addRow(rows[iRow]);
+					long[] covered = coverage[iRow];
+					for (int i = 0; i < partColumnMask.length; i++) {
+						covered[i] |= partColumnMask[i];
+					}
+				}
+			}
+			for (int iColumn = 0; iColumn < columnCount; iColumn++) {
+				if (partColumns[iColumn]) {
+					part.addColumn(columns[iColumn]);
+				}
+			}
+			return part;
+		}
 	}
 
 }
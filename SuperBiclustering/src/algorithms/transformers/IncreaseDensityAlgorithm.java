@@ -23,10 +23,13 @@ import java.util.ArrayList;
 import java.util.List;
 
 import map.MapAlgorithm;
+import util.BitUtils;
+import util.IndexedMinHeap;
 import datatype.bicluster.Bicluster;
 import datatype.bicluster.BinaryVector;
 import datatype.bicluster.BitSetBicluster;
 import datatype.matrix.BinaryMatrix;
+import datatype.matrix.PackedBinaryMatrix;
 
 /**
  * MapAlgorithm that takes a block and increases its density by
@@ -34,6 +37,12 @@ import datatype.matrix.BinaryMatrix;
  * recursively until the minimum density threshold is reached or
  * there are no more rows/columns left to remove.
  *
+ * The ones of every row and column within the block are counted
+ * once. Removing a row (column) subtracts its ones from the counts
+ * of the columns (rows), and the rows and columns are kept in
+ * min-heaps by their counts, so that all lines below the threshold
+ * are found without looking at the others.
+ *
  * @author "Oliver Voggenreiter"
  * @date Mar 11, 2013
  *
@@ -43,93 +52,181 @@ MapAlgorithm<Bicluster, Bicluster> {
 
 	private float minRowDensity;
 	private float minColumnDensity;
-	private BinaryMatrix matrix;
+	private PackedBinaryMatrix matrix;
 
 	public IncreaseDensityAlgorithm(float minRowDensity,
 			float minColumnDensity, BinaryMatrix matrix) {
 		this.minRowDensity = minRowDensity;
 		this.minColumnDensity = minColumnDensity;
-		this.matrix = matrix;
+		this.matrix = PackedBinaryMatrix.pack(matrix);
 	}
 
 	@Override
 	public List<Bicluster> map(List<Bicluster> keyValuePairs) {
 		List<Bicluster> tuples = new ArrayList<Bicluster>();
+		int[] columnIndices = new int[matrix.getNumColumns()];
 
 		for (Bicluster bicluster : keyValuePairs) {
-			BinaryVector rows = bicluster.getRows().clone();
-			BinaryVector columns = bicluster.getColumns().clone();
+			Block block = new Block(bicluster, columnIndices);
 			boolean somethingRemoved = true;
 			boolean rowTime = true;
 			while (somethingRemoved) {
-				double[] worst_row_density =
-						new double[rows.cardinality()];
-				double[] worst_column_density =
-						new double[columns.cardinality()];
-
-				int row_index = 0;
-				for (int row : rows) {
-					int column_index = 0;
-					for (int column : columns) {
-						if (matrix.get(row, column)) {
-							worst_row_density[row_index]++;
-							worst_column_density[column_index]++;
-						}
-						column_index++;
-					}
-					row_index++;
-				}
-
 				somethingRemoved = false;
 
 				if (rowTime) {
 					rowTime = !rowTime;
-					somethingRemoved |=
-							remove(rows, columns.cardinality(),
-									worst_row_density, minRowDensity);
+					somethingRemoved |= block.removeSparseRows();
 					if (!somethingRemoved) {
-						somethingRemoved |=
-								remove(columns, rows.cardinality(),
-										worst_column_density,
-										minColumnDensity);
+						somethingRemoved |= block.removeSparseColumns();
 					}
 				} else {
 					rowTime = !rowTime;
-					somethingRemoved |=
-							remove(columns, rows.cardinality(),
-									worst_column_density,
-									minColumnDensity);
+					somethingRemoved |= block.removeSparseColumns();
 					if (!somethingRemoved) {
-						somethingRemoved |=
-								remove(rows, columns.cardinality(),
-										worst_row_density,
-										minRowDensity);
+						somethingRemoved |= block.removeSparseRows();
 					}
 				}
 			}
-			if (rows.cardinality() > 0 && columns.cardinality() > 0) {
-				Bicluster newSuperBicluster = new BitSetBicluster();
-				newSuperBicluster.addRows(rows);
-				newSuperBicluster.addColumns(columns);
-				tuples.add(newSuperBicluster);
+			if (block.rowCount > 0 && block.columnCount > 0) {
+				tuples.add(block.toBicluster());
 			}
 		}
 
 		return tuples;
 	}
 
-	private boolean remove(BinaryVector vector, int opSize,
-			double[] worst_vector_density, float minDensity) {
-		int index = 0;
-		boolean somethingRemoved = false;
-		for (int element : vector) {
-			if (worst_vector_density[index] / opSize < minDensity) {
-				somethingRemoved = true;
-				vector.set(element, false);
+	/**
+	 * The remaining rows and columns of one bicluster with the
+	 * number of ones of each of them within the block. Rows and
+	 * columns are numbered locally in ascending order.
+	 */
+	private class Block {
+		private final int[] rows;
+		private final int[] columns;
+		private final int[] columnIndices;
+		private final long[] columnMask;
+		private final IndexedMinHeap rowHeap;
+		private final IndexedMinHeap columnHeap;
+		private int rowCount;
+		private int columnCount;
+
+		/**
+		 * 'columnIndices' is scratch space for the local index of each
+		 * column of the matrix.
+		 */
+		private Block(Bicluster bicluster, int[] columnIndices) {
+			this.columnIndices = columnIndices;
+			rows = toArray(bicluster.getRows());
+			columns = toArray(bicluster.getColumns());
+			rowCount = rows.length;
+			columnCount = columns.length;
+			columnMask = BitUtils.newWords(matrix.getNumColumns());
+			for (int i = 0; i < columns.length; i++) {
+				BitUtils.set(columnMask, columns[i]);
+				columnIndices[columns[i]] = i;
+			}
+
+			rowHeap = new IndexedMinHeap(rows.length);
+			int[] columnOnes = new int[columns.length];
+			for (int i = 0; i < rows.length; i++) {
+				long[] rowWords = matrix.getRowWords(rows[i]);
+				int ones = 0;
+				for (int column = BitUtils.nextSetBitAnd(rowWords, columnMask, 0); column > -1; column =
+						BitUtils.nextSetBitAnd(rowWords, columnMask,
+								column + 1)) {
+					columnOnes[columnIndices[column]]++;
+					ones++;
+				}
+				rowHeap.add(i, ones);
+			}
+			columnHeap = new IndexedMinHeap(columns.length);
+			for (int i = 0; i < columns.length; i++) {
+				columnHeap.add(i, columnOnes[i]);
+			}
+		}
+
+		private int[] toArray(BinaryVector indices) {
+			int[] array = new int[indices.cardinality()];
+			int i = 0;
+			for (int index : indices) {
+				array[i++] = index;
+			}
+			return array;
+		}
+
+		/**
+		 * Removes all rows whose density over the remaining columns is
+		 * below minRowDensity and updates the column counts.
+		 */
+		private boolean removeSparseRows() {
+			List<Integer> removed = new ArrayList<Integer>();
+			while (!rowHeap.isEmpty()
+					&& (double) rowHeap.getPriority(rowHeap.peek())
+							/ columnCount < minRowDensity) {
+				removed.add(rowHeap.poll());
+			}
+			for (int row : removed) {
+				long[] rowWords = matrix.getRowWords(rows[row]);
+				for (int column = BitUtils.nextSetBitAnd(rowWords, columnMask, 0); column > -1; column =
+						BitUtils.nextSetBitAnd(rowWords, columnMask,
+								column + 1)) {
+					int index = columnIndices[column];
+					columnHeap.decreasePriority(index,
+							columnHeap.getPriority(index) - 1);
+				}
+			}
+			rowCount -= removed.size();
+			return !removed.isEmpty();
+		}
+
+		/**
+		 * Removes all columns whose density over the remaining rows is
+		 * below minColumnDensity and updates the row counts.
+		 */
+		private boolean removeSparseColumns() {
+			List<Integer> removed = new ArrayList<Integer>();
+			while (!columnHeap.isEmpty()
+					&& (double) columnHeap.getPriority(columnHeap.peek())
+							/ rowCount < minColumnDensity) {
+				removed.add(columnHeap.poll());
+			}
+			for (int column : removed) {
+				BitUtils.clear(columnMask, columns[column]);
+			}
+			for (int row = 0; row < rows.length && !removed.isEmpty(); row++) {
+				if (!rowHeap.contains(row)) {
+					continue;
+				}
+				long[] rowWords = matrix.getRowWords(rows[row]);
+				int lost = 0;
+				for (int column : removed) {
+					if (BitUtils.get(rowWords, columns[column])) {
+						lost++;
+					}
+				}
+				if (lost > 0) {
+					rowHeap.decreasePriority(row,
+							rowHeap.getPriority(row) - lost);
+				}
+			}
+			columnCount -= removed.size();
+			return !removed.isEmpty();
+		}
+
+		private Bicluster toBicluster() {
+			Bicluster bicluster = new BitSetBicluster();
+			for (int i = 0; i < rows.length; i++) {
+				if (rowHeap.contains(i)) {
+					bicluster.addRow(rows[i]);
+				}
+			}
+			for (int i = 0; i < columns.length; i++) {
+				if (columnHeap.contains(i)) {
+					bicluster.addColumn(columns[i]);
+				}
 			}
-			index++;
+			return bicluster;
 		}
-		return somethingRemoved;
 	}
 
 }
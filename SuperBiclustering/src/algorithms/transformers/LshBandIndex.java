@@ -0,0 +1,165 @@
+/* SuperBiclustering - A biclustering algorithm designed to
+ * handle sparse and noisy input.
+ * Copyright (C) 2014 Oliver Voggenreiter
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package algorithms.transformers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import util.RandomStreams;
+
+/**
+ * The locality sensitive hashing index of the Min-Hash Transformer.
+ * The hashes of each band of a signature are combined into one
+ * 64-bit key (hash i of a signature belongs to band i % bandCount),
+ * and biclusters with equal keys end up in the same bucket.
+ *
+ * Everything is stored in preallocated primitive arrays: an open
+ * addressing table from keys to the head of a singly linked list of
+ * entries, and the entries themselves. Slots are claimed and entries
+ * are linked with compare-and-set, so several workers can add
+ * signatures at the same time. The buckets must only be read once all
+ * additions are finished.
+ */
+public class LshBandIndex {
+
+	/**
+	 * The most bands one index can hold; the table has at most this
+	 * many slots, too.
+	 */
+	static final int MAX_ENTRIES = 1 << 30;
+
+	private static final long EMPTY = 0L;
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	private final int signatureLength;
+	private final int bandCount;
+	private final int mask;
+	private final AtomicLongArray keys;
+	// index + 1 of the first entry of each slot, 0 if none
+	private final AtomicIntegerArray heads;
+	private final int[] entryBiclusters;
+	private final int[] entryNext;
+	private final AtomicInteger entryCount = new AtomicInteger();
+
+	/**
+	 * Allocates an index for the bands of 'numberOfBiclusters'
+	 * signatures of the given length. At most MAX_ENTRIES bands fit.
+	 */
+	public LshBandIndex(int numberOfBiclusters, int signatureLength,
+			int bandCount) {
+		this.signatureLength = signatureLength;
+		this.bandCount = bandCount;
+		long entries = (long) numberOfBiclusters * bandCount;
+		if (entries > MAX_ENTRIES) {
+			throw new IllegalArgumentException(String.format(
+					"%1d bands exceed the maximum of %1d.", entries,
+					MAX_ENTRIES));
+		}
+		int capacity = (int) entries;
+		// about four slots per band, but never fewer slots than bands
+		int tableSize =
+				(int) Math.min(MAX_ENTRIES, Long.highestOneBit(Math.max(
+						entries, 1)) * 4);
+		this.mask = tableSize - 1;
+		this.keys = new AtomicLongArray(tableSize);
+		this.heads = new AtomicIntegerArray(tableSize);
+		this.entryBiclusters = new int[capacity];
+		this.entryNext = new int[capacity];
+	}
+
+	/**
+	 * Adds every band of the signature of 'biclusterId', which starts
+	 * at signatures[biclusterId * signatureLength]. May be called
+	 * concurrently for different biclusters.
+	 */
+	public void addSignature(int biclusterId, int[] signatures) {
+		int offset = biclusterId * signatureLength;
+		for (int band = 0; band < bandCount; band++) {
+			add(getBandKey(signatures, offset, band), biclusterId);
+		}
+	}
+
+	/**
+	 * Returns the biclusters of every bucket.
+	 */
+	public List<int[]> getBuckets() {
+		List<int[]> buckets = new ArrayList<int[]>();
+		int[] bucket = new int[entryBiclusters.length];
+		for (int slot = 0; slot <= mask; slot++) {
+			int size = 0;
+			for (int entry = heads.get(slot); entry != 0; entry =
+					entryNext[entry - 1]) {
+				bucket[size++] = entryBiclusters[entry - 1];
+			}
+			if (size > 0) {
+				int[] biclusterIds = new int[size];
+				System.arraycopy(bucket, 0, biclusterIds, 0, size);
+				buckets.add(biclusterIds);
+			}
+		}
+		return buckets;
+	}
+
+	/**
+	 * Combines the hashes of one band into a key. The band itself is
+	 * part of the key, so equal hashes in different bands do not
+	 * collide.
+	 */
+	private long getBandKey(int[] signatures, int offset, int band) {
+		long key = RandomStreams.mix64((band + 1) * GOLDEN_GAMMA);
+		for (int i = band; i < signatureLength; i += bandCount) {
+			key =
+					RandomStreams.mix64(key
+							+ (signatures[offset + i] & 0xffffffffL)
+							* GOLDEN_GAMMA);
+		}
+		return key == EMPTY ? 1L : key;
+	}
+
+	private void add(long key, int biclusterId) {
+		int slot = (int) key & mask;
+		while (true) {
+			long slotKey = keys.get(slot);
+			if (slotKey == EMPTY
+					&& keys.compareAndSet(slot, EMPTY, key)) {
+				slotKey = key;
+			} else if (slotKey == EMPTY) {
+				// another worker claimed the slot, look at it again
+				continue;
+			}
+			if (slotKey == key) {
+				break;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		int entry = entryCount.getAndIncrement();
+		entryBiclusters[entry] = biclusterId;
+		int head;
+		do {
+			head = heads.get(slot);
+			entryNext[entry] = head;
+		} while (!heads.compareAndSet(slot, head, entry + 1));
+	}
+
+}
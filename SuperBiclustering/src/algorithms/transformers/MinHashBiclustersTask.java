@@ -20,18 +20,22 @@
 package algorithms.transformers;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 
 import map.KeyValuePair;
 import map.MapAlgorithm;
-import util.RandomHashFunction;
+import util.BitUtils;
+import util.MinHashSignatureFunction;
 import datatype.bicluster.Bicluster;
 import datatype.matrix.BinaryMatrix;
+import datatype.matrix.PackedBinaryMatrix;
 
 /**
  * Calculates the min-hash values for each biclusters indices. This
- * is done using RandomHashFunction and a union of any of the three
- * types of indices.
+ * is done using a MinHashSignatureFunction and a union of any of
+ * the three types of indices.
  *
  * Internal Index: The row/col pairs of cells that are within the
  * biclusters.
@@ -45,152 +49,268 @@ import datatype.matrix.BinaryMatrix;
  * @date Mar 11, 2013
  *
  */
-public class MinHashBiclustersTask
-implements
-MapAlgorithm<Bicluster, KeyValuePair<Integer, KeyValuePair<Bicluster, List<Integer>>>> {
+public class MinHashBiclustersTask implements
+		MapAlgorithm<Integer, KeyValuePair<Integer, int[]>> {
 
-	private List<RandomHashFunction> hashFunctions;
-	private int bandCount;
-	private BinaryMatrix MATRIX;
+	public static final float DEFAULT_CROSSOVER_THRESHOLD = 0.8f;
+
+	private MinHashSignatureFunction hashFunctions;
+	private List<? extends Bicluster> biclusters;
+	private PackedBinaryMatrix rowsMatrix;
+	private PackedBinaryMatrix columnsMatrix;
+	private int[] rowDegrees;
+	private int[] columnDegrees;
 
 	private boolean useOverlapOnes = true;
 	private boolean useCrossoverOnes = true;
 	private boolean useRowsColumns = false;
+	private float crossoverThreshold = DEFAULT_CROSSOVER_THRESHOLD;
 
 	public MinHashBiclustersTask(
-			List<RandomHashFunction> randomHashFunctions,
-			int numberOfBands, BinaryMatrix matrix) {
-		new MinHashBiclustersTask(randomHashFunctions,
-				numberOfBands, matrix, true, true, false);
+			MinHashSignatureFunction hashFunctions,
+			List<? extends Bicluster> biclusters, BinaryMatrix matrix) {
+		this(hashFunctions, biclusters, matrix, true, true, false);
 	}
 
+	/**
+	 * The transpose of the matrix and the degrees of its rows and
+	 * columns are only computed if crossover ones are used.
+	 */
 	public MinHashBiclustersTask(
-			List<RandomHashFunction> randomHashFunctions,
-			int numberOfBands, BinaryMatrix matrix,
+			MinHashSignatureFunction hashFunctions,
+			List<? extends Bicluster> biclusters, BinaryMatrix matrix,
 			boolean useOverlap, boolean useCrossover,
 			boolean useRowsColumns) {
-		this.hashFunctions = randomHashFunctions;
-		this.bandCount = numberOfBands;
-		this.MATRIX = matrix;
+		this.hashFunctions = hashFunctions;
+		this.biclusters = biclusters;
+		this.rowsMatrix = PackedBinaryMatrix.pack(matrix);
+		if (useCrossover) {
+			this.columnsMatrix = rowsMatrix.getTransposed();
+			this.rowDegrees = getDegrees(rowsMatrix);
+			this.columnDegrees = getDegrees(columnsMatrix);
+		}
 		this.useOverlapOnes = useOverlap;
 		this.useCrossoverOnes = useCrossover;
 		this.useRowsColumns = useRowsColumns;
 	}
 
-	@Override
-	public
-	List<KeyValuePair<Integer, KeyValuePair<Bicluster, List<Integer>>>>
-	map(List<Bicluster> keyValuePairs) {
-		List<KeyValuePair<Integer, KeyValuePair<Bicluster, List<Integer>>>> tuples =
-				new ArrayList<KeyValuePair<Integer, KeyValuePair<Bicluster, List<Integer>>>>();
-
-		for (Bicluster bicluster : keyValuePairs) {
-			List<Integer> hashResults = new ArrayList<Integer>();
-			List<Integer> indices = getIndices(bicluster);
-			for (RandomHashFunction rhf : hashFunctions) {
-				int lowestHash = Integer.MAX_VALUE;
-				for (int index : indices) {
-					if (rhf.getHash(index) < lowestHash) {
-						lowestHash = rhf.getHash(index);
-					}
-				}
-				hashResults.add(lowestHash);
-			}
+	private MinHashBiclustersTask(MinHashBiclustersTask task,
+			List<? extends Bicluster> biclusters) {
+		this.hashFunctions = task.hashFunctions;
+		this.biclusters = biclusters;
+		this.rowsMatrix = task.rowsMatrix;
+		this.columnsMatrix = task.columnsMatrix;
+		this.rowDegrees = task.rowDegrees;
+		this.columnDegrees = task.columnDegrees;
+		this.useOverlapOnes = task.useOverlapOnes;
+		this.useCrossoverOnes = task.useCrossoverOnes;
+		this.useRowsColumns = task.useRowsColumns;
+		this.crossoverThreshold = task.crossoverThreshold;
+	}
 
-			List<KeyValuePair<Bicluster, List<Integer>>> bands =
-					new ArrayList<KeyValuePair<Bicluster, List<Integer>>>();
-			for (int i = 0; i < bandCount; i++) {
-				bands.add(new KeyValuePair<Bicluster, List<Integer>>(
-						bicluster, new ArrayList<Integer>()));
-			}
+	/**
+	 * Returns a task for other biclusters that shares the matrix, its
+	 * transpose and the degrees with this one. The input values of
+	 * map are indices into 'biclusters'; the output pairs each index
+	 * with the signature of its bicluster.
+	 */
+	public MinHashBiclustersTask withBiclusters(
+			List<? extends Bicluster> biclusters) {
+		return new MinHashBiclustersTask(this, biclusters);
+	}
 
-			for (int i = 0; i < hashResults.size(); i++) {
-				bands.get(i % this.bandCount).getValue().add(
-						hashResults.get(i));
-			}
+	/**
+	 * A row (column) outside of a bicluster adds its crossover cells
+	 * if more than 'threshold' of the bicluster's columns (rows) are
+	 * ones in it (default: 0.8).
+	 */
+	public MinHashBiclustersTask crossoverThreshold(float threshold) {
+		this.crossoverThreshold = threshold;
+		return this;
+	}
 
-			for (int i = 0; i < bandCount; i++) {
-				tuples.add(new KeyValuePair<Integer, KeyValuePair<Bicluster, List<Integer>>>(
-						i, bands.get(i)));
-			}
+	private static int[] getDegrees(PackedBinaryMatrix matrix) {
+		int[] degrees = new int[matrix.getNumRows()];
+		for (int i = 0; i < degrees.length; i++) {
+			degrees[i] = BitUtils.cardinality(matrix.getRowWords(i));
+		}
+		return degrees;
+	}
+
+	@Override
+	public List<KeyValuePair<Integer, int[]>> map(
+			List<Integer> biclusterIds) {
+		List<KeyValuePair<Integer, int[]>> tuples =
+				new ArrayList<KeyValuePair<Integer, int[]>>(
+						biclusterIds.size());
+		IndexBuffer indices = new IndexBuffer();
+		Mask rows = null;
+		Mask columns = null;
+		if (useOverlapOnes || useCrossoverOnes) {
+			rows = new Mask(rowsMatrix.getNumRows());
+			columns = new Mask(rowsMatrix.getNumColumns());
+		}
 
+		for (int biclusterId : biclusterIds) {
+			indices.size = 0;
+			addIndices(biclusters.get(biclusterId), rows, columns,
+					indices);
+			int[] signature = new int[hashFunctions.size()];
+			hashFunctions.computeSignature(indices.values,
+					indices.size, signature, 0);
+			tuples.add(new KeyValuePair<Integer, int[]>(biclusterId,
+					signature));
 		}
 		return tuples;
 	}
 
-	private List<Integer> getIndices(Bicluster bicluster) {
-		List<Integer> indices = new ArrayList<Integer>();
-		if (useOverlapOnes)
-			indices.addAll(getOverlapIndices(bicluster));
-		if (useCrossoverOnes)
-			indices.addAll(getCrossoverIndices(bicluster));
+	private void addIndices(Bicluster bicluster, Mask rows,
+			Mask columns, IndexBuffer indices) {
 		if (useRowsColumns) {
-			indices.addAll(getRowColumnIndices(bicluster));
+			addRowColumnIndices(bicluster, indices);
+		}
+		if (!useOverlapOnes && !useCrossoverOnes) {
+			return;
 		}
-		return indices;
+		rows.set(bicluster.getRowIterator());
+		columns.set(bicluster.getColumnIterator());
+		if (useOverlapOnes)
+			addOverlapIndices(rows, columns, indices);
+		if (useCrossoverOnes)
+			addCrossoverIndices(bicluster, rows, columns, indices);
+		rows.clear();
+		columns.clear();
 	}
 
-	private List<Integer> getCrossoverIndices(Bicluster bicluster) {
-		List<Integer> indices = new ArrayList<Integer>();
-
-		for (int iRow = 0; iRow < MATRIX.getNumRows(); iRow++) {
-			if (bicluster.containsRow(iRow))
+	/**
+	 * Adds the cells of the rows outside of the bicluster that are
+	 * dense over the bicluster's columns, and of the columns outside
+	 * of the bicluster that are dense over its rows. The ones of a
+	 * row within the columns are counted a word at a time, rows with
+	 * too few ones overall are skipped without counting.
+	 */
+	private void addCrossoverIndices(Bicluster bicluster, Mask rows,
+			Mask columns, IndexBuffer indices) {
+		int numRows = rowsMatrix.getNumRows();
+		float minRowOnes =
+				crossoverThreshold * bicluster.getNumberOfColumns();
+		for (int iRow = 0; iRow < numRows; iRow++) {
+			if (rowDegrees[iRow] <= minRowOnes
+					|| BitUtils.get(rows.words, iRow))
 				continue;
-			int oneCount = 0;
-			for (int column : bicluster.getColumns()) {
-				if (MATRIX.get(iRow, column)) {
-					oneCount++;
-				}
-			}
-			if (oneCount > 0.8f * bicluster.getNumberOfColumns()) {
-				for (int column : bicluster.getColumns()) {
-					indices.add(column * MATRIX.getNumRows() + iRow);
+			int oneCount =
+					BitUtils.cardinalityAnd(rowsMatrix.getRowWords(iRow),
+							columns.words, columns.fromWord,
+							columns.toWord);
+			if (oneCount > minRowOnes) {
+				for (int column = columns.first(); column > -1; column =
+						columns.next(column)) {
+					indices.add(column * numRows + iRow);
 				}
 			}
 		}
-		for (int iColumn = 0; iColumn < MATRIX.getNumColumns(); iColumn++) {
-			if (bicluster.containsColumn(iColumn))
+		float minColumnOnes =
+				crossoverThreshold * bicluster.getNumberOfRows();
+		for (int iColumn = 0; iColumn < columnsMatrix.getNumRows(); iColumn++) {
+			if (columnDegrees[iColumn] <= minColumnOnes
+					|| BitUtils.get(columns.words, iColumn))
 				continue;
-			int oneCount = 0;
-			for (int row : bicluster.getRows()) {
-				if (MATRIX.get(row, iColumn)) {
-					oneCount++;
+			int oneCount =
+					BitUtils.cardinalityAnd(
+							columnsMatrix.getRowWords(iColumn), rows.words,
+							rows.fromWord, rows.toWord);
+			if (oneCount > minColumnOnes) {
+				for (int row = rows.first(); row > -1; row = rows.next(row)) {
+					indices.add(iColumn * numRows + row);
 				}
 			}
-			if (oneCount > 0.8f * bicluster.getNumberOfRows()) {
-				for (int row : bicluster.getRows()) {
-					indices.add(iColumn * MATRIX.getNumRows() + row);
-				}
+		}
+	}
+
+	private void addOverlapIndices(Mask rows, Mask columns,
+			IndexBuffer indices) {
+		int numRows = rowsMatrix.getNumRows();
+		for (int row = rows.first(); row > -1; row = rows.next(row)) {
+			long[] rowWords = rowsMatrix.getRowWords(row);
+			for (int column = BitUtils.nextSetBitAnd(rowWords, columns.words, columns.fromWord << 6, columns.toWord); column > -1; column =
+					BitUtils.nextSetBitAnd(rowWords, columns.words,
+							column + 1, columns.toWord)) {
+				indices.add(column * numRows + row);
 			}
 		}
+	}
 
-		return indices;
+	private void addRowColumnIndices(Bicluster bicluster,
+			IndexBuffer indices) {
+		int numRows = rowsMatrix.getNumRows();
+		Iterator<Integer> rowIterator = bicluster.getRowIterator();
+		while (rowIterator.hasNext()) {
+			indices.add(rowIterator.next());
+		}
+		Iterator<Integer> columnIterator = bicluster.getColumnIterator();
+		while (columnIterator.hasNext()) {
+			indices.add(numRows + columnIterator.next());
+		}
 	}
 
-	private List<Integer> getOverlapIndices(Bicluster bicluster) {
-		List<Integer> indices = new ArrayList<Integer>();
+	/**
+	 * The rows or columns of one bicluster as words, together with
+	 * the span of words [fromWord, toWord) that holds them. It is
+	 * reused for all biclusters of one map call, so only the words of
+	 * the span are ever looked at or cleared.
+	 */
+	private static class Mask {
+		private final long[] words;
+		private int fromWord = 0;
+		private int toWord = 0;
 
-		for (int row : bicluster.getRows()) {
-			for (int column : bicluster.getColumns()) {
-				if (MATRIX.get(row, column)) {
-					indices.add(column * MATRIX.getNumRows() + row);
-				}
-			}
+		private Mask(int numBits) {
+			words = BitUtils.newWords(numBits);
 		}
 
-		return indices;
-	}
+		private void set(Iterator<Integer> indices) {
+			int min = Integer.MAX_VALUE;
+			int max = -1;
+			while (indices.hasNext()) {
+				int index = indices.next();
+				BitUtils.set(words, index);
+				min = Math.min(min, index);
+				max = Math.max(max, index);
+			}
+			if (max > -1) {
+				fromWord = min >>> 6;
+				toWord = (max >>> 6) + 1;
+			}
+		}
 
-	private List<Integer> getRowColumnIndices(Bicluster bicluster) {
-		List<Integer> indices = new ArrayList<Integer>();
+		private int first() {
+			return BitUtils.nextSetBit(words, fromWord << 6, toWord);
+		}
 
-		for (int row : bicluster.getRows()) {
-			indices.add(row);
+		private int next(int index) {
+			return BitUtils.nextSetBit(words, index + 1, toWord);
 		}
-		for (int column : bicluster.getColumns()) {
-			indices.add(MATRIX.getNumRows() + column);
+
+		private void clear() {
+			Arrays.fill(words, fromWord, toWord, 0L);
+			fromWord = 0;
+			toWord = 0;
 		}
+	}
+
+	/**
+	 * A growable int array that is reused for the indices of all
+	 * biclusters of one map call.
+	 */
+	private static class IndexBuffer {
+		private int[] values = new int[64];
+		private int size = 0;
 
-		return indices;
+		private void add(int value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = value;
+		}
 	}
 }
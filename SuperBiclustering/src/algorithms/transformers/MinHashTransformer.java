@@ -20,11 +20,14 @@
 package algorithms.transformers;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
-import java.util.Set;
 
 import map.KeyValuePair;
 import map.MapController;
@@ -33,10 +36,15 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import util.BiclusterUtils;
+import util.MinHashFunctions;
+import util.MinHashSignatureFunction;
+import util.OnePermutationHash;
 import util.RandomHashFunction;
+import util.RandomStreams;
 import algorithms.TransformerBlock;
 import datatype.bicluster.Bicluster;
 import datatype.matrix.BinaryMatrix;
+import datatype.matrix.PackedBinaryMatrix;
 
 /**
  * The Min-Hash Transformer takes a set of blocks and attempts to
@@ -51,10 +59,19 @@ import datatype.matrix.BinaryMatrix;
  * indexing, which simply uses the rows and columns of the bicluster
  * as indices for hashing.
  *
- * In order to limit the computational effort of the transformer, an
- * artificial limit is placed on the number of input biclusters. If
- * there are more biclusters than this threshold, a random sample of
- * the input is taken.
+ * The biclusters of each bucket are split into groups whose members
+ * pairwise agree on at least half of all hashes (see
+ * MinHasherBucketGroupTask), which can further be restricted to pairs
+ * that collide in several bands. Each distinct group is merged into
+ * one super-bicluster.
+ *
+ * The input is consumed as a stream and only the signatures are
+ * kept. In order to limit the memory of the transformer, the
+ * signatures have to fit into a memory budget. If there are more
+ * biclusters than fit, a uniform random sample of the input is taken:
+ * every bicluster gets a random priority derived from its content,
+ * and those with the smallest priorities are kept. The sample thus
+ * does not depend on the order of the input.
  *
  * @author "Oliver Voggenreiter"
  * @date Mar 11, 2013
@@ -72,13 +89,39 @@ public class MinHashTransformer extends TransformerBlock {
 	private boolean useOverlap;
 	private boolean useCrossover;
 	private boolean useRowsColumns;
+	private boolean useOnePermutation;
+	private int minCollidingBands = 1;
+	private float minSimilarity =
+			MinHasherBucketGroupTask.DEFAULT_MIN_SIMILARITY;
+	private int rounds = 1;
+	private float crossoverThreshold =
+			MinHashBiclustersTask.DEFAULT_CROSSOVER_THRESHOLD;
+
+	// Biclusters whose signatures are computed in one parallel batch.
+	private final static int CHUNK_SIZE = 10000;
+	// Table slots and list entry of one band in the LshBandIndex.
+	private final static int BYTES_PER_BAND_ENTRY = 4 * (8 + 4) + 8;
 
-	private final static int MAX_BICLUSTER_SAMPLES = 100000000;
+	private long memoryBudget = Runtime.getRuntime().maxMemory() / 4;
 
 	public MinHashTransformer(int coreCount, float minDensity,
 			int numberOfBands, int hashesPerBand,
 			boolean useOverlap, boolean useCrossover,
 			boolean useRowsColumns) {
+		this(coreCount, minDensity, numberOfBands, hashesPerBand,
+				useOverlap, useCrossover, useRowsColumns, false);
+	}
+
+	/**
+	 * If 'useOnePermutation' is set, the signatures are computed with
+	 * one permutation hashing (see OnePermutationHash) instead of one
+	 * hash function per band and hash, which makes the runtime
+	 * independent of the number of bands and hashes.
+	 */
+	public MinHashTransformer(int coreCount, float minDensity,
+			int numberOfBands, int hashesPerBand,
+			boolean useOverlap, boolean useCrossover,
+			boolean useRowsColumns, boolean useOnePermutation) {
 		this.coreCount = coreCount;
 		this.minDensity = minDensity;
 		this.bandCount = numberOfBands;
@@ -86,17 +129,70 @@ public class MinHashTransformer extends TransformerBlock {
 		this.useOverlap = useOverlap;
 		this.useCrossover = useCrossover;
 		this.useRowsColumns = useRowsColumns;
+		this.useOnePermutation = useOnePermutation;
 		LOGGER.info(String
 				.format("Created Min-Hashing Transformer with %1d bands with %1d hashes each.",
 						this.bandCount, this.hashesPerBand));
 	}
 
+	/**
+	 * The memory in bytes that the signatures and the band index may
+	 * take. If the signatures of all input biclusters do not fit, a
+	 * uniform random sample of them is used (default: a quarter of
+	 * the maximum heap size).
+	 */
+	public MinHashTransformer memoryBudget(long bytes) {
+		this.memoryBudget = bytes;
+		return this;
+	}
+
+	/**
+	 * Repeats the joining and merging on the merged biclusters for up
+	 * to 'rounds' rounds (default 1), stopping early once a round
+	 * produces no new bicluster. Only the new biclusters of a round
+	 * are hashed again, all others keep their signatures.
+	 */
+	public MinHashTransformer rounds(int rounds) {
+		this.rounds = rounds;
+		return this;
+	}
+
+	/**
+	 * Only group two biclusters that collide in at least 'bands'
+	 * bands (default 1).
+	 */
+	public MinHashTransformer minCollidingBands(int bands) {
+		this.minCollidingBands = bands;
+		return this;
+	}
+
+	/**
+	 * Only group two biclusters whose signatures agree on at least
+	 * this fraction of all hashes (default 0.5). With 0 and a single
+	 * colliding band, every bucket is merged as a whole.
+	 */
+	public MinHashTransformer minSimilarity(float similarity) {
+		this.minSimilarity = similarity;
+		return this;
+	}
+
+	/**
+	 * The fraction of a bicluster's columns (rows) that a row
+	 * (column) outside of it has to cover to contribute crossover
+	 * cells to its signature (default 0.8).
+	 */
+	public MinHashTransformer crossoverThreshold(float threshold) {
+		this.crossoverThreshold = threshold;
+		return this;
+	}
+
 	@Override
 	public String getName() {
 		return String
-				.format("Min-Hash Transformer - Cores:%1d - Min Density:%.2f - Bands:%1d - Hashes/Band:%1d",
+				.format("Min-Hash Transformer - Cores:%1d - Min Density:%.2f - Bands:%1d - Hashes/Band:%1d%s",
 						coreCount, minDensity, bandCount,
-						hashesPerBand);
+						hashesPerBand,
+						useOnePermutation ? " - One Permutation" : "");
 	}
 
 	@Override
@@ -113,37 +209,104 @@ public class MinHashTransformer extends TransformerBlock {
 
 		long time = System.currentTimeMillis();
 
-		Collection<? extends Bicluster> biclusterPool =
-				sampleBiclusters(biclusters);
-
 		LOGGER.debug("Generating Random Hashing Functions....");
-		List<RandomHashFunction> randomHashFunctions =
-				getRandomHashFunctions(bandCount * hashesPerBand,
+		MinHashSignatureFunction hashFunctions =
+				getSignatureFunction(bandCount * hashesPerBand,
 						matrix.getNumRows() * matrix.getNumColumns());
 
 		MapController.setThreadCount(coreCount);
 
 		LOGGER.debug("Calculating Hashes for each bicluster....");
-		List<KeyValuePair<Integer, KeyValuePair<Bicluster, List<Integer>>>> tuples =
-				MapController.execute(new MinHashBiclustersTask(
-						randomHashFunctions, bandCount, matrix,
-						useOverlap, useCrossover, useRowsColumns),
-						biclusterPool);
-		LOGGER.debug("Reorganizing Hashbands for group extraction...");
-		List<KeyValuePair<Integer, Map<Set<Integer>, List<Bicluster>>>> bandHashTables =
-				MapController.execute(
-						new MinHasherBiclusterReduceTask(), tuples);
+		PackedBinaryMatrix rowsMatrix = PackedBinaryMatrix.pack(matrix);
+		// shares the transpose and the degrees among all chunks
+		MinHashBiclustersTask hashTask =
+				new MinHashBiclustersTask(hashFunctions,
+						new ArrayList<Bicluster>(), rowsMatrix,
+						useOverlap, useCrossover, useRowsColumns)
+						.crossoverThreshold(crossoverThreshold);
+		SignatureStore signatureStore =
+				new SignatureStore(hashFunctions.size(), Math.min(
+						biclusters.size(),
+						getSampleCapacity(hashFunctions.size())));
+		List<Bicluster> biclusterPool =
+				hashBiclusters(biclusters, hashFunctions, hashTask,
+						signatureStore);
 
-		LOGGER.debug("Calculating groups of biclusters....");
-		List<List<Bicluster>> tuples2 =
-				MapController.execute(
-						new MinHasherSimilarBiclusterExtractTask(),
-						bandHashTables);
-		LOGGER.debug("Merging groups of biclusters....");
-		List<Bicluster> superBiclusters =
-				MapController.execute(
-						new MinHasherSimilarBiclusterMergeTask(
-								minDensity, matrix), tuples2);
+		MinHasherSimilarBiclusterMergeTask mergeTask =
+				new MinHasherSimilarBiclusterMergeTask(minDensity,
+						rowsMatrix);
+		List<Bicluster> superBiclusters;
+		for (int round = 1;; round++) {
+			List<List<Integer>> groups =
+					findGroups(biclusterPool, signatureStore);
+
+			// from the second round on, the biclusters are merge
+			// results already, so lone ones are kept as they are
+			List<Bicluster> keptBiclusters = new ArrayList<Bicluster>();
+			List<Integer> keptSlots = new ArrayList<Integer>();
+			List<List<Bicluster>> mergeGroups =
+					new ArrayList<List<Bicluster>>();
+			// merge results equal to one of their members keep its
+			// signature
+			Map<BiclusterKey, Integer> memberSlots =
+					new HashMap<BiclusterKey, Integer>();
+			for (List<Integer> group : groups) {
+				if (round > 1 && group.size() == 1) {
+					keptBiclusters.add(biclusterPool.get(group.get(0)));
+					keptSlots.add(group.get(0));
+				} else {
+					List<Bicluster> mergeGroup =
+							new ArrayList<Bicluster>(group.size());
+					for (int slot : group) {
+						mergeGroup.add(biclusterPool.get(slot));
+						if (round < rounds) {
+							memberSlots.put(new BiclusterKey(
+									biclusterPool.get(slot)), slot);
+						}
+					}
+					mergeGroups.add(mergeGroup);
+				}
+			}
+			LOGGER.debug("Merging groups of biclusters....");
+			List<Bicluster> merged =
+					mergeGroups.isEmpty() ? new ArrayList<Bicluster>()
+							: MapController.execute(mergeTask,
+									mergeGroups);
+			superBiclusters = keptBiclusters;
+			superBiclusters.addAll(merged);
+			if (round >= rounds) {
+				break;
+			}
+
+			LOGGER.debug("Rehashing merged biclusters....");
+			SignatureStore nextStore =
+					new SignatureStore(hashFunctions.size(),
+							superBiclusters.size());
+			for (int slot : keptSlots) {
+				nextStore.copySignature(nextStore.addSlot(),
+						signatureStore, slot);
+			}
+			Map<Integer, Bicluster> changed =
+					new LinkedHashMap<Integer, Bicluster>();
+			for (Bicluster bicluster : merged) {
+				Integer slot = memberSlots.get(new BiclusterKey(bicluster));
+				int nextSlot = nextStore.addSlot();
+				if (slot != null) {
+					nextStore.copySignature(nextSlot, signatureStore, slot);
+				} else {
+					changed.put(nextSlot, bicluster);
+				}
+			}
+			LOGGER.debug(String.format(
+					"Round %1d: %1d of %1d biclusters are new", round,
+					changed.size(), superBiclusters.size()));
+			if (changed.isEmpty()) {
+				break;
+			}
+			computeSignatures(changed, hashTask, nextStore);
+			biclusterPool = superBiclusters;
+			signatureStore = nextStore;
+		}
 
 		reportBiggestBiclusters(superBiclusters, matrix);
 
@@ -155,6 +318,152 @@ public class MinHashTransformer extends TransformerBlock {
 		return superBiclusters;
 	}
 
+	/**
+	 * Streams over the input biclusters and stores the signatures of
+	 * a uniform sample of them in 'signatureStore', returning the
+	 * sampled biclusters in the order of their slots. All biclusters
+	 * are kept if their signatures fit into the memory budget;
+	 * otherwise the largest possible number of biclusters with the
+	 * smallest priorities is kept. The signatures are computed in
+	 * parallel, one chunk of the input at a time.
+	 */
+	private List<Bicluster> hashBiclusters(
+			Iterable<? extends Bicluster> biclusters,
+			MinHashSignatureFunction hashFunctions,
+			MinHashBiclustersTask hashTask,
+			SignatureStore signatureStore) {
+		int capacity = getSampleCapacity(hashFunctions.size());
+		List<Bicluster> sample = new ArrayList<Bicluster>();
+		SampleHeap priorities = new SampleHeap();
+		Map<Integer, Bicluster> chunk =
+				new LinkedHashMap<Integer, Bicluster>();
+		long seen = 0;
+
+		for (Bicluster bicluster : biclusters) {
+			long priority =
+					RandomStreams.deriveSeed(MinHashTransformer.class,
+							BiclusterUtils.getContentHash(bicluster));
+			int slot;
+			if (seen < capacity) {
+				slot = signatureStore.addSlot();
+				sample.add(bicluster);
+				priorities.add(slot, priority);
+			} else {
+				if (seen == capacity) {
+					LOGGER.warn(String
+							.format("Signatures of more than %1d biclusters exceed the memory budget, taking random sample...",
+									capacity));
+				}
+				if (priority < priorities.getMaxPriority()) {
+					slot = priorities.getMaxSlot();
+					priorities.replaceMax(priority);
+				} else {
+					slot = -1;
+				}
+			}
+			seen++;
+			if (slot < 0) {
+				continue;
+			}
+			sample.set(slot, bicluster);
+			chunk.put(slot, bicluster);
+			if (chunk.size() == CHUNK_SIZE) {
+				computeSignatures(chunk, hashTask, signatureStore);
+				chunk.clear();
+			}
+		}
+		computeSignatures(chunk, hashTask, signatureStore);
+
+		if (seen > capacity) {
+			LOGGER.debug(String.format(
+					"Continuing with %1d random biclusters",
+					sample.size()));
+		}
+		return sample;
+	}
+
+	/**
+	 * Computes the signatures of a chunk of biclusters, given by their
+	 * slots, in parallel with a copy of 'hashTask' and stores them.
+	 */
+	private void computeSignatures(Map<Integer, Bicluster> chunk,
+			MinHashBiclustersTask hashTask,
+			SignatureStore signatureStore) {
+		if (chunk.isEmpty()) {
+			return;
+		}
+		List<Bicluster> chunkBiclusters =
+				new ArrayList<Bicluster>(chunk.values());
+		List<Integer> chunkSlots = new ArrayList<Integer>(chunk.keySet());
+		List<Integer> chunkIds =
+				new ArrayList<Integer>(chunkBiclusters.size());
+		for (int i = 0; i < chunkBiclusters.size(); i++) {
+			chunkIds.add(i);
+		}
+		List<KeyValuePair<Integer, int[]>> tuples =
+				MapController.execute(
+						hashTask.withBiclusters(chunkBiclusters), chunkIds);
+
+		for (KeyValuePair<Integer, int[]> tuple : tuples) {
+			signatureStore.setSignature(
+					chunkSlots.get(tuple.getKey()), tuple.getValue());
+		}
+	}
+
+	/**
+	 * Returns how many signatures fit into the memory budget, counting
+	 * the signature itself and its entries in the LshBandIndex.
+	 */
+	private int getSampleCapacity(int signatureLength) {
+		long bytesPerBicluster =
+				4L * signatureLength + BYTES_PER_BAND_ENTRY * bandCount;
+		// the signatures share one int array, the bands one index
+		long maxBiclusters =
+				Math.min(Integer.MAX_VALUE / signatureLength,
+						LshBandIndex.MAX_ENTRIES / bandCount);
+		return (int) Math.max(1, Math.min(maxBiclusters, memoryBudget
+				/ bytesPerBicluster));
+	}
+
+	/**
+	 * Groups the biclusters that collide in the bands of their
+	 * signatures and returns every distinct group once, as a list of
+	 * slots.
+	 */
+	private List<List<Integer>> findGroups(List<Bicluster> biclusterPool,
+			SignatureStore signatureStore) {
+		int[] signatures = signatureStore.getSignatures();
+		int signatureLength = signatureStore.getSignatureLength();
+		List<Integer> biclusterIds =
+				new ArrayList<Integer>(biclusterPool.size());
+		for (int i = 0; i < biclusterPool.size(); i++) {
+			biclusterIds.add(i);
+		}
+
+		LOGGER.debug("Reorganizing Hashbands for group extraction...");
+		LshBandIndex bandIndex =
+				new LshBandIndex(biclusterPool.size(), signatureLength,
+						bandCount);
+		MapController.execute(new MinHasherBiclusterReduceTask(
+				bandIndex, signatures), biclusterIds);
+
+		LOGGER.debug("Calculating groups of biclusters....");
+		// the pool is in input order, so the groups are built in an
+		// order that only depends on the biclusters themselves
+		long[] ranks = new long[biclusterPool.size()];
+		for (int i = 0; i < biclusterPool.size(); i++) {
+			ranks[i] =
+					BiclusterUtils.getContentHash(biclusterPool.get(i));
+		}
+		// a group can show up in several bands
+		return new ArrayList<List<Integer>>(
+				new LinkedHashSet<List<Integer>>(MapController.execute(
+						new MinHasherBucketGroupTask(signatures,
+								signatureLength, bandCount,
+								minCollidingBands, minSimilarity, ranks),
+						bandIndex.getBuckets())));
+	}
+
 	private void reportBiggestBiclusters(List<Bicluster> biclusters,
 			BinaryMatrix matrix) {
 		List<Bicluster> sortedBiclusters =
@@ -173,31 +482,17 @@ public class MinHashTransformer extends TransformerBlock {
 		}
 	}
 
-	private Collection<? extends Bicluster> sampleBiclusters(
-			Collection<? extends Bicluster> biclusters) {
-		Collection<Bicluster> sampledBiclusters =
-				new ArrayList<Bicluster>();
-		float keep_ratio = 1.1f;
-		if (biclusters.size() > MAX_BICLUSTER_SAMPLES) {
-			LOGGER.warn(String
-					.format("Too many biclusters as input (%1d), taking random sample...",
-							biclusters.size()));
-			keep_ratio =
-					(float) MAX_BICLUSTER_SAMPLES
-					/ biclusters.size();
-		} else {
-			return biclusters;
-		}
-		Random rand = new Random(696);
-		for (Bicluster bicluster : biclusters) {
-			if (rand.nextFloat() < keep_ratio) {
-				sampledBiclusters.add(bicluster);
-			}
+	private MinHashSignatureFunction getSignatureFunction(
+			int signatureLength, int targetBinSize) {
+		if (useOnePermutation) {
+			return new OnePermutationHash(new RandomHashFunction(
+					(int) RandomStreams.deriveSeed(
+							OnePermutationHash.class, 0), targetBinSize),
+					signatureLength, RandomStreams.deriveSeed(
+							OnePermutationHash.class, 1));
 		}
-		LOGGER.debug(String.format(
-				"Continuing with %1d random biclusters",
-				sampledBiclusters.size()));
-		return sampledBiclusters;
+		return new MinHashFunctions(getRandomHashFunctions(
+				signatureLength, targetBinSize));
 	}
 
 	private List<RandomHashFunction> getRandomHashFunctions(
@@ -206,11 +501,113 @@ public class MinHashTransformer extends TransformerBlock {
 				new ArrayList<RandomHashFunction>();
 
 		for (int i = 0; i < numberOfHashFunctions; i++) {
-			hashFunctions.add(new RandomHashFunction(i,
-					targetBinSize));
+			hashFunctions.add(new RandomHashFunction(
+					(int) RandomStreams.deriveSeed(
+							RandomHashFunction.class, i), targetBinSize));
 		}
 
 		return hashFunctions;
 	}
 
+	/**
+	 * The priorities of the sampled slots in a binary max-heap, so
+	 * that the slot with the largest priority can be replaced.
+	 */
+	private static class SampleHeap {
+		private long[] priorities = new long[16];
+		private int[] slots = new int[16];
+		private int size = 0;
+
+		public void add(int slot, long priority) {
+			if (size == slots.length) {
+				priorities = Arrays.copyOf(priorities, size * 2);
+				slots = Arrays.copyOf(slots, size * 2);
+			}
+			int position = size++;
+			while (position > 0
+					&& priorities[(position - 1) / 2] < priority) {
+				int parent = (position - 1) / 2;
+				priorities[position] = priorities[parent];
+				slots[position] = slots[parent];
+				position = parent;
+			}
+			priorities[position] = priority;
+			slots[position] = slot;
+		}
+
+		public long getMaxPriority() {
+			return priorities[0];
+		}
+
+		public int getMaxSlot() {
+			return slots[0];
+		}
+
+		/**
+		 * Gives the slot with the largest priority a new, smaller
+		 * priority.
+		 */
+		public void replaceMax(long priority) {
+			int slot = slots[0];
+			int position = 0;
+			while (2 * position + 1 < size) {
+				int child = 2 * position + 1;
+				if (child + 1 < size
+						&& priorities[child + 1] > priorities[child]) {
+					child++;
+				}
+				if (priorities[child] <= priority) {
+					break;
+				}
+				priorities[position] = priorities[child];
+				slots[position] = slots[child];
+				position = child;
+			}
+			priorities[position] = priority;
+			slots[position] = slot;
+		}
+	}
+
+	/**
+	 * The sorted rows and columns of a bicluster, for finding merge
+	 * results that are equal to an input bicluster.
+	 */
+	private static class BiclusterKey {
+		private final int[] rows;
+		private final int[] columns;
+		private final int hash;
+
+		private BiclusterKey(Bicluster bicluster) {
+			rows = toSortedArray(bicluster.getRowIterator(),
+					bicluster.getNumberOfRows());
+			columns = toSortedArray(bicluster.getColumnIterator(),
+					bicluster.getNumberOfColumns());
+			hash = 31 * Arrays.hashCode(rows) + Arrays.hashCode(columns);
+		}
+
+		private static int[] toSortedArray(Iterator<Integer> iterator,
+				int size) {
+			int[] values = new int[size];
+			for (int i = 0; i < size; i++) {
+				values[i] = iterator.next();
+			}
+			Arrays.sort(values);
+			return values;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof BiclusterKey))
+				return false;
+			BiclusterKey other = (BiclusterKey) obj;
+			return Arrays.equals(rows, other.rows)
+					&& Arrays.equals(columns, other.columns);
+		}
+	}
+
 }
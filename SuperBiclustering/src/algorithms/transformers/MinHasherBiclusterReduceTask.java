@@ -20,69 +20,44 @@
 package algorithms.transformers;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Set;
 
-import map.KeyValuePair;
 import map.MapAlgorithm;
-import datatype.bicluster.Bicluster;
 
 /**
- * Takes a set of input blocks with their associated min-hashes and
- * maps these together by those same min-hashes. It subsequently
- * output the group data structure.
+ * Takes the ids of a set of input blocks and adds the min-hash
+ * signature of each of them to the shared LshBandIndex, which maps
+ * the blocks together by the hashes of each band. The output is the
+ * number of blocks added.
  *
  * @author "Oliver Voggenreiter"
  * @date Mar 11, 2013
  *
  */
-public class MinHasherBiclusterReduceTask
-implements
-MapAlgorithm<KeyValuePair<Integer, KeyValuePair<Bicluster, List<Integer>>>, KeyValuePair<Integer, Map<Set<Integer>, List<Bicluster>>>> {
+public class MinHasherBiclusterReduceTask implements
+		MapAlgorithm<Integer, Integer> {
 
-	@Override
-	public
-	List<KeyValuePair<Integer, Map<Set<Integer>, List<Bicluster>>>>
-	map(List<KeyValuePair<Integer, KeyValuePair<Bicluster, List<Integer>>>> keyValuePairs) {
-		List<KeyValuePair<Integer, Map<Set<Integer>, List<Bicluster>>>> tuples =
-				new ArrayList<KeyValuePair<Integer, Map<Set<Integer>, List<Bicluster>>>>();
+	private final LshBandIndex bandIndex;
+	private final int[] signatures;
 
-		Map<Integer, List<KeyValuePair<Bicluster, List<Integer>>>> bandMap =
-				new HashMap<Integer, List<KeyValuePair<Bicluster, List<Integer>>>>();
-		for (KeyValuePair<Integer, KeyValuePair<Bicluster, List<Integer>>> keyValuePair : keyValuePairs) {
-			if (!bandMap.containsKey(keyValuePair.getKey())) {
-				List<KeyValuePair<Bicluster, List<Integer>>> rowsInBand =
-						new ArrayList<KeyValuePair<Bicluster, List<Integer>>>();
-				bandMap.put(keyValuePair.getKey(), rowsInBand);
-			}
-			bandMap.get(keyValuePair.getKey()).add(
-					keyValuePair.getValue());
-		}
+	/**
+	 * 'signatures' holds the signatures of all biclusters in the
+	 * layout expected by LshBandIndex.addSignature.
+	 */
+	public MinHasherBiclusterReduceTask(LshBandIndex bandIndex,
+			int[] signatures) {
+		this.bandIndex = bandIndex;
+		this.signatures = signatures;
+	}
 
-		for (Entry<Integer, List<KeyValuePair<Bicluster, List<Integer>>>> entry : bandMap
-				.entrySet()) {
-			Map<Set<Integer>, List<Bicluster>> bandHash =
-					new HashMap<Set<Integer>, List<Bicluster>>();
-			for (KeyValuePair<Bicluster, List<Integer>> keyValuePair : entry
-					.getValue()) {
-				Set<Integer> fingerprint = new HashSet<Integer>();
-				for (Integer hash : keyValuePair.getValue()) {
-					fingerprint.add(hash);
-				}
-				if (!bandHash.containsKey(fingerprint)) {
-					bandHash.put(fingerprint,
-							new ArrayList<Bicluster>());
-				}
-				bandHash.get(fingerprint).add(keyValuePair.getKey());
-			}
-			tuples.add(new KeyValuePair<Integer, Map<Set<Integer>, List<Bicluster>>>(
-					entry.getKey(), bandHash));
+	@Override
+	public List<Integer> map(List<Integer> biclusterIds) {
+		for (int biclusterId : biclusterIds) {
+			bandIndex.addSignature(biclusterId, signatures);
 		}
 
+		List<Integer> tuples = new ArrayList<Integer>(1);
+		tuples.add(biclusterIds.size());
 		return tuples;
 	}
 
@@ -0,0 +1,153 @@
+/* SuperBiclustering - A biclustering algorithm designed to
+ * handle sparse and noisy input.
+ * Copyright (C) 2014 Oliver Voggenreiter
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package algorithms.transformers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import map.MapAlgorithm;
+
+/**
+ * Takes the buckets of the LshBandIndex and splits each bucket into
+ * groups of biclusters that were all checked against each other: a
+ * bicluster joins the first group of its bucket whose members are all
+ * similar to it, or starts a new group. Two biclusters are similar if
+ * their signatures agree on a minimum number of whole bands and on a
+ * minimum fraction of all hashes (an estimate of their Jaccard
+ * similarity). Without any check, every bucket is one group.
+ *
+ * The groups never reach beyond one bucket, so unrelated biclusters
+ * are not chained together by biclusters similar to both. The
+ * biclusters of a bucket are visited by ascending rank, so the groups
+ * do not depend on the order in which the buckets were filled. With
+ * checks, a group is closed once it has MAX_GROUP_SIZE members, which
+ * bounds the checks per bicluster by MAX_GROUP_SIZE times the number
+ * of open groups of its bucket.
+ */
+public class MinHasherBucketGroupTask implements
+		MapAlgorithm<int[], List<Integer>> {
+
+	/** Default fraction of equal hashes for grouping two biclusters. */
+	public static final float DEFAULT_MIN_SIMILARITY = 0.5f;
+
+	private static final int MAX_GROUP_SIZE = 64;
+
+	private final int[] signatures;
+	private final int signatureLength;
+	private final int bandCount;
+	private final int minCollidingBands;
+	private final float minSimilarity;
+	private final Comparator<Integer> byRank;
+
+	/**
+	 * 'ranks' holds the rank of every bicluster; equal ranks are
+	 * ordered by id.
+	 */
+	public MinHasherBucketGroupTask(int[] signatures, int signatureLength,
+			int bandCount, int minCollidingBands, float minSimilarity,
+			final long[] ranks) {
+		this.signatures = signatures;
+		this.signatureLength = signatureLength;
+		this.bandCount = bandCount;
+		this.minCollidingBands = minCollidingBands;
+		this.minSimilarity = minSimilarity;
+		this.byRank = new Comparator<Integer>() {
+
+			@Override
+			public int compare(Integer o1, Integer o2) {
+				if (ranks[o1] != ranks[o2]) {
+					return ranks[o1] < ranks[o2] ? -1 : 1;
+				}
+				return o1.compareTo(o2);
+			}
+
+		};
+	}
+
+	@Override
+	public List<List<Integer>> map(List<int[]> buckets) {
+		boolean verify = minCollidingBands > 1 || minSimilarity > 0f;
+		List<List<Integer>> tuples = new ArrayList<List<Integer>>();
+
+		for (int[] bucket : buckets) {
+			Integer[] biclusterIds = new Integer[bucket.length];
+			for (int i = 0; i < bucket.length; i++) {
+				biclusterIds[i] = bucket[i];
+			}
+			Arrays.sort(biclusterIds, byRank);
+
+			List<List<Integer>> openGroups = new ArrayList<List<Integer>>();
+			for (int biclusterId : biclusterIds) {
+				List<Integer> group = null;
+				for (List<Integer> openGroup : openGroups) {
+					if (!verify || isSimilarToAll(biclusterId, openGroup)) {
+						group = openGroup;
+						break;
+					}
+				}
+				if (group == null) {
+					group = new ArrayList<Integer>();
+					openGroups.add(group);
+					tuples.add(group);
+				}
+				group.add(biclusterId);
+				if (verify && group.size() == MAX_GROUP_SIZE) {
+					openGroups.remove(group);
+				}
+			}
+		}
+
+		return tuples;
+	}
+
+	private boolean isSimilarToAll(int biclusterId, List<Integer> group) {
+		for (int member : group) {
+			if (!isSimilar(biclusterId, member)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean isSimilar(int a, int b) {
+		int offsetA = a * signatureLength;
+		int offsetB = b * signatureLength;
+		int collidingBands = 0;
+		int equalHashes = 0;
+		for (int band = 0; band < bandCount; band++) {
+			boolean colliding = true;
+			for (int i = band; i < signatureLength; i += bandCount) {
+				if (signatures[offsetA + i] == signatures[offsetB + i]) {
+					equalHashes++;
+				} else {
+					colliding = false;
+				}
+			}
+			if (colliding) {
+				collidingBands++;
+			}
+		}
+		return collidingBands >= minCollidingBands
+				&& equalHashes >= minSimilarity * signatureLength;
+	}
+
+}
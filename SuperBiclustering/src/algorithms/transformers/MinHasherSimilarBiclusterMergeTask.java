@@ -20,20 +20,38 @@
 package algorithms.transformers;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 
 import map.MapAlgorithm;
-import util.BiclusterUtils;
+import util.BitUtils;
 import algorithms.generators.HashSetBicluster;
 import datatype.bicluster.Bicluster;
 import datatype.matrix.BinaryMatrix;
+import datatype.matrix.PackedBinaryMatrix;
 
 /**
  * This MapAlgorithm takes many lists of biclusters as input and
- * simply merges all biclusters in each list into one
- * super-bicluster. If the density of that super-bicluster meets the
- * minimum, it is passed on to the output.
+ * merges each list into as few dense super-biclusters as possible.
+ * The union of all biclusters of a list is passed on if its density
+ * meets the minimum.
+ *
+ * Before the ones of a union are counted, its density is bounded from
+ * above by the row and column degrees of the matrix, which rejects
+ * hopeless unions without looking at any cell; the count itself uses
+ * word-level popcounts.
+ *
+ * A list whose union is not dense enough is split greedily instead of
+ * being dropped. Starting from its largest bicluster, the others are
+ * added by decreasing area as long as the union stays dense enough;
+ * the part is passed on if it is dense enough, and the rejected
+ * biclusters are split the same way. Each addition only counts the
+ * ones of the new rows and columns. Once the remaining biclusters
+ * have been rejected by MAX_REJECTIONS (64) parts, each of them is
+ * passed on alone if it is dense enough, so a list costs at most
+ * MAX_REJECTIONS additions per bicluster.
  *
  * @author "Oliver Voggenreiter"
  * @date Mar 11, 2013
@@ -42,13 +60,27 @@ import datatype.matrix.BinaryMatrix;
 public class MinHasherSimilarBiclusterMergeTask implements
 MapAlgorithm<List<Bicluster>, Bicluster> {
 
+	private static final int MAX_REJECTIONS = 64;
+
 	private float minDensity;
-	private BinaryMatrix matrix;
+	private PackedBinaryMatrix matrix;
+	private int[] rowDegrees;
+	private int[] columnDegrees;
 
 	public MinHasherSimilarBiclusterMergeTask(float minDensity,
 			BinaryMatrix matrix) {
 		this.minDensity = minDensity;
-		this.matrix = matrix;
+		this.matrix = PackedBinaryMatrix.pack(matrix);
+		this.rowDegrees = new int[matrix.getNumRows()];
+		this.columnDegrees = new int[matrix.getNumColumns()];
+		for (int row = 0; row < matrix.getNumRows(); row++) {
+			long[] rowWords = this.matrix.getRowWords(row);
+			rowDegrees[row] = BitUtils.cardinality(rowWords);
+			for (int column = BitUtils.nextSetBit(rowWords, 0); column > -1; column =
+					BitUtils.nextSetBit(rowWords, column + 1)) {
+				columnDegrees[column]++;
+			}
+		}
 	}
 
 	@Override
@@ -56,23 +88,230 @@ MapAlgorithm<List<Bicluster>, Bicluster> {
 		List<Bicluster> tuples = new ArrayList<Bicluster>();
 
 		for (List<Bicluster> biclusterSet : keyValuePairs) {
-			Bicluster superBicluster = new HashSetBicluster();
+			Block superBicluster = new Block();
 			for (Bicluster bicluster : biclusterSet) {
-				Iterator<Integer> rowIterator =
-						bicluster.getRowIterator();
-				while (rowIterator.hasNext()) {
-					superBicluster.addRow(rowIterator.next());
+				superBicluster.add(bicluster);
+			}
+			if (isDenseEnough(superBicluster)) {
+				tuples.add(superBicluster.toBicluster());
+			} else if (biclusterSet.size() > 1) {
+				splitGreedily(biclusterSet, tuples);
+			}
+		}
+		return tuples;
+	}
+
+	private void splitGreedily(List<Bicluster> biclusterSet,
+			List<Bicluster> tuples) {
+		List<Bicluster> remaining = new ArrayList<Bicluster>(biclusterSet);
+		Collections.sort(remaining, new Comparator<Bicluster>() {
+			@Override
+			public int compare(Bicluster o1, Bicluster o2) {
+				long area1 =
+						(long) o1.getNumberOfRows()
+								* o1.getNumberOfColumns();
+				long area2 =
+						(long) o2.getNumberOfRows()
+								* o2.getNumberOfColumns();
+				return area1 > area2 ? -1 : (area1 < area2 ? 1 : 0);
+			}
+		});
+
+		// all biclusters in 'remaining' have been rejected by
+		// 'rejections' parts so far
+		int rejections = 0;
+		while (!remaining.isEmpty()) {
+			Block part = new Block();
+			part.add(remaining.get(0));
+			if (rejections >= MAX_REJECTIONS) {
+				for (Bicluster bicluster : remaining) {
+					part = new Block();
+					part.add(bicluster);
+					if (isDenseEnough(part)) {
+						tuples.add(part.toBicluster());
+					}
 				}
-				Iterator<Integer> columnIterator =
-						bicluster.getColumnIterator();
-				while (columnIterator.hasNext()) {
-					superBicluster.addColumn(columnIterator.next());
+				return;
+			}
+			part.ones = countOnes(part);
+			List<Bicluster> rejected = new ArrayList<Bicluster>();
+			for (int i = 1; i < remaining.size(); i++) {
+				if (!part.addIfDenseEnough(remaining.get(i))) {
+					rejected.add(remaining.get(i));
 				}
 			}
-			if (BiclusterUtils.getDensity(superBicluster, matrix) >= minDensity) {
-				tuples.add(superBicluster);
+			if (isDenseEnough(part.rowCount, part.columnCount, part.ones)) {
+				tuples.add(part.toBicluster());
 			}
+			remaining = rejected;
+			rejections++;
+		}
+	}
+
+	private boolean isDenseEnough(int rowCount, int columnCount, long ones) {
+		long area = (long) rowCount * columnCount;
+		if (area == 0) {
+			return 0 >= minDensity;
+		}
+		return (float) ones / area >= minDensity;
+	}
+
+	/**
+	 * Same as BiclusterUtils.getDensity(block) >= minDensity, but
+	 * first checks an upper bound of the number of ones: a row cannot
+	 * contribute more ones than its degree or the number of columns,
+	 * and the same holds for the columns.
+	 */
+	private boolean isDenseEnough(Block block) {
+		long area = (long) block.rowCount * block.columnCount;
+		if (area == 0) {
+			return 0 >= minDensity;
+		}
+
+		long rowBound = 0;
+		for (int row = BitUtils.nextSetBit(block.rows, 0); row > -1; row =
+				BitUtils.nextSetBit(block.rows, row + 1)) {
+			rowBound += Math.min(rowDegrees[row], block.columnCount);
+		}
+		long columnBound = 0;
+		for (int column = BitUtils.nextSetBit(block.columns, 0); column > -1; column =
+				BitUtils.nextSetBit(block.columns, column + 1)) {
+			columnBound += Math.min(columnDegrees[column], block.rowCount);
+		}
+		if ((float) Math.min(rowBound, columnBound) / area < minDensity) {
+			return false;
+		}
+
+		return (float) countOnes(block) / area >= minDensity;
+	}
+
+	private long countOnes(Block block) {
+		long ones = 0;
+		for (int row = BitUtils.nextSetBit(block.rows, 0); row > -1; row =
+				BitUtils.nextSetBit(block.rows, row + 1)) {
+			ones +=
+					BitUtils.cardinalityAnd(matrix.getRowWords(row),
+							block.columns);
+		}
+		return ones;
+	}
+
+	/**
+	 * The union of some biclusters as row and column words.
+	 */
+	private class Block {
+		private long[] rows = BitUtils.newWords(matrix.getNumRows());
+		private long[] columns = BitUtils.newWords(matrix
+				.getNumColumns());
+		private int rowCount = 0;
+		private int columnCount = 0;
+		/** The number of ones, only kept up to date by addIfDenseEnough. */
+		private long ones = 0;
+
+		private void add(Bicluster bicluster) {
+			Iterator<Integer> rowIterator = bicluster.getRowIterator();
+			while (rowIterator.hasNext()) {
+				int row = rowIterator.next();
+				if (!BitUtils.get(rows, row)) {
+					BitUtils.set(rows, row);
+					rowCount++;
+				}
+			}
+			Iterator<Integer> columnIterator =
+					bicluster.getColumnIterator();
+			while (columnIterator.hasNext()) {
+				int column = columnIterator.next();
+				if (!BitUtils.get(columns, column)) {
+					BitUtils.set(columns, column);
+					columnCount++;
+				}
+			}
+		}
+
+		/**
+		 * Adds the bicluster if the union stays dense enough. Only the
+		 * new rows and columns are looked at: their degrees bound the
+		 * new ones before any cell is counted, and a rejected bicluster
+		 * leaves the block unchanged.
+		 */
+		private boolean addIfDenseEnough(Bicluster bicluster) {
+			int[] newRows = new int[bicluster.getNumberOfRows()];
+			int newRowCount = 0;
+			Iterator<Integer> rowIterator = bicluster.getRowIterator();
+			while (rowIterator.hasNext()) {
+				int row = rowIterator.next();
+				if (!BitUtils.get(rows, row)) {
+					newRows[newRowCount++] = row;
+				}
+			}
+			int[] newColumns = new int[bicluster.getNumberOfColumns()];
+			int newColumnCount = 0;
+			Iterator<Integer> columnIterator =
+					bicluster.getColumnIterator();
+			while (columnIterator.hasNext()) {
+				int column = columnIterator.next();
+				if (!BitUtils.get(columns, column)) {
+					newColumns[newColumnCount++] = column;
+				}
+			}
+			int totalRows = rowCount + newRowCount;
+			int totalColumns = columnCount + newColumnCount;
+
+			long bound = ones;
+			for (int i = 0; i < newRowCount; i++) {
+				bound += Math.min(rowDegrees[newRows[i]], totalColumns);
+			}
+			for (int i = 0; i < newColumnCount; i++) {
+				bound += Math.min(columnDegrees[newColumns[i]], totalRows);
+			}
+			if (!isDenseEnough(totalRows, totalColumns, bound)) {
+				return false;
+			}
+
+			// the new cells are the new rows in the old columns and all
+			// rows in the new columns
+			long newOnes = ones;
+			for (int i = 0; i < newRowCount; i++) {
+				newOnes +=
+						BitUtils.cardinalityAnd(
+								matrix.getRowWords(newRows[i]), columns);
+				BitUtils.set(rows, newRows[i]);
+			}
+			for (int row = BitUtils.nextSetBit(rows, 0); row > -1; row =
+					BitUtils.nextSetBit(rows, row + 1)) {
+				long[] rowWords = matrix.getRowWords(row);
+				for (int i = 0; i < newColumnCount; i++) {
+					if (BitUtils.get(rowWords, newColumns[i])) {
+						newOnes++;
+					}
+				}
+			}
+			if (!isDenseEnough(totalRows, totalColumns, newOnes)) {
+				for (int i = 0; i < newRowCount; i++) {
+					BitUtils.clear(rows, newRows[i]);
+				}
+				return false;
+			}
+			for (int i = 0; i < newColumnCount; i++) {
+				BitUtils.set(columns, newColumns[i]);
+			}
+			rowCount = totalRows;
+			columnCount = totalColumns;
+			ones = newOnes;
+			return true;
+		}
+
+		private Bicluster toBicluster() {
+			Bicluster bicluster = new HashSetBicluster();
+			for (int row = BitUtils.nextSetBit(rows, 0); row > -1; row =
+					BitUtils.nextSetBit(rows, row + 1)) {
+				bicluster.addRow(row);
+			}
+			for (int column = BitUtils.nextSetBit(columns, 0); column > -1; column =
+					BitUtils.nextSetBit(columns, column + 1)) {
+				bicluster.addColumn(column);
+			}
+			return bicluster;
 		}
-		return tuples;
 	}
 }
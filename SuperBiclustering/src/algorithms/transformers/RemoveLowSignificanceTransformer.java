@@ -20,6 +20,7 @@
 package algorithms.transformers;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -27,11 +28,16 @@ import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import map.MapAlgorithm;
+import map.MapController;
 import util.BiclusterUtils;
+import util.BitUtils;
 import algorithms.TransformerBlock;
 import datatype.bicluster.Bicluster;
+import datatype.bicluster.BinaryVector;
 import datatype.matrix.BinaryMatrix;
 import datatype.matrix.BitSetBinaryMatrix;
+import datatype.matrix.PackedBinaryMatrix;
 
 public class RemoveLowSignificanceTransformer extends
 TransformerBlock {
@@ -39,6 +45,13 @@ TransformerBlock {
 	private static final Logger LOGGER = LoggerFactory
 			.getLogger(RemoveLowSignificanceTransformer.class);
 
+	// Upper bound on the biclusters checked together, which bounds the
+	// pairwise conflict checks.
+	private static final int MAX_BATCH_SIZE = 1024;
+	// Batches with fewer row words to scan are checked on the calling
+	// thread.
+	private static final long MIN_PARALLEL_WORDS = 1L << 20;
+
 	private float minSignificance;
 	private boolean negCoExp = false;
 
@@ -79,21 +92,36 @@ TransformerBlock {
 			matrix = getNormalMatrix(matrix);
 		}
 
+		PackedBinaryMatrix packedMatrix = PackedBinaryMatrix.pack(matrix);
 		CoverageMatrix coverage =
 				new CoverageMatrix(matrix.getNumRows(), matrix
 						.getNumColumns(), biclusters);
+		SignificanceTask task =
+				new SignificanceTask(coverage, packedMatrix,
+						minSignificance);
 
+		// Biclusters without a common cell do not change each other's
+		// significance, so runs of such biclusters are checked in
+		// parallel and give the same result as checking them one by
+		// one.
+		long[] rowUnion = BitUtils.newWords(matrix.getNumRows());
+		long[] columnUnion = BitUtils.newWords(matrix.getNumColumns());
+		List<Candidate> batch = new ArrayList<Candidate>();
 		for (Bicluster bicluster : sortedBiclusters) {
-			int significantOnes =
-					coverage.computeSignificantOnesCount(bicluster,
-							matrix);
-
-			if (significantOnes >= minSignificance
-					* BiclusterUtils.getArea(bicluster)) {
-				superBiclusters.add(bicluster);
-			} else {
-				coverage.removeOnes(bicluster);
+			Candidate candidate = new Candidate(bicluster);
+			if (batch.size() == MAX_BATCH_SIZE
+					|| candidate.conflictsWith(batch, rowUnion,
+							columnUnion)) {
+				checkBatch(batch, task, coverage, superBiclusters);
+				batch.clear();
+				Arrays.fill(rowUnion, 0L);
+				Arrays.fill(columnUnion, 0L);
 			}
+			batch.add(candidate);
+			candidate.addTo(rowUnion, columnUnion);
+		}
+		if (!batch.isEmpty()) {
+			checkBatch(batch, task, coverage, superBiclusters);
 		}
 
 		LOGGER.info(String.format("Finished with %d biclusters.",
@@ -103,6 +131,142 @@ TransformerBlock {
 		return superBiclusters;
 	}
 
+	/**
+	 * Checks the significance of a batch of biclusters without common
+	 * cells, keeps the significant ones in batch order and removes the
+	 * others from the coverage.
+	 */
+	private void checkBatch(List<Candidate> batch,
+			SignificanceTask task, CoverageMatrix coverage,
+			List<Bicluster> superBiclusters) {
+		long words = 0;
+		for (Candidate candidate : batch) {
+			words += candidate.rows.length;
+		}
+		words *= BitUtils.getWordCount(coverage.getNumColumns());
+		if (words >= MIN_PARALLEL_WORDS
+				&& MapController.getThreadCount() > 1) {
+			MapController.execute(task, batch);
+		} else {
+			task.map(batch);
+		}
+		for (Candidate candidate : batch) {
+			if (candidate.significant) {
+				superBiclusters.add(candidate.bicluster);
+			} else {
+				coverage.removeOnes(candidate.bicluster);
+			}
+		}
+	}
+
+	/**
+	 * A bicluster in the order in which it is checked. Uses the
+	 * identity hash so that the MapController spreads candidates
+	 * evenly.
+	 */
+	private static class Candidate {
+		private final Bicluster bicluster;
+		private final int[] rows;
+		private final int[] columns;
+		private boolean significant = false;
+
+		private Candidate(Bicluster bicluster) {
+			this.bicluster = bicluster;
+			this.rows = toArray(bicluster.getRows());
+			this.columns = toArray(bicluster.getColumns());
+		}
+
+		/**
+		 * Returns true if the bicluster shares a cell with any
+		 * bicluster of the batch. 'rowUnion' and 'columnUnion' hold
+		 * the rows and columns of the whole batch and rule out most
+		 * biclusters without comparing them to each member.
+		 */
+		private boolean conflictsWith(List<Candidate> batch,
+				long[] rowUnion, long[] columnUnion) {
+			if (!intersects(rows, rowUnion)
+					|| !intersects(columns, columnUnion)) {
+				return false;
+			}
+			for (Candidate member : batch) {
+				if (intersects(rows, member.bicluster.getRows())
+						&& intersects(columns, member.bicluster
+								.getColumns())) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private void addTo(long[] rowUnion, long[] columnUnion) {
+			for (int row : rows) {
+				BitUtils.set(rowUnion, row);
+			}
+			for (int column : columns) {
+				BitUtils.set(columnUnion, column);
+			}
+		}
+
+		private static boolean intersects(int[] elements, long[] words) {
+			for (int element : elements) {
+				if (BitUtils.get(words, element)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private static boolean intersects(int[] elements,
+				BinaryVector vector) {
+			for (int element : elements) {
+				if (vector.get(element)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private static int[] toArray(BinaryVector vector) {
+			int[] array = new int[vector.cardinality()];
+			int index = 0;
+			for (int element : vector) {
+				array[index++] = element;
+			}
+			return array;
+		}
+	}
+
+	/**
+	 * Computes whether each candidate is significant. Only reads the
+	 * coverage, which is not changed while a batch is checked.
+	 */
+	private static class SignificanceTask implements
+	MapAlgorithm<Candidate, Candidate> {
+		private final CoverageMatrix coverage;
+		private final PackedBinaryMatrix matrix;
+		private final float minSignificance;
+
+		private SignificanceTask(CoverageMatrix coverage,
+				PackedBinaryMatrix matrix, float minSignificance) {
+			this.coverage = coverage;
+			this.matrix = matrix;
+			this.minSignificance = minSignificance;
+		}
+
+		@Override
+		public List<Candidate> map(List<Candidate> candidates) {
+			for (Candidate candidate : candidates) {
+				int significantOnes =
+						coverage.computeSignificantOnesCount(
+								candidate.bicluster, matrix);
+				candidate.significant =
+						significantOnes >= minSignificance
+						* BiclusterUtils.getArea(candidate.bicluster);
+			}
+			return candidates;
+		}
+	}
+
 	public RemoveLowSignificanceTransformer negativeCoExpression(
 			boolean negCoExp) {
 		this.negCoExp = negCoExp;
@@ -0,0 +1,82 @@
+/* SuperBiclustering - A biclustering algorithm designed to
+ * handle sparse and noisy input.
+ * Copyright (C) 2014 Oliver Voggenreiter
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package algorithms.transformers;
+
+import java.util.Arrays;
+
+/**
+ * Flat storage of min-hash signatures, the signature of slot i being
+ * at getSignatures()[i * signatureLength]. Slots are handed out in
+ * order and the storage grows on demand.
+ */
+public class SignatureStore {
+
+	private final int signatureLength;
+	private int[] signatures;
+	private int size = 0;
+
+	public SignatureStore(int signatureLength, int initialCapacity) {
+		this.signatureLength = signatureLength;
+		this.signatures =
+				new int[Math.max(initialCapacity, 1) * signatureLength];
+	}
+
+	public int getSignatureLength() {
+		return signatureLength;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Reserves the next slot and returns its index.
+	 */
+	public int addSlot() {
+		if ((size + 1) * signatureLength > signatures.length) {
+			signatures = Arrays.copyOf(signatures, signatures.length * 2);
+		}
+		return size++;
+	}
+
+	public void setSignature(int slot, int[] signature) {
+		System.arraycopy(signature, 0, signatures, slot
+				* signatureLength, signatureLength);
+	}
+
+	/**
+	 * Copies the signature of 'sourceSlot' in 'source' into 'slot'.
+	 */
+	public void copySignature(int slot, SignatureStore source,
+			int sourceSlot) {
+		System.arraycopy(source.signatures, sourceSlot
+				* signatureLength, signatures, slot * signatureLength,
+				signatureLength);
+	}
+
+	/**
+	 * Returns the backing array, which may be longer than needed for
+	 * size() signatures. It is replaced whenever the store grows.
+	 */
+	public int[] getSignatures() {
+		return signatures;
+	}
+
+}
@@ -21,14 +21,18 @@ package algorithms.transformers;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Comparator;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 import map.KeyValuePair;
 import map.MapAlgorithm;
+import util.BitUtils;
 import datatype.bicluster.Bicluster;
+import datatype.bicluster.BinaryVector;
 import datatype.bicluster.BitSetBicluster;
 import datatype.matrix.BinaryMatrix;
+import datatype.matrix.PackedBinaryMatrix;
 
 /**
  * This is a MapAlgorithm for splitting blocks into smaller denser
@@ -44,118 +48,145 @@ import datatype.matrix.BinaryMatrix;
  * blocks that are generated lie somewhere in between the first and
  * the second block and will most likely continue to be split.
  *
+ * Rows and columns are sorted by their number of ones (ties by
+ * index) with a counting sort on plain int arrays, so a block is
+ * split the same way no matter in which order blocks are processed.
+ * Sub blocks of at least FORK_AREA cells are not split by the task
+ * itself but returned by map, so that they can be handed to the
+ * thread pool again (see BlockSplitterTransformer). Dense blocks of
+ * all threads are collected in one shared list, see
+ * getDenseBlocks().
+ *
  * @author "Oliver Voggenreiter"
  * @date Mar 11, 2013
  *
  */
 public class SplitTask implements
-MapAlgorithm<Bicluster, KeyValuePair<Integer, Bicluster>> {
+MapAlgorithm<SplitTask.Block, SplitTask.Block> {
+
+	// Sub blocks with at least this many cells are forked.
+	public static final long FORK_AREA = 1L << 20;
 
-	private final BinaryMatrix matrix;
+	private final PackedBinaryMatrix matrix;
 	private final float percentCutMargin = 0.5f;
 	private final float percentMinCut = 0.2f;
 	private final float percentMaxCut = 0.8f;
 	private final int minSize;
 	private final float minDensity;
+	private final List<KeyValuePair<Integer, Bicluster>> denseBlocks =
+			Collections
+					.synchronizedList(new ArrayList<KeyValuePair<Integer, Bicluster>>());
 
 	public SplitTask(BinaryMatrix matrix, int minSize,
 			float minDensity) {
-		this.matrix = matrix;
+		this.matrix = PackedBinaryMatrix.pack(matrix);
 		this.minSize = minSize;
 		this.minDensity = minDensity;
 	}
 
+	/**
+	 * Returns the blocks that have to be split for the biclusters.
+	 */
+	public static List<Block> toBlocks(
+			Collection<? extends Bicluster> biclusters) {
+		List<Block> blocks = new ArrayList<Block>(biclusters.size());
+		for (Bicluster bicluster : biclusters) {
+			blocks.add(new Block(bicluster));
+		}
+		return blocks;
+	}
+
+	/**
+	 * The dense blocks found so far, paired with their level (the
+	 * number of splits that led to them).
+	 */
+	public List<KeyValuePair<Integer, Bicluster>> getDenseBlocks() {
+		return denseBlocks;
+	}
+
+	/**
+	 * Splits the blocks, adding the dense ones to getDenseBlocks(),
+	 * and returns the large sub blocks that are left to split.
+	 */
 	@Override
-	public List<KeyValuePair<Integer, Bicluster>> map(
-			List<Bicluster> biclusters) {
-		List<KeyValuePair<Integer, Bicluster>> denseBiclusters =
+	public List<Block> map(List<Block> blocks) {
+		List<Block> forkedBlocks = new ArrayList<Block>();
+		List<KeyValuePair<Integer, Bicluster>> denseSubBiclusters =
 				new ArrayList<KeyValuePair<Integer, Bicluster>>();
+		// the frame stack and buffers are reused for all blocks of
+		// this call
+		SplitFrames frames = new SplitFrames();
+		Workspace workspace = new Workspace();
 
-		for (Bicluster bicluster : biclusters) {
-			denseBiclusters
-			.addAll(computeDenseSubBiclusters(bicluster));
+		for (Block block : blocks) {
+			computeDenseSubBiclusters(block, frames, workspace,
+					denseSubBiclusters, forkedBlocks);
 		}
+		denseBlocks.addAll(denseSubBiclusters);
 
-		return denseBiclusters;
+		return forkedBlocks;
 	}
 
-	private List<KeyValuePair<Integer, Bicluster>>
-	computeDenseSubBiclusters(Bicluster bicluster) {
-		Integer[] rows = new Integer[bicluster.getNumberOfRows()];
-		Integer[] columns =
-				new Integer[bicluster.getNumberOfColumns()];
-		int index = 0;
-		for (int row : bicluster.getRows()) {
-			rows[index] = row;
-			index++;
-		}
-		index = 0;
-		for (int column : bicluster.getColumns()) {
-			columns[index] = column;
-			index++;
-		}
-		int[] rowCounts = new int[matrix.getNumRows()];
-		int[] columnCounts = new int[matrix.getNumColumns()];
-		int rowStart = 0;
-		int rowEnd = rows.length;
-		int columnStart = 0;
-		int columnEnd = columns.length;
-		int level = 0;
-
-		return split(level, rowStart, rowEnd, columnStart,
-				columnEnd, rows, rowCounts, columns, columnCounts);
-	}
+	private void computeDenseSubBiclusters(Block block,
+			SplitFrames frames, Workspace workspace,
+			List<KeyValuePair<Integer, Bicluster>> denseSubBiclusters,
+			List<Block> forkedBlocks) {
+		int[] rows = block.rows;
+		int[] columns = block.columns;
 
-	private List<KeyValuePair<Integer, Bicluster>> split(int level,
-			int rowStart, int rowEnd, int columnStart,
-			int columnEnd, Integer[] rows, int[] rowCounts,
-			Integer[] columns, int[] columnCounts) {
+		// The blocks are split depth first in the order DENSE -> SEMI
+		// -> SEMI -> NON-DENSE using an explicit stack of frames.
+		frames.push(block.level, 0, rows.length, 0, columns.length);
+		while (!frames.isEmpty()) {
+			int[] frame = frames.pop();
+			split(frame[0], frame[1], frame[2], frame[3], frame[4],
+					rows, columns, frames, workspace,
+					denseSubBiclusters, forkedBlocks);
+		}
+	}
 
-		List<KeyValuePair<Integer, Bicluster>> denseSubBiclusters =
-				new ArrayList<KeyValuePair<Integer, Bicluster>>();
+	/**
+	 * Splits a single block. Dense blocks are added to
+	 * 'denseSubBiclusters'; of the four sub blocks of a sparse block,
+	 * the large ones are added to 'forkedBlocks' and the others are
+	 * pushed onto 'frames'.
+	 */
+	private void split(int level, int rowStart, int rowEnd,
+			int columnStart, int columnEnd, int[] rows, int[] columns,
+			SplitFrames frames, Workspace workspace,
+			List<KeyValuePair<Integer, Bicluster>> denseSubBiclusters,
+			List<Block> forkedBlocks) {
 
 		// CONVENIENCE VARIABLES
 		int numberOfRows = rowEnd - rowStart;
 		int numberOfColumns = columnEnd - columnStart;
+		int[] rowCounts = workspace.rowCounts;
+		int[] columnCounts = workspace.columnCounts;
 
 		// TOO SMALL ? EXIT : CONTINUE
 		if (numberOfRows < minSize || numberOfColumns < minSize) {
-			return denseSubBiclusters;
-		}
-
-		// CLEAR DENSITY INFORMATION
-		for (int iRow = rowStart; iRow < rowEnd; iRow++) {
-			rowCounts[rows[iRow]] = 0;
-		}
-		for (int iColumn = columnStart; iColumn < columnEnd; iColumn++) {
-			columnCounts[columns[iColumn]] = 0;
+			return;
 		}
 
 		// CALCULATE DENSITY
-		float totalDensity = 0;
-		for (int iRow = rowStart; iRow < rowEnd; iRow++) {
-			for (int iColumn = columnStart; iColumn < columnEnd; iColumn++) {
-				if (matrix.get(rows[iRow], columns[iColumn])) {
-					rowCounts[rows[iRow]]++;
-					columnCounts[columns[iColumn]]++;
-					totalDensity++;
-				}
-			}
-		}
+		float totalDensity =
+				workspace.count(rows, rowStart, rowEnd, columns,
+						columnStart, columnEnd);
 		totalDensity /= numberOfRows;
 		totalDensity /= numberOfColumns;
 
 		// DENSE ENOUGH ? RETURN BICLUSTER : CONTINUE
 		if (totalDensity >= minDensity) {
-			return generateBicluster(rowStart, rowEnd, columnStart,
-					columnEnd, level, rows, columns);
+			denseSubBiclusters.add(generateBicluster(rowStart, rowEnd,
+					columnStart, columnEnd, level, rows, columns));
+			return;
 		}
 
 		// SORT ROWS / COLUMNS
-		Arrays.sort(rows, rowStart, rowEnd, new DensityComparator(
-				rowCounts));
-		Arrays.sort(columns, columnStart, columnEnd,
-				new DensityComparator(columnCounts));
+		workspace.sortByCount(rows, rowStart, rowEnd, rowCounts,
+				numberOfColumns);
+		workspace.sortByCount(columns, columnStart, columnEnd,
+				columnCounts, numberOfRows);
 
 		// DETERMINE SPLIT FOR ROWS / COLUMNS
 		int rowSplit =
@@ -167,24 +198,38 @@ MapAlgorithm<Bicluster, KeyValuePair<Integer, Bicluster>> {
 						(int) (numberOfRows * percentCutMargin),
 						numberOfColumns, columns, columnCounts);
 
-		// RECURSE DENSE -> SEMI -> SEMI -> NON-DENSE
-		denseSubBiclusters.addAll(split(level + 1, rowStart,
-				rowSplit, columnStart, columnSplit, rows, rowCounts,
-				columns, columnCounts));
-		denseSubBiclusters.addAll(split(level + 1, rowSplit, rowEnd,
-				columnStart, columnSplit, rows, rowCounts, columns,
-				columnCounts));
-		denseSubBiclusters.addAll(split(level + 1, rowStart,
-				rowSplit, columnSplit, columnEnd, rows, rowCounts,
-				columns, columnCounts));
-		denseSubBiclusters.addAll(split(level + 1, rowSplit, rowEnd,
-				columnSplit, columnEnd, rows, rowCounts, columns,
-				columnCounts));
-		return denseSubBiclusters;
+		// NO PROGRESS ? EXIT : CONTINUE (the non-dense block would be
+		// the block itself)
+		if (rowSplit == rowStart && columnSplit == columnStart) {
+			return;
+		}
+
+		// CONTINUE DENSE -> SEMI -> SEMI -> NON-DENSE (pushed in
+		// reverse order)
+		push(level + 1, rowSplit, rowEnd, columnSplit, columnEnd, rows,
+				columns, frames, forkedBlocks);
+		push(level + 1, rowStart, rowSplit, columnSplit, columnEnd,
+				rows, columns, frames, forkedBlocks);
+		push(level + 1, rowSplit, rowEnd, columnStart, columnSplit,
+				rows, columns, frames, forkedBlocks);
+		push(level + 1, rowStart, rowSplit, columnStart, columnSplit,
+				rows, columns, frames, forkedBlocks);
+	}
+
+	private void push(int level, int rowStart, int rowEnd,
+			int columnStart, int columnEnd, int[] rows, int[] columns,
+			SplitFrames frames, List<Block> forkedBlocks) {
+		if ((long) (rowEnd - rowStart) * (columnEnd - columnStart) >= FORK_AREA) {
+			forkedBlocks.add(new Block(level, Arrays.copyOfRange(rows,
+					rowStart, rowEnd), Arrays.copyOfRange(columns,
+					columnStart, columnEnd)));
+		} else {
+			frames.push(level, rowStart, rowEnd, columnStart, columnEnd);
+		}
 	}
 
 	private int computeSplit(int start, int end, int minOnes,
-			int size, Integer[] index, int[] counts) {
+			int size, int[] index, int[] counts) {
 		int split = start;
 		while (split < end && counts[index[split]] >= minOnes) {
 			split++;
@@ -200,12 +245,9 @@ MapAlgorithm<Bicluster, KeyValuePair<Integer, Bicluster>> {
 		return split;
 	}
 
-	private List<KeyValuePair<Integer, Bicluster>>
-	generateBicluster(int rowStart, int rowEnd,
-			int columnStart, int columnEnd, int level,
-			Integer[] rows, Integer[] columns) {
-		List<KeyValuePair<Integer, Bicluster>> denseSubBicluster =
-				new ArrayList<KeyValuePair<Integer, Bicluster>>();
+	private KeyValuePair<Integer, Bicluster> generateBicluster(
+			int rowStart, int rowEnd, int columnStart, int columnEnd,
+			int level, int[] rows, int[] columns) {
 		Bicluster bicluster = new BitSetBicluster();
 		for (int iRow = rowStart; iRow < rowEnd; iRow++) {
 			bicluster.addRow(rows[iRow]);
@@ -213,23 +255,170 @@ MapAlgorithm<Bicluster, KeyValuePair<Integer, Bicluster>> {
 		for (int iColumn = columnStart; iColumn < columnEnd; iColumn++) {
 			bicluster.addColumn(columns[iColumn]);
 		}
-		denseSubBicluster.add(new KeyValuePair<Integer, Bicluster>(
-				level, bicluster));
-		return denseSubBicluster;
+		return new KeyValuePair<Integer, Bicluster>(level, bicluster);
 	}
 
-	private class DensityComparator implements Comparator<Integer> {
+	/**
+	 * A block that is left to split: rows and columns of the matrix
+	 * and the level of the block. Blocks use the identity hash code,
+	 * so that the MapController spreads them over all threads.
+	 */
+	public static class Block {
+		private final int level;
+		private final int[] rows;
+		private final int[] columns;
 
-		private int[] counts;
+		public Block(Bicluster bicluster) {
+			this(0, toArray(bicluster.getRows()), toArray(bicluster
+					.getColumns()));
+		}
 
-		public DensityComparator(int[] counts) {
-			this.counts = counts;
+		private Block(int level, int[] rows, int[] columns) {
+			this.level = level;
+			this.rows = rows;
+			this.columns = columns;
 		}
 
-		@Override
-		public int compare(Integer o1, Integer o2) {
-			return counts[o2] - counts[o1];
+		private static int[] toArray(BinaryVector vector) {
+			int[] array = new int[vector.cardinality()];
+			int index = 0;
+			for (int element : vector) {
+				array[index++] = element;
+			}
+			return array;
+		}
+	}
+
+	/**
+	 * Count and sort buffers of one map call.
+	 */
+	private class Workspace {
+		private final int[] rowCounts = new int[matrix.getNumRows()];
+		private final int[] columnCounts =
+				new int[matrix.getNumColumns()];
+		private final long[] columnMask = BitUtils.newWords(matrix
+				.getNumColumns());
+		private int[] buckets = new int[0];
+		private int[] sorted = new int[0];
+
+		/**
+		 * Sets the number of ones of each row (column) of the block
+		 * within its columns (rows) and returns the number of ones of
+		 * the block. Rows are intersected with the column mask a word
+		 * at a time, unless the block has fewer columns than a row has
+		 * words.
+		 */
+		private int count(int[] rows, int rowStart, int rowEnd,
+				int[] columns, int columnStart, int columnEnd) {
+			for (int iColumn = columnStart; iColumn < columnEnd; iColumn++) {
+				columnCounts[columns[iColumn]] = 0;
+			}
+			int total = 0;
+			if (columnEnd - columnStart < columnMask.length) {
+				for (int iRow = rowStart; iRow < rowEnd; iRow++) {
+					long[] rowWords = matrix.getRowWords(rows[iRow]);
+					int count = 0;
+					for (int iColumn = columnStart; iColumn < columnEnd; iColumn++) {
+						if (BitUtils.get(rowWords, columns[iColumn])) {
+							columnCounts[columns[iColumn]]++;
+							count++;
+						}
+					}
+					rowCounts[rows[iRow]] = count;
+					total += count;
+				}
+				return total;
+			}
+
+			for (int iColumn = columnStart; iColumn < columnEnd; iColumn++) {
+				BitUtils.set(columnMask, columns[iColumn]);
+			}
+			for (int iRow = rowStart; iRow < rowEnd; iRow++) {
+				long[] rowWords = matrix.getRowWords(rows[iRow]);
+				int count = 0;
+				for (int column = BitUtils.nextSetBitAnd(rowWords, columnMask, 0); column > -1; column =
+						BitUtils.nextSetBitAnd(rowWords, columnMask,
+								column + 1)) {
+					columnCounts[column]++;
+					count++;
+				}
+				rowCounts[rows[iRow]] = count;
+				total += count;
+			}
+			for (int iColumn = columnStart; iColumn < columnEnd; iColumn++) {
+				BitUtils.clear(columnMask, columns[iColumn]);
+			}
+			return total;
+		}
+
+		/**
+		 * Sorts index[start, end) by descending count and ascending
+		 * index, with a counting sort over the counts 0..maxCount.
+		 */
+		private void sortByCount(int[] index, int start, int end,
+				int[] counts, int maxCount) {
+			Arrays.sort(index, start, end);
+			if (buckets.length < maxCount + 2) {
+				buckets = new int[maxCount + 2];
+			}
+			if (sorted.length < end - start) {
+				sorted = new int[end - start];
+			}
+			Arrays.fill(buckets, 0, maxCount + 2, 0);
+			for (int i = start; i < end; i++) {
+				buckets[maxCount - counts[index[i]] + 1]++;
+			}
+			for (int bucket = 1; bucket <= maxCount + 1; bucket++) {
+				buckets[bucket] += buckets[bucket - 1];
+			}
+			for (int i = start; i < end; i++) {
+				sorted[buckets[maxCount - counts[index[i]]]++] = index[i];
+			}
+			System.arraycopy(sorted, 0, index, start, end - start);
+		}
+	}
+
+	/**
+	 * Stack of the blocks that are left to split. Each frame holds
+	 * the level, rowStart, rowEnd, columnStart and columnEnd.
+	 */
+	private static class SplitFrames {
+
+		private static final int FRAME_SIZE = 5;
+
+		private int[] data = new int[16 * FRAME_SIZE];
+		private int size = 0;
+		private final int[] top = new int[FRAME_SIZE];
+
+		public void push(int level, int rowStart, int rowEnd,
+				int columnStart, int columnEnd) {
+			if ((size + 1) * FRAME_SIZE > data.length) {
+				data = Arrays.copyOf(data, data.length * 2);
+			}
+			int offset = size * FRAME_SIZE;
+			data[offset] = level;
+			data[offset + 1] = rowStart;
+			data[offset + 2] = rowEnd;
+			data[offset + 3] = columnStart;
+			data[offset + 4] = columnEnd;
+			size++;
+		}
+
+		/**
+		 * Removes the top frame. The returned array is reused by the
+		 * next call.
+		 */
+		public int[] pop() {
+			size--;
+			System.arraycopy(data, size * FRAME_SIZE, top, 0,
+					FRAME_SIZE);
+			return top;
+		}
+
+		public boolean isEmpty() {
+			return size == 0;
 		}
 
 	}
+
 }
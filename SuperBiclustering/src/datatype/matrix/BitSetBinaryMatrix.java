@@ -93,6 +93,17 @@ public class BitSetBinaryMatrix implements BinaryMatrix {
 		this.set(rowIndex, columnIndex, true);
 	}
 
+	/**
+	 * Returns the backing vector of a row; changes to it are
+	 * reflected in the matrix.
+	 */
+	public BitSetBinaryVector getRow(int rowIndex) {
+		if (rowIndex >= numRows || rowIndex < 0) {
+			throw new IndexOutOfBoundsException("invalid rowIndex");
+		}
+		return data[rowIndex];
+	}
+
 	@Override
 	public float getDensity() {
 		int numOnes = 0;
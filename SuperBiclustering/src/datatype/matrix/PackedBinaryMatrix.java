@@ -0,0 +1,285 @@
+/* SuperBiclustering - A biclustering algorithm designed to
+ * handle sparse and noisy input.
+ * Copyright (C) 2014 Oliver Voggenreiter
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package datatype.matrix;
+
+import java.util.Arrays;
+
+import util.BitUtils;
+import datatype.bicluster.BinaryVector;
+import datatype.bicluster.BitSetBinaryVector;
+
+/**
+ * A binary matrix whose rows are stored as packed arrays of 64-bit
+ * words (see BitUtils), so that whole rows can be intersected and
+ * counted a word at a time.
+ */
+@SuppressWarnings("serial")
+public class PackedBinaryMatrix implements BinaryMatrix {
+
+	private int numRows, numColumns;
+	private long[][] data;
+	// shared transpose, see getTransposed()
+	private transient PackedBinaryMatrix transposed;
+
+	public PackedBinaryMatrix(int numRows, int numColumns) {
+		this.numRows = numRows;
+		this.numColumns = numColumns;
+		data = createMatrix(numRows, numColumns);
+	}
+
+	// private constructor, used for efficient cloning
+	private PackedBinaryMatrix(int numRows, int numColumns,
+			long[][] data) {
+		this.numRows = numRows;
+		this.numColumns = numColumns;
+		this.data = data;
+	}
+
+	private long[][] createMatrix(int numRows, int numColumns) {
+		long[][] matrix = new long[numRows][];
+		for (int iRow = 0; iRow < numRows; iRow++) {
+			matrix[iRow] = BitUtils.newWords(numColumns);
+		}
+		return matrix;
+	}
+
+	/**
+	 * Returns 'matrix' if it is packed already, otherwise a packed
+	 * copy of it.
+	 */
+	public static PackedBinaryMatrix pack(BinaryMatrix matrix) {
+		if (matrix instanceof PackedBinaryMatrix) {
+			return (PackedBinaryMatrix) matrix;
+		}
+		int numRows = matrix.getNumRows();
+		int numColumns = matrix.getNumColumns();
+		PackedBinaryMatrix packed =
+				new PackedBinaryMatrix(numRows, numColumns);
+		for (int iRow = 0; iRow < numRows; iRow++) {
+			long[] row = packed.data[iRow];
+			if (matrix instanceof BitSetBinaryMatrix) {
+				BitSetBinaryVector vector =
+						((BitSetBinaryMatrix) matrix).getRow(iRow);
+				for (int iColumn = vector.getBitSet().nextSetBit(0); iColumn > -1
+						&& iColumn < numColumns; iColumn =
+						vector.getBitSet().nextSetBit(iColumn + 1)) {
+					BitUtils.set(row, iColumn);
+				}
+			} else {
+				for (int iColumn = 0; iColumn < numColumns; iColumn++) {
+					if (matrix.get(iRow, iColumn)) {
+						BitUtils.set(row, iColumn);
+					}
+				}
+			}
+		}
+		return packed;
+	}
+
+	@Override
+	public int getNumRows() {
+		return numRows;
+	}
+
+	@Override
+	public int getNumColumns() {
+		return numColumns;
+	}
+
+	/**
+	 * Returns the backing words of a row; changes to them are
+	 * reflected in the matrix.
+	 */
+	public long[] getRowWords(int rowIndex) {
+		if (rowIndex >= numRows || rowIndex < 0) {
+			throw new IndexOutOfBoundsException("invalid rowIndex");
+		}
+		return data[rowIndex];
+	}
+
+	@Override
+	public boolean get(int rowIndex, int columnIndex) {
+		if (rowIndex >= numRows || rowIndex < 0) {
+			throw new IndexOutOfBoundsException("invalid rowIndex");
+		}
+		if (columnIndex >= numColumns || columnIndex < 0) {
+			throw new IndexOutOfBoundsException(
+					"invalid columnIndex");
+		}
+		return BitUtils.get(data[rowIndex], columnIndex);
+	}
+
+	@Override
+	public synchronized void set(int rowIndex, int columnIndex,
+			boolean value) {
+		if (rowIndex >= numRows || rowIndex < 0) {
+			throw new IndexOutOfBoundsException("invalid rowIndex");
+		}
+		if (columnIndex >= numColumns || columnIndex < 0) {
+			throw new IndexOutOfBoundsException(
+					"invalid columnIndex");
+		}
+		transposed = null;
+		if (value) {
+			BitUtils.set(data[rowIndex], columnIndex);
+		} else {
+			BitUtils.clear(data[rowIndex], columnIndex);
+		}
+	}
+
+	@Override
+	public void set(int rowIndex, int columnIndex) {
+		this.set(rowIndex, columnIndex, true);
+	}
+
+	@Override
+	public float getDensity() {
+		long numOnes = 0;
+		for (int iRow = 0; iRow < numRows; iRow++) {
+			numOnes += BitUtils.cardinality(data[iRow]);
+		}
+		return numOnes / (float) (numRows * numColumns);
+	}
+
+	/**
+	 * Returns the transposed matrix, leaving this one unchanged.
+	 */
+	public PackedBinaryMatrix transposedCopy() {
+		long[][] transposed = createMatrix(numColumns, numRows);
+		for (int iRow = 0; iRow < numRows; iRow++) {
+			long[] row = data[iRow];
+			for (int iColumn = BitUtils.nextSetBit(row, 0); iColumn > -1; iColumn =
+					BitUtils.nextSetBit(row, iColumn + 1)) {
+				BitUtils.set(transposed[iColumn], iRow);
+			}
+		}
+		return new PackedBinaryMatrix(numColumns, numRows, transposed);
+	}
+
+	/**
+	 * Returns the transposed matrix. It is computed on the first call
+	 * and shared by all callers, so the stages of a pipeline transpose
+	 * the input matrix only once; it must not be changed. set() and
+	 * transpose() discard it, changes through getRowWords() do not.
+	 * Like these, getTransposed() is synchronized, so a matrix that is
+	 * changed while being shared never hands out a stale transpose.
+	 */
+	public synchronized PackedBinaryMatrix getTransposed() {
+		if (transposed == null) {
+			transposed = transposedCopy();
+		}
+		return transposed;
+	}
+
+	@Override
+	public synchronized void transpose() {
+		PackedBinaryMatrix copy = transposedCopy();
+		transposed = null;
+		data = copy.data;
+		numRows = copy.numRows;
+		numColumns = copy.numColumns;
+	}
+
+	@Override
+	public BinaryMatrix getSubMatrix(BinaryVector rows,
+			BinaryVector columns) {
+		PackedBinaryMatrix subMatrix =
+				new PackedBinaryMatrix(rows.cardinality(), columns
+						.cardinality());
+
+		int dstRowIndex = 0;
+		for (int srcRowIndex : rows) {
+			int dstColumnIndex = 0;
+			for (int srcColumnIndex : columns) {
+				if (this.get(srcRowIndex, srcColumnIndex)) {
+					BitUtils.set(subMatrix.data[dstRowIndex],
+							dstColumnIndex);
+				}
+				dstColumnIndex++;
+			}
+			dstRowIndex++;
+		}
+		return subMatrix;
+	}
+
+	@Override
+	public BinaryMatrix getSubRows(BinaryVector rows) {
+		long[][] subData = new long[rows.cardinality()][];
+
+		int dstRowIndex = 0;
+		for (int srcRowIndex : rows) {
+			subData[dstRowIndex] = data[srcRowIndex].clone();
+			dstRowIndex++;
+		}
+		return new PackedBinaryMatrix(rows.cardinality(), numColumns,
+				subData);
+	}
+
+	@Override
+	public BinaryMatrix getSubColumns(BinaryVector columns) {
+		BinaryVector rows = new BitSetBinaryVector(numRows, true);
+		return getSubMatrix(rows, columns);
+	}
+
+	@Override
+	public PackedBinaryMatrix clone() {
+		long[][] clonedData = new long[numRows][];
+		for (int iRow = 0; iRow < numRows; iRow++) {
+			clonedData[iRow] = data[iRow].clone();
+		}
+		return new PackedBinaryMatrix(numRows, numColumns,
+				clonedData);
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + Arrays.deepHashCode(data);
+		result = prime * result + numColumns;
+		result = prime * result + numRows;
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		PackedBinaryMatrix other = (PackedBinaryMatrix) obj;
+		if (!Arrays.deepEquals(data, other.data))
+			return false;
+		if (numColumns != other.numColumns)
+			return false;
+		if (numRows != other.numRows)
+			return false;
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return "PackedBinaryMatrix [numRows=" + numRows
+				+ ", numColumns=" + numColumns + "]";
+	}
+
+}
@@ -30,6 +30,7 @@ import algorithms.GeneratorBlock;
 import algorithms.TransformerBlock;
 import datatype.bicluster.Bicluster;
 import datatype.matrix.BinaryMatrix;
+import datatype.matrix.PackedBinaryMatrix;
 
 public class CompositeScoringGenerator extends GeneratorBlock {
 
@@ -75,6 +76,8 @@ public class CompositeScoringGenerator extends GeneratorBlock {
 	@Override
 	protected Collection<? extends Bicluster> findBlocks(
 			BinaryMatrix matrix) {
+		// all blocks share one packed matrix and its transpose
+		matrix = PackedBinaryMatrix.pack(matrix);
 		Collection<? extends Bicluster> biclusters = null;
 		if (enableLog) {
 
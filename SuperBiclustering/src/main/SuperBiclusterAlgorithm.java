@@ -31,10 +31,12 @@ import org.kohsuke.args4j.CmdLineParser;
 import org.kohsuke.args4j.Option;
 
 import util.FileFormatException;
+import util.RandomStreams;
 import algorithms.GeneratorBlock;
 import datatype.io.BiclusterIO;
 import datatype.io.BinaryMatrixIO;
 import datatype.matrix.BinaryMatrix;
+import datatype.matrix.PackedBinaryMatrix;
 
 public class SuperBiclusterAlgorithm {
 
@@ -50,6 +52,24 @@ public class SuperBiclusterAlgorithm {
 	@Option(name = "-c", usage = "number of cores to use")
 	private int coreCount = 1;
 
+	@Option(name = "-g", usage = "generator: BBKPlus, MinHash or Restricted")
+	private String generator = "BBKPlus";
+
+	@Option(name = "--checkpoint", usage = "write the enumeration progress to <input>.checkpoint")
+	private boolean checkpoint = false;
+
+	@Option(name = "--resume", usage = "skip the subproblems finished in <input>.checkpoint")
+	private boolean resume = false;
+
+	@Option(name = "--one-permutation", usage = "use one permutation hashing for min-hashing")
+	private boolean onePermutation = false;
+
+	@Option(name = "--min-hash-rounds", usage = "maximum number of min-hash merge rounds")
+	private int minHashRounds = 1;
+
+	@Option(name = "--seed", usage = "seed for all random choices of a run")
+	private long seed = RandomStreams.DEFAULT_SEED;
+
 	@Argument
 	private List<String> arguments = new ArrayList<String>();
 
@@ -69,6 +89,16 @@ public class SuperBiclusterAlgorithm {
 			if (arguments.isEmpty()) {
 				throw new CmdLineException(parser, "No input given.");
 			}
+			if (!generator.equals("BBKPlus")
+					&& !generator.equals("MinHash")
+					&& !generator.equals("Restricted")) {
+				throw new CmdLineException(parser,
+						"Unknown generator: " + generator);
+			}
+			if ((checkpoint || resume) && generator.equals("BBKPlus")) {
+				throw new CmdLineException(parser,
+						"Checkpoints require the MinHash or Restricted generator.");
+			}
 		} catch (CmdLineException e) {
 			System.err.println(e.getMessage());
 			System.err
@@ -83,19 +113,39 @@ public class SuperBiclusterAlgorithm {
 			return;
 		}
 
-		GeneratorBlock superBiclusterAlgo =
-				new SuperBiclusteringFactory().setCoreCount(
-						coreCount).setMinDensity(minDensity)
-						.setMinSize(minSize).getBBKPlusGenerator(
-								"BBKPlus");
+		RandomStreams.setRunSeed(seed);
 
 		for (String matrixFile : arguments) {
+			SuperBiclusteringFactory factory =
+					new SuperBiclusteringFactory().setCoreCount(
+							coreCount).setMinDensity(minDensity)
+							.setMinSize(minSize)
+							.setOnePermutationHashing(onePermutation)
+							.setMinHashRounds(minHashRounds);
+			if (checkpoint || resume) {
+				factory.setCheckpoint(matrixFile + ".checkpoint",
+						resume);
+			}
+			GeneratorBlock superBiclusterAlgo;
+			if (generator.equals("MinHash")) {
+				superBiclusterAlgo =
+						factory.getMinHashBiclusterer(generator);
+			} else if (generator.equals("Restricted")) {
+				superBiclusterAlgo =
+						factory.getRestrictedBiclusterer(generator);
+			} else {
+				superBiclusterAlgo =
+						factory.getBBKPlusGenerator(generator);
+			}
+
 			BinaryMatrix binMat;
 			if (matrixFile.endsWith(".binMat.binary")) {
 				binMat = BinaryMatrixIO.readBinaryFile(matrixFile);
 			} else {
 				binMat = BinaryMatrixIO.readTextFile(matrixFile);
 			}
+			// packed once here so the unpacked matrix can be freed
+			binMat = PackedBinaryMatrix.pack(binMat);
 			BiclusterIO.writeBiclusters(algoName + ".biclusters",
 					superBiclusterAlgo.createCandidates(binMat));
 		}
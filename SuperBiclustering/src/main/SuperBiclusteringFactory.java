@@ -26,6 +26,7 @@ import algorithms.generators.RestrictedBiclusterGenerator;
 import algorithms.generators.RestrictiveGenerator;
 import algorithms.transformers.BlockSplitterTransformer;
 import algorithms.transformers.DegenerativeDrillTransformer;
+import algorithms.transformers.DominatedBiclusterFilter;
 import algorithms.transformers.GreedyBlockSplitterTransformer;
 import algorithms.transformers.GreedyExpanderTransformer;
 import algorithms.transformers.IncreaseBlockDensityTransformer;
@@ -38,6 +39,10 @@ public class SuperBiclusteringFactory {
 	private float minDensity = 0.9f;
 	private int coreCount = 2;
 	private int minSize = 10;
+	private String checkpointFile;
+	private boolean resume = false;
+	private boolean onePermutationHashing = false;
+	private int minHashRounds = 1;
 
 	public SuperBiclusteringFactory setMinDensity(float minDensity) {
 		this.minDensity = minDensity;
@@ -54,6 +59,37 @@ public class SuperBiclusteringFactory {
 		return this;
 	}
 
+	/**
+	 * Checkpoint file for the biclique enumeration of the
+	 * MinHash and Restricted biclusterers. If 'resume' is set, the
+	 * enumeration continues from an existing checkpoint.
+	 */
+	public SuperBiclusteringFactory setCheckpoint(
+			String checkpointFile, boolean resume) {
+		this.checkpointFile = checkpointFile;
+		this.resume = resume;
+		return this;
+	}
+
+	/**
+	 * Makes the MinHashTransformers of all biclusterers use one
+	 * permutation hashing.
+	 */
+	public SuperBiclusteringFactory setOnePermutationHashing(
+			boolean onePermutationHashing) {
+		this.onePermutationHashing = onePermutationHashing;
+		return this;
+	}
+
+	/**
+	 * Lets the MinHashTransformers of all biclusterers merge their
+	 * results again for up to 'rounds' rounds.
+	 */
+	public SuperBiclusteringFactory setMinHashRounds(int rounds) {
+		this.minHashRounds = rounds;
+		return this;
+	}
+
 	public GeneratorBlock getSuperBiclusterer(String name) {
 		float looseness = 0.8f;
 		CompositeScoringGenerator composite =
@@ -67,7 +103,8 @@ public class SuperBiclusteringFactory {
 												minDensity),
 												new MinHashTransformer(coreCount,
 														looseness * minDensity, 3, 3, false,
-														false, true),
+														false, true, onePermutationHashing)
+														.rounds(minHashRounds),
 														new IncreaseBlockDensityTransformer(
 																coreCount, 0.75f, 0.75f),
 																new SmallBiclusterFilter(coreCount, minSize,
@@ -79,7 +116,8 @@ public class SuperBiclusteringFactory {
 																						coreCount, minDensity * looseness,
 																						minDensity * looseness),
 																						new RemoveLowSignificanceTransformer(0.01f)
-						.negativeCoExpression(false));
+						.negativeCoExpression(false),
+						new DominatedBiclusterFilter());
 
 		return composite;
 	}
@@ -91,10 +129,12 @@ public class SuperBiclusteringFactory {
 						String.format(
 								"SuperBiclustering-%1d-%1d-%.2f-%s.scores.tsv",
 								coreCount, minSize, minDensity, name),
-								new BiclusterGenerator(minSize, minSize),
+								new BiclusterGenerator(minSize, minSize)
+										.setCheckpoint(checkpointFile, resume),
 								new MinHashTransformer(coreCount,
 										looseness * minDensity, 3, 3, false,
-										false, true),
+										false, true, onePermutationHashing)
+										.rounds(minHashRounds),
 										new IncreaseBlockDensityTransformer(
 												coreCount, 0.75f, 0.75f),
 												new SmallBiclusterFilter(coreCount, minSize,
@@ -117,7 +157,8 @@ public class SuperBiclusteringFactory {
 						.setCoreCount(coreCount),
 						new MinHashTransformer(coreCount,
 								looseness * minDensity, 3, 3, false,
-								false, true),
+								false, true, onePermutationHashing)
+								.rounds(minHashRounds),
 								new GreedyExpanderTransformer(coreCount,
 										minDensity * looseness, 1),
 										new IncreaseBlockDensityTransformer(
@@ -138,10 +179,12 @@ public class SuperBiclusteringFactory {
 								"SuperBiclustering-%1d-%1d-%.2f-%s.scores.tsv",
 								coreCount, minSize, minDensity, name),
 								new RestrictedBiclusterGenerator(minSize,
-										minSize, minSize),
+										minSize, minSize)
+										.setCheckpoint(checkpointFile, resume),
 										new MinHashTransformer(coreCount,
 												looseness * minDensity, 3, 3, false,
-												false, true),
+												false, true, onePermutationHashing)
+												.rounds(minHashRounds),
 												new GreedyExpanderTransformer(coreCount,
 														minDensity * looseness, 1),
 														new IncreaseBlockDensityTransformer(
@@ -166,7 +209,8 @@ public class SuperBiclusteringFactory {
 								coreCount),
 								new MinHashTransformer(coreCount,
 										looseness * minDensity, 3, 3, false,
-										false, true),
+										false, true, onePermutationHashing)
+										.rounds(minHashRounds),
 										new RemoveLowSignificanceTransformer(0.01f)
 						.negativeCoExpression(false),
 						new GreedyExpanderTransformer(coreCount,
@@ -196,7 +240,8 @@ public class SuperBiclusteringFactory {
 												minSize, minSize, minDensity, true),
 												new MinHashTransformer(coreCount,
 														looseness * minDensity, 3, 3, false,
-														false, true),
+														false, true, onePermutationHashing)
+														.rounds(minHashRounds),
 														new IncreaseBlockDensityTransformer(
 																coreCount, 0.80f, 0.80f),
 																new SmallBiclusterFilter(coreCount, minSize,
@@ -0,0 +1,287 @@
+/* SuperBiclustering - A biclustering algorithm designed to
+ * handle sparse and noisy input.
+ * Copyright (C) 2014 Oliver Voggenreiter
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package util;
+
+import java.util.Arrays;
+import java.util.List;
+
+import datatype.bicluster.Bicluster;
+import datatype.bicluster.BinaryVector;
+
+/**
+ * Inverted index from the rows and columns of a matrix to the
+ * biclusters of a list that contain them. Biclusters are identified
+ * by their position in the list, and each posting is a sorted array
+ * of these ids.
+ *
+ * Overlap and containment queries only touch the postings of the
+ * rows and columns of the query (containment only the shortest one)
+ * instead of comparing the query to every bicluster. The index does
+ * not follow later changes to the biclusters. Queries that count
+ * hits share scratch space and must not run concurrently;
+ * getContaining and getDominating may.
+ */
+public class BiclusterOverlapIndex {
+
+	private final List<? extends Bicluster> biclusters;
+	private final int[][] rowPostings;
+	private final int[][] columnPostings;
+	private final int[] rowCounts;
+	private final int[] columnCounts;
+
+	// scratch space of the counting queries
+	private final int[] rowHits;
+	private final int[] columnHits;
+
+	public BiclusterOverlapIndex(List<? extends Bicluster> biclusters,
+			int numRows, int numColumns) {
+		this.biclusters = biclusters;
+		int size = biclusters.size();
+		rowCounts = new int[size];
+		columnCounts = new int[size];
+		rowHits = new int[size];
+		columnHits = new int[size];
+
+		int[] rowSizes = new int[numRows];
+		int[] columnSizes = new int[numColumns];
+		for (int id = 0; id < size; id++) {
+			Bicluster bicluster = biclusters.get(id);
+			for (int row : bicluster.getRows()) {
+				rowSizes[row]++;
+				rowCounts[id]++;
+			}
+			for (int column : bicluster.getColumns()) {
+				columnSizes[column]++;
+				columnCounts[id]++;
+			}
+		}
+
+		rowPostings = newPostings(rowSizes);
+		columnPostings = newPostings(columnSizes);
+		Arrays.fill(rowSizes, 0);
+		Arrays.fill(columnSizes, 0);
+		for (int id = 0; id < size; id++) {
+			Bicluster bicluster = biclusters.get(id);
+			for (int row : bicluster.getRows()) {
+				rowPostings[row][rowSizes[row]++] = id;
+			}
+			for (int column : bicluster.getColumns()) {
+				columnPostings[column][columnSizes[column]++] = id;
+			}
+		}
+	}
+
+	private static int[][] newPostings(int[] sizes) {
+		int[][] postings = new int[sizes.length][];
+		for (int i = 0; i < sizes.length; i++) {
+			postings[i] = new int[sizes[i]];
+		}
+		return postings;
+	}
+
+	public int size() {
+		return biclusters.size();
+	}
+
+	public Bicluster get(int id) {
+		return biclusters.get(id);
+	}
+
+	/**
+	 * Returns the ids of the biclusters in 'row', in ascending order.
+	 * The array must not be changed.
+	 */
+	public int[] getRowPosting(int row) {
+		return rowPostings[row];
+	}
+
+	/**
+	 * Returns the ids of the biclusters in 'column', in ascending
+	 * order. The array must not be changed.
+	 */
+	public int[] getColumnPosting(int column) {
+		return columnPostings[column];
+	}
+
+	/**
+	 * Returns the ids of the biclusters sharing at least one cell
+	 * with 'bicluster', in ascending order.
+	 */
+	public int[] getOverlapping(Bicluster bicluster) {
+		IntList touched = countRows(bicluster);
+		IntList overlapping = new IntList();
+		for (int column : bicluster.getColumns()) {
+			for (int id : columnPostings[column]) {
+				if (rowHits[id] > 0 && columnHits[id]++ == 0) {
+					overlapping.add(id);
+				}
+			}
+		}
+		clearHits(touched);
+		return overlapping.toSortedArray();
+	}
+
+	/**
+	 * Returns the ids of the biclusters containing all rows and
+	 * columns of 'bicluster' (including equal ones), in ascending
+	 * order. Only the shortest posting of the rows and columns of
+	 * 'bicluster' is scanned.
+	 */
+	public int[] getContaining(Bicluster bicluster) {
+		return getContaining(bicluster, false);
+	}
+
+	/**
+	 * Returns the ids of the biclusters that strictly dominate
+	 * 'bicluster' as in BiclusterUtils.strictlyDominates, in
+	 * ascending order.
+	 */
+	public int[] getDominating(Bicluster bicluster) {
+		return getContaining(bicluster, true);
+	}
+
+	private int[] getContaining(Bicluster bicluster, boolean strict) {
+		int[] rows = toArray(bicluster.getRows());
+		int[] columns = toArray(bicluster.getColumns());
+
+		int[] candidates = null;
+		for (int row : rows) {
+			if (candidates == null
+					|| rowPostings[row].length < candidates.length) {
+				candidates = rowPostings[row];
+			}
+		}
+		for (int column : columns) {
+			if (candidates == null
+					|| columnPostings[column].length < candidates.length) {
+				candidates = columnPostings[column];
+			}
+		}
+		if (candidates == null) {
+			// an empty query is contained in every bicluster
+			candidates = new int[biclusters.size()];
+			for (int id = 0; id < candidates.length; id++) {
+				candidates[id] = id;
+			}
+		}
+
+		IntList containing = new IntList();
+		for (int id : candidates) {
+			if (rowCounts[id] < rows.length
+					|| columnCounts[id] < columns.length
+					|| strict && rowCounts[id] == rows.length
+					&& columnCounts[id] == columns.length) {
+				continue;
+			}
+			Bicluster candidate = biclusters.get(id);
+			if (containsAll(candidate.getRows(), rows)
+					&& containsAll(candidate.getColumns(), columns)) {
+				containing.add(id);
+			}
+		}
+		return containing.toSortedArray();
+	}
+
+	/**
+	 * Returns the ids of the non-empty biclusters whose rows and
+	 * columns are all part of 'bicluster' (including equal ones), in
+	 * ascending order.
+	 */
+	public int[] getContained(Bicluster bicluster) {
+		IntList touched = countRows(bicluster);
+		for (int column : bicluster.getColumns()) {
+			for (int id : columnPostings[column]) {
+				if (rowHits[id] > 0 && rowHits[id] == rowCounts[id]) {
+					columnHits[id]++;
+				}
+			}
+		}
+		IntList contained = new IntList();
+		for (int i = 0; i < touched.size; i++) {
+			int id = touched.values[i];
+			if (rowHits[id] == rowCounts[id]
+					&& columnHits[id] == columnCounts[id]
+					&& columnCounts[id] > 0) {
+				contained.add(id);
+			}
+		}
+		clearHits(touched);
+		return contained.toSortedArray();
+	}
+
+	/**
+	 * Counts for every bicluster the rows it shares with 'bicluster'
+	 * and returns the ids with at least one.
+	 */
+	private IntList countRows(Bicluster bicluster) {
+		IntList touched = new IntList();
+		for (int row : bicluster.getRows()) {
+			for (int id : rowPostings[row]) {
+				if (rowHits[id]++ == 0) {
+					touched.add(id);
+				}
+			}
+		}
+		return touched;
+	}
+
+	private void clearHits(IntList touched) {
+		for (int i = 0; i < touched.size; i++) {
+			rowHits[touched.values[i]] = 0;
+			columnHits[touched.values[i]] = 0;
+		}
+	}
+
+	private static boolean containsAll(BinaryVector vector,
+			int[] elements) {
+		for (int element : elements) {
+			if (!vector.get(element)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int[] toArray(BinaryVector vector) {
+		int[] array = new int[vector.cardinality()];
+		int index = 0;
+		for (int element : vector) {
+			array[index++] = element;
+		}
+		return array;
+	}
+
+	private static class IntList {
+		private int[] values = new int[16];
+		private int size = 0;
+
+		private void add(int value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = value;
+		}
+
+		private int[] toSortedArray() {
+			int[] array = Arrays.copyOf(values, size);
+			Arrays.sort(array);
+			return array;
+		}
+	}
+}
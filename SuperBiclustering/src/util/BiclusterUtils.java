@@ -27,6 +27,7 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -43,6 +44,7 @@ import datatype.bicluster.BinaryVector;
 import datatype.bicluster.BitSetBicluster;
 import datatype.io.BiclusterIO;
 import datatype.matrix.BinaryMatrix;
+import datatype.matrix.PackedBinaryMatrix;
 
 public class BiclusterUtils {
 
@@ -97,37 +99,52 @@ public class BiclusterUtils {
 	 * set of ones in its rows and columns that are NOT yet in the
 	 * bicluster. This should give much better merging performance!
 	 */
-	public static Set<Integer> getAlternativeElementSet(
-			Bicluster bicluster, BinaryMatrix matrix) {
-		Set<Integer> elementSet = new HashSet<Integer>();
+	public static int[] getAlternativeElementSet(Bicluster bicluster,
+			BinaryMatrix matrix) {
+		PackedBinaryMatrix rowsMatrix = PackedBinaryMatrix.pack(matrix);
+		return getAlternativeElementSet(bicluster, rowsMatrix,
+				rowsMatrix.getTransposed());
+	}
 
-		// iterate over all elements of the bicluster, and add the
-		// 'ones' to the set
-		for (int row : bicluster.getRows()) {
-			for (int column = 0; column < matrix.getNumColumns(); column++) {
-				if (!bicluster.getColumns().get(column)) {
-					if (matrix.get(row, column)) {
-						int elementNumber =
-								getElementNumber(row, column, matrix);
-						elementSet.add(elementNumber);
-					}
-				}
+	/**
+	 * Same as getAlternativeElementSet(Bicluster, BinaryMatrix) on a
+	 * packed matrix and its transpose 'columnsMatrix'. The element
+	 * numbers are returned in no particular order, without
+	 * duplicates.
+	 */
+	public static int[] getAlternativeElementSet(Bicluster bicluster,
+			PackedBinaryMatrix rowsMatrix,
+			PackedBinaryMatrix columnsMatrix) {
+		int numColumns = rowsMatrix.getNumColumns();
+		long[] rows =
+				BitUtils.toWords(bicluster.getRows(),
+						rowsMatrix.getNumRows());
+		long[] columns =
+				BitUtils.toWords(bicluster.getColumns(), numColumns);
+		long[] outside = new long[Math.max(rows.length, columns.length)];
+		IntBuffer elements = new IntBuffer();
+
+		// the 'ones' of the bicluster rows outside of its columns, and
+		// of the bicluster columns outside of its rows
+		for (int row = BitUtils.nextSetBit(rows, 0); row > -1; row =
+				BitUtils.nextSetBit(rows, row + 1)) {
+			BitUtils.andNot(outside, rowsMatrix.getRowWords(row),
+					columns);
+			for (int column = BitUtils.nextSetBit(outside, 0); column > -1; column =
+					BitUtils.nextSetBit(outside, column + 1)) {
+				elements.add(row * numColumns + column);
 			}
 		}
-
-		for (int column : bicluster.getColumns()) {
-			for (int row = 0; row < matrix.getNumRows(); row++) {
-				if (!bicluster.getRows().get(row)) {
-					if (matrix.get(row, column)) {
-						int elementNumber =
-								getElementNumber(row, column, matrix);
-						elementSet.add(elementNumber);
-					}
-				}
+		for (int column = BitUtils.nextSetBit(columns, 0); column > -1; column =
+				BitUtils.nextSetBit(columns, column + 1)) {
+			BitUtils.andNot(outside, columnsMatrix.getRowWords(column),
+					rows);
+			for (int row = BitUtils.nextSetBit(outside, 0); row > -1; row =
+					BitUtils.nextSetBit(outside, row + 1)) {
+				elements.add(row * numColumns + column);
 			}
 		}
-
-		return elementSet;
+		return elements.toArray();
 	}
 
 	/**
@@ -146,72 +163,93 @@ public class BiclusterUtils {
 	 * set is reduced, which could significantly improve performance
 	 * (merge success).
 	 */
-	public static Set<Integer> getNewAlternativeElementSet(
+	public static int[] getNewAlternativeElementSet(
 			Bicluster bicluster, BinaryMatrix matrix,
 			double minDensity) {
-		Set<Integer> elementSet = new HashSet<Integer>();
+		PackedBinaryMatrix rowsMatrix = PackedBinaryMatrix.pack(matrix);
+		return getNewAlternativeElementSet(bicluster, rowsMatrix,
+				rowsMatrix.getTransposed(), minDensity);
+	}
+
+	/**
+	 * Same as getNewAlternativeElementSet(Bicluster, BinaryMatrix,
+	 * double) on a packed matrix and its transpose 'columnsMatrix'.
+	 * The density of a row or column is counted a word at a time,
+	 * only over the words that hold the bicluster's columns or rows;
+	 * the element numbers are returned in no particular order, without
+	 * duplicates.
+	 */
+	public static int[] getNewAlternativeElementSet(
+			Bicluster bicluster, PackedBinaryMatrix rowsMatrix,
+			PackedBinaryMatrix columnsMatrix, double minDensity) {
+		int numColumns = rowsMatrix.getNumColumns();
+		long[] rows =
+				BitUtils.toWords(bicluster.getRows(),
+						rowsMatrix.getNumRows());
+		long[] columns =
+				BitUtils.toWords(bicluster.getColumns(), numColumns);
+		int[] rowSpan = BitUtils.getWordSpan(bicluster.getRows());
+		int[] columnSpan = BitUtils.getWordSpan(bicluster.getColumns());
+		long[] dense = new long[Math.max(rows.length, columns.length)];
+		IntBuffer elements = new IntBuffer();
 
 		// for each column not in the bicluster, compute density. If
 		// it's sufficient, add its elements to the set:
-		for (int column = 0; column < matrix.getNumColumns(); column++) {
-			if (!bicluster.getColumns().get(column)) {
-
-				int oneCount = 0;
-				for (int row : bicluster.getRows()) {
-					if (matrix.get(row, column)) {
-						oneCount++;
-					}
-				}
-
-				if (oneCount >= minDensity
-						* bicluster.getNumberOfRows()) { // column is
-					// sufficiently
-					// dense
-					for (int row : bicluster.getRows()) {
-						if (matrix.get(row, column)) {
-							int elementNumber =
-									getElementNumber(row, column,
-											matrix);
-							elementSet.add(elementNumber);
-						}
-					}
+		double minColumnOnes = minDensity * bicluster.getNumberOfRows();
+		for (int column = 0; column < numColumns; column++) {
+			if (BitUtils.get(columns, column)) {
+				continue;
+			}
+			int oneCount =
+					BitUtils.and(dense,
+							columnsMatrix.getRowWords(column), rows,
+							rowSpan[0], rowSpan[1]);
+			if (oneCount >= minColumnOnes) {
+				for (int row = BitUtils.nextSetBit(dense, rowSpan[0] << 6, rowSpan[1]); row > -1; row =
+						BitUtils.nextSetBit(dense, row + 1, rowSpan[1])) {
+					elements.add(row * numColumns + column);
 				}
-
 			}
-
 		}
 
 		// for each row not in the bicluster, compute density. If
 		// it's sufficient, add its elements to the set:
-		for (int row = 0; row < matrix.getNumRows(); row++) {
-			if (!bicluster.getRows().get(row)) {
-
-				int oneCount = 0;
-				for (int column : bicluster.getColumns()) {
-					if (matrix.get(row, column)) {
-						oneCount++;
-					}
+		double minRowOnes = minDensity * bicluster.getNumberOfColumns();
+		for (int row = 0; row < rowsMatrix.getNumRows(); row++) {
+			if (BitUtils.get(rows, row)) {
+				continue;
+			}
+			int oneCount =
+					BitUtils.and(dense, rowsMatrix.getRowWords(row),
+							columns, columnSpan[0], columnSpan[1]);
+			if (oneCount >= minRowOnes) {
+				for (int column = BitUtils.nextSetBit(dense, columnSpan[0] << 6, columnSpan[1]); column > -1; column =
+						BitUtils.nextSetBit(dense, column + 1, columnSpan[1])) {
+					elements.add(row * numColumns + column);
 				}
+			}
+		}
 
-				if (oneCount >= minDensity
-						* bicluster.getNumberOfColumns()) { // row is
-					// sufficiently
-					// dense
-					for (int column : bicluster.getColumns()) {
-						if (matrix.get(row, column)) {
-							int elementNumber =
-									getElementNumber(row, column,
-											matrix);
-							elementSet.add(elementNumber);
-						}
-					}
-				}
+		return elements.toArray();
+	}
 
-			}
+	/**
+	 * A growable int array collecting element numbers.
+	 */
+	private static class IntBuffer {
+		private int[] values = new int[64];
+		private int size = 0;
 
+		private void add(int value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = value;
 		}
 
-		return elementSet;
+		private int[] toArray() {
+			return Arrays.copyOf(values, size);
+		}
 	}
 
 	public static float getJaccardSimilarity(Bicluster bc1,
@@ -250,6 +288,23 @@ public class BiclusterUtils {
 		return sortedBiclusters;
 	}
 
+	/**
+	 * Returns a 64-bit hash of the rows and columns of a bicluster. It
+	 * does not depend on the implementation of the bicluster or on the
+	 * order of its indices, so it can key the random stream of a
+	 * bicluster independently of where the bicluster came from.
+	 */
+	public static long getContentHash(Bicluster bicluster) {
+		long hash = 0;
+		for (int row : bicluster.getRows()) {
+			hash += RandomStreams.mix64(((long) row << 1) + 1);
+		}
+		for (int column : bicluster.getColumns()) {
+			hash += RandomStreams.mix64(((long) column + 1) << 1);
+		}
+		return RandomStreams.mix64(hash);
+	}
+
 	public static Bicluster transpose(Bicluster bc) {
 		Bicluster transposed = new BitSetBicluster();
 
@@ -0,0 +1,282 @@
+/* SuperBiclustering - A biclustering algorithm designed to
+ * handle sparse and noisy input.
+ * Copyright (C) 2014 Oliver Voggenreiter
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package util;
+
+/**
+ * Helpers for bit sets that are stored as plain arrays of 64-bit
+ * words. Contrary to java.util.BitSet, the arrays never grow and no
+ * objects are created, which allows set intersections and their
+ * cardinalities to be computed a word at a time in tight loops
+ * without any garbage.
+ */
+public class BitUtils {
+
+	private BitUtils() {
+	}
+
+	/**
+	 * Returns the number of words needed to store 'numBits' bits.
+	 */
+	public static int getWordCount(int numBits) {
+		return (numBits + 63) >>> 6;
+	}
+
+	/**
+	 * Allocates an empty word array large enough for 'numBits' bits.
+	 */
+	public static long[] newWords(int numBits) {
+		return new long[getWordCount(numBits)];
+	}
+
+	/**
+	 * Returns a word array of 'numBits' bits in which exactly the
+	 * given indices are set.
+	 */
+	public static long[] toWords(Iterable<Integer> indices, int numBits) {
+		long[] words = newWords(numBits);
+		for (int index : indices) {
+			set(words, index);
+		}
+		return words;
+	}
+
+	public static boolean get(long[] words, int index) {
+		return (words[index >>> 6] & (1L << index)) != 0;
+	}
+
+	public static void set(long[] words, int index) {
+		words[index >>> 6] |= 1L << index;
+	}
+
+	public static void clear(long[] words, int index) {
+		words[index >>> 6] &= ~(1L << index);
+	}
+
+	/**
+	 * Sets the bits [0, numBits) and clears all others.
+	 */
+	public static void setRange(long[] words, int numBits) {
+		int fullWords = numBits >>> 6;
+		for (int i = 0; i < words.length; i++) {
+			if (i < fullWords) {
+				words[i] = -1L;
+			} else if (i == fullWords && (numBits & 63) != 0) {
+				words[i] = (1L << numBits) - 1;
+			} else {
+				words[i] = 0L;
+			}
+		}
+	}
+
+	/**
+	 * Returns the index of the first set bit at or after
+	 * 'fromIndex', or -1 if there is none.
+	 */
+	public static int nextSetBit(long[] words, int fromIndex) {
+		int wordIndex = fromIndex >>> 6;
+		if (wordIndex >= words.length) {
+			return -1;
+		}
+		long word = words[wordIndex] & (-1L << fromIndex);
+		while (true) {
+			if (word != 0) {
+				return (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+			}
+			if (++wordIndex == words.length) {
+				return -1;
+			}
+			word = words[wordIndex];
+		}
+	}
+
+	/**
+	 * Same as nextSetBit(words, fromIndex), but only looks at the
+	 * words before 'toWord'.
+	 */
+	public static int nextSetBit(long[] words, int fromIndex, int toWord) {
+		int wordIndex = fromIndex >>> 6;
+		if (wordIndex >= toWord) {
+			return -1;
+		}
+		long word = words[wordIndex] & (-1L << fromIndex);
+		while (true) {
+			if (word != 0) {
+				return (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+			}
+			if (++wordIndex == toWord) {
+				return -1;
+			}
+			word = words[wordIndex];
+		}
+	}
+
+	/**
+	 * Returns the index of the first bit at or after 'fromIndex' that
+	 * is set in both 'a' and 'b', or -1 if there is none.
+	 */
+	public static int nextSetBitAnd(long[] a, long[] b, int fromIndex) {
+		int wordIndex = fromIndex >>> 6;
+		if (wordIndex >= a.length) {
+			return -1;
+		}
+		long word = a[wordIndex] & b[wordIndex] & (-1L << fromIndex);
+		while (true) {
+			if (word != 0) {
+				return (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+			}
+			if (++wordIndex == a.length) {
+				return -1;
+			}
+			word = a[wordIndex] & b[wordIndex];
+		}
+	}
+
+	/**
+	 * Same as nextSetBitAnd(a, b, fromIndex), but only looks at the
+	 * words before 'toWord'.
+	 */
+	public static int nextSetBitAnd(long[] a, long[] b, int fromIndex,
+			int toWord) {
+		int wordIndex = fromIndex >>> 6;
+		if (wordIndex >= toWord) {
+			return -1;
+		}
+		long word = a[wordIndex] & b[wordIndex] & (-1L << fromIndex);
+		while (true) {
+			if (word != 0) {
+				return (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+			}
+			if (++wordIndex == toWord) {
+				return -1;
+			}
+			word = a[wordIndex] & b[wordIndex];
+		}
+	}
+
+	public static int cardinality(long[] words) {
+		int count = 0;
+		for (int i = 0; i < words.length; i++) {
+			count += Long.bitCount(words[i]);
+		}
+		return count;
+	}
+
+	/**
+	 * Returns |a AND b| without materializing the intersection.
+	 */
+	public static int cardinalityAnd(long[] a, long[] b) {
+		int count = 0;
+		for (int i = 0; i < a.length; i++) {
+			count += Long.bitCount(a[i] & b[i]);
+		}
+		return count;
+	}
+
+	/**
+	 * Returns |a AND b| within the words [fromWord, toWord), e.g. the
+	 * words that hold the set bits of 'b'.
+	 */
+	public static int cardinalityAnd(long[] a, long[] b, int fromWord,
+			int toWord) {
+		int count = 0;
+		for (int i = fromWord; i < toWord; i++) {
+			count += Long.bitCount(a[i] & b[i]);
+		}
+		return count;
+	}
+
+	/**
+	 * Returns |a AND NOT b| without materializing the difference.
+	 */
+	public static int cardinalityAndNot(long[] a, long[] b) {
+		int count = 0;
+		for (int i = 0; i < a.length; i++) {
+			count += Long.bitCount(a[i] & ~b[i]);
+		}
+		return count;
+	}
+
+	/**
+	 * Stores a AND b into 'target' and returns the cardinality of the
+	 * result. 'target' may be the same array as 'a' or 'b'; words of
+	 * 'target' beyond the length of 'a' are cleared.
+	 */
+	public static int and(long[] target, long[] a, long[] b) {
+		int count = 0;
+		for (int i = 0; i < a.length; i++) {
+			target[i] = a[i] & b[i];
+			count += Long.bitCount(target[i]);
+		}
+		for (int i = a.length; i < target.length; i++) {
+			target[i] = 0L;
+		}
+		return count;
+	}
+
+	/**
+	 * Stores a AND b into the words [fromWord, toWord) of 'target'
+	 * and returns the cardinality of the result. The other words of
+	 * 'target' are left unchanged.
+	 */
+	public static int and(long[] target, long[] a, long[] b,
+			int fromWord, int toWord) {
+		int count = 0;
+		for (int i = fromWord; i < toWord; i++) {
+			target[i] = a[i] & b[i];
+			count += Long.bitCount(target[i]);
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the words [from, to) that hold the given indices as
+	 * {from, to}, or {0, 0} if there are none.
+	 */
+	public static int[] getWordSpan(Iterable<Integer> indices) {
+		int min = Integer.MAX_VALUE;
+		int max = -1;
+		for (int index : indices) {
+			min = Math.min(min, index);
+			max = Math.max(max, index);
+		}
+		if (max < 0) {
+			return new int[] { 0, 0 };
+		}
+		return new int[] { min >>> 6, (max >>> 6) + 1 };
+	}
+
+	/**
+	 * Stores a AND NOT b into 'target' and returns the cardinality of
+	 * the result. 'target' may be the same array as 'a' or 'b'; words
+	 * of 'target' beyond the length of 'a' are cleared.
+	 */
+	public static int andNot(long[] target, long[] a, long[] b) {
+		int count = 0;
+		for (int i = 0; i < a.length; i++) {
+			target[i] = a[i] & ~b[i];
+			count += Long.bitCount(target[i]);
+		}
+		for (int i = a.length; i < target.length; i++) {
+			target[i] = 0L;
+		}
+		return count;
+	}
+
+}
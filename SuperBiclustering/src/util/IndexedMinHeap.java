@@ -0,0 +1,184 @@
+/* SuperBiclustering - A biclustering algorithm designed to
+ * handle sparse and noisy input.
+ * Copyright (C) 2014 Oliver Voggenreiter
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package util;
+
+import java.util.Arrays;
+
+/**
+ * A binary min-heap of the elements 0..(N - 1) with integer
+ * priorities; elements of equal priority come out in ascending
+ * order. The position of every element in the heap is tracked, so
+ * the priority of a contained element can be changed and the
+ * element can be removed in O(log N). Negated priorities make it a
+ * max-heap.
+ */
+public class IndexedMinHeap {
+
+	private final int[] heap;
+	private final int[] positions;
+	private final int[] priorities;
+	private int size = 0;
+
+	public IndexedMinHeap(int capacity) {
+		heap = new int[capacity];
+		positions = new int[capacity];
+		priorities = new int[capacity];
+		Arrays.fill(positions, -1);
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean contains(int element) {
+		return positions[element] >= 0;
+	}
+
+	public int getPriority(int element) {
+		return priorities[element];
+	}
+
+	public void add(int element, int priority) {
+		if (contains(element)) {
+			throw new IllegalArgumentException("element " + element
+					+ " is already in the heap");
+		}
+		heap[size] = element;
+		positions[element] = size;
+		priorities[element] = priority;
+		size++;
+		siftUp(size - 1);
+	}
+
+	/**
+	 * Returns the element with the lowest priority without removing
+	 * it.
+	 */
+	public int peek() {
+		if (size == 0) {
+			throw new IllegalStateException("heap is empty");
+		}
+		return heap[0];
+	}
+
+	/**
+	 * Removes and returns the element with the lowest priority.
+	 */
+	public int poll() {
+		int min = peek();
+		size--;
+		positions[min] = -1;
+		if (size > 0) {
+			heap[0] = heap[size];
+			positions[heap[0]] = 0;
+			siftDown(0);
+		}
+		return min;
+	}
+
+	/**
+	 * Lowers the priority of a contained element.
+	 */
+	public void decreasePriority(int element, int priority) {
+		if (priority > priorities[element]) {
+			throw new IllegalArgumentException("priority " + priority
+					+ " is higher than " + priorities[element]);
+		}
+		priorities[element] = priority;
+		siftUp(positions[element]);
+	}
+
+	/**
+	 * Changes the priority of a contained element.
+	 */
+	public void setPriority(int element, int priority) {
+		int old = priorities[element];
+		priorities[element] = priority;
+		if (priority < old) {
+			siftUp(positions[element]);
+		} else {
+			siftDown(positions[element]);
+		}
+	}
+
+	/**
+	 * Removes a contained element.
+	 */
+	public void remove(int element) {
+		int position = positions[element];
+		size--;
+		positions[element] = -1;
+		if (position < size) {
+			int moved = heap[size];
+			heap[position] = moved;
+			positions[moved] = position;
+			siftDown(position);
+			if (positions[moved] == position) {
+				siftUp(position);
+			}
+		}
+	}
+
+	private boolean isLess(int a, int b) {
+		return priorities[a] < priorities[b]
+				|| (priorities[a] == priorities[b] && a < b);
+	}
+
+	private void siftUp(int position) {
+		int element = heap[position];
+		while (position > 0) {
+			int parent = (position - 1) >>> 1;
+			if (!isLess(element, heap[parent])) {
+				break;
+			}
+			heap[position] = heap[parent];
+			positions[heap[position]] = position;
+			position = parent;
+		}
+		heap[position] = element;
+		positions[element] = position;
+	}
+
+	private void siftDown(int position) {
+		int element = heap[position];
+		while (true) {
+			int child = 2 * position + 1;
+			if (child >= size) {
+				break;
+			}
+			if (child + 1 < size && isLess(heap[child + 1], heap[child])) {
+				child++;
+			}
+			if (!isLess(heap[child], element)) {
+				break;
+			}
+			heap[position] = heap[child];
+			positions[heap[position]] = position;
+			position = child;
+		}
+		heap[position] = element;
+		positions[element] = position;
+	}
+
+}
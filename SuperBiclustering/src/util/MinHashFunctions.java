@@ -0,0 +1,100 @@
+/* SuperBiclustering - A biclustering algorithm designed to
+ * handle sparse and noisy input.
+ * Copyright (C) 2014 Oliver Voggenreiter
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package util;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * MinHashFunctions evaluates a fixed family of RandomHashFunctions
+ * on primitive element ids. The multipliers and offsets of all
+ * functions are kept in flat arrays, so a whole min-hash signature
+ * is computed in a single pass over the elements with one
+ * multiply-add-mod per function and element, and without boxing.
+ * The hashes are identical to those of RandomHashFunction.getHash.
+ *
+ * Instances are immutable and can be shared between threads.
+ */
+public class MinHashFunctions implements MinHashSignatureFunction {
+
+	private final long[] multipliers;
+	private final long[] offsets;
+	private final long binCount;
+
+	/**
+	 * Takes over the given hash functions, which must all have the
+	 * same number of bins.
+	 */
+	public MinHashFunctions(List<RandomHashFunction> hashFunctions) {
+		if (hashFunctions.isEmpty()) {
+			throw new IllegalArgumentException(
+					"Need at least one hash function!");
+		}
+		multipliers = new long[hashFunctions.size()];
+		offsets = new long[hashFunctions.size()];
+		binCount = hashFunctions.get(0).getNumberOfBins();
+		for (int i = 0; i < multipliers.length; i++) {
+			RandomHashFunction hashFunction = hashFunctions.get(i);
+			if (hashFunction.getNumberOfBins() != binCount) {
+				throw new IllegalArgumentException(
+						"Hash functions must share their number of bins!");
+			}
+			multipliers[i] = hashFunction.getMultiplier();
+			offsets[i] = hashFunction.getOffset();
+		}
+	}
+
+	/**
+	 * Returns the number of hash functions, i.e. the length of a
+	 * signature.
+	 */
+	@Override
+	public int size() {
+		return multipliers.length;
+	}
+
+	public int getNumberOfBins() {
+		return (int) binCount;
+	}
+
+	/**
+	 * Writes the minimum hash of every function over the first
+	 * 'count' elements to signature[offset] ... signature[offset +
+	 * size() - 1]. Functions without any element get
+	 * Integer.MAX_VALUE.
+	 */
+	@Override
+	public void computeSignature(int[] elements, int count,
+			int[] signature, int offset) {
+		int size = multipliers.length;
+		Arrays.fill(signature, offset, offset + size, Integer.MAX_VALUE);
+		for (int e = 0; e < count; e++) {
+			long element = Math.abs(elements[e]);
+			for (int i = 0; i < size; i++) {
+				int hash =
+						(int) ((multipliers[i] * element + offsets[i]) % binCount);
+				if (hash < signature[offset + i]) {
+					signature[offset + i] = hash;
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,44 @@
+/* SuperBiclustering - A biclustering algorithm designed to
+ * handle sparse and noisy input.
+ * Copyright (C) 2014 Oliver Voggenreiter
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package util;
+
+/**
+ * Computes fixed-length min-hash signatures of sets of primitive
+ * element ids. Two sets agree on a position of their signatures with
+ * a probability that grows with their Jaccard similarity.
+ * Implementations must be immutable so they can be shared between
+ * threads.
+ */
+public interface MinHashSignatureFunction {
+
+	/**
+	 * Returns the length of a signature.
+	 */
+	public int size();
+
+	/**
+	 * Writes the signature of the first 'count' elements to
+	 * signature[offset] ... signature[offset + size() - 1]. The
+	 * signature of an empty set is all Integer.MAX_VALUE.
+	 */
+	public void computeSignature(int[] elements, int count,
+			int[] signature, int offset);
+
+}
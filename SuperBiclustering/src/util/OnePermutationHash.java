@@ -0,0 +1,109 @@
+/* SuperBiclustering - A biclustering algorithm designed to
+ * handle sparse and noisy input.
+ * Copyright (C) 2014 Oliver Voggenreiter
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package util;
+
+import java.util.Arrays;
+
+/**
+ * One permutation hashing with optimal densification (Shrivastava,
+ * "Optimal Densification for Fast and Accurate Minwise Hashing",
+ * 2017). Every element is hashed only once; the hash range is split
+ * into 'size' bins and each position of the signature is the minimum
+ * hash that fell into its bin. Empty bins borrow the value of another
+ * bin, chosen by a hash of the empty bin and the number of attempts
+ * so far, until a non-empty bin is found. Since the borrowing only
+ * depends on the bin and not on the set, similar sets still agree on
+ * their borrowed positions.
+ *
+ * Computing a signature takes one hash per element instead of one per
+ * element and position, so long signatures come almost for free.
+ */
+public class OnePermutationHash implements MinHashSignatureFunction {
+
+	private final RandomHashFunction hashFunction;
+	private final int size;
+	private final long binCount;
+	private final long densificationSeed;
+
+	/**
+	 * Creates signatures of length 'size' from the given hash
+	 * function; 'densificationSeed' chooses the bins that empty bins
+	 * borrow from.
+	 */
+	public OnePermutationHash(RandomHashFunction hashFunction,
+			int size, long densificationSeed) {
+		if (size <= 0) {
+			throw new IllegalArgumentException(
+					"Signature size must be positive!");
+		}
+		this.hashFunction = hashFunction;
+		this.size = size;
+		this.binCount = hashFunction.getNumberOfBins();
+		this.densificationSeed = densificationSeed;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public void computeSignature(int[] elements, int count,
+			int[] signature, int offset) {
+		Arrays.fill(signature, offset, offset + size, Integer.MAX_VALUE);
+		if (count == 0) {
+			return;
+		}
+		for (int e = 0; e < count; e++) {
+			int hash = hashFunction.getHash(elements[e]);
+			int bin = offset + (int) ((long) hash * size / binCount);
+			if (hash < signature[bin]) {
+				signature[bin] = hash;
+			}
+		}
+
+		// Only bins that were filled by elements may be borrowed from.
+		long[] emptyBins = BitUtils.newWords(size);
+		for (int bin = 0; bin < size; bin++) {
+			if (signature[offset + bin] == Integer.MAX_VALUE) {
+				BitUtils.set(emptyBins, bin);
+			}
+		}
+		for (int bin = BitUtils.nextSetBit(emptyBins, 0); bin > -1; bin =
+				BitUtils.nextSetBit(emptyBins, bin + 1)) {
+			int source = bin;
+			for (int attempt = 1; BitUtils.get(emptyBins, source); attempt++) {
+				source = getBorrowedBin(bin, attempt);
+			}
+			signature[offset + bin] = signature[offset + source];
+		}
+	}
+
+	/**
+	 * Returns the bin that the empty 'bin' tries at 'attempt'.
+	 */
+	private int getBorrowedBin(int bin, int attempt) {
+		long mixed =
+				RandomStreams.mix64(densificationSeed
+						+ ((long) bin << 32) + attempt);
+		return (int) ((mixed >>> 1) % size);
+	}
+
+}
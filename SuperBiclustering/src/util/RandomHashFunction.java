@@ -71,6 +71,21 @@ public class RandomHashFunction {
 		return (int) ((a * Math.abs(key.hashCode()) + b) % binCount);
 	}
 
+	/**
+	 * Same as getHash(T) for an Integer key, without boxing.
+	 */
+	public int getHash(int key) {
+		return (int) ((a * Math.abs(key) + b) % binCount);
+	}
+
+	long getMultiplier() {
+		return a;
+	}
+
+	long getOffset() {
+		return b;
+	}
+
 	/**
 	 * Gives the possible space of hashes (between 0 and the returned
 	 * value);
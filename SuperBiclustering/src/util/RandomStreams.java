@@ -0,0 +1,89 @@
+/* SuperBiclustering - A biclustering algorithm designed to
+ * handle sparse and noisy input.
+ * Copyright (C) 2014 Oliver Voggenreiter
+ *
+ * This program is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package util;
+
+import java.util.Random;
+
+/**
+ * RandomStreams derives independent random number generators from
+ * one seed per run. Every stream is identified by the class that
+ * uses it and a key chosen by that class, so a task sees the same
+ * random numbers no matter which thread runs it. This only holds as
+ * long as the keys themselves are stable: the MapController returns
+ * its results in the order in which the work packets finish, so
+ * positions in such a collection make poor keys. Streams per
+ * bicluster are keyed by BiclusterUtils.getContentHash instead. The
+ * seeds are mixed with the SplitMix64 finalizer, as used by
+ * java.util.SplittableRandom, so that neighbouring keys give
+ * unrelated streams.
+ *
+ * Each call returns a new generator that is meant to be used by a
+ * single task only.
+ */
+public class RandomStreams {
+
+	public static final long DEFAULT_SEED = 1337;
+
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	private static volatile long runSeed = DEFAULT_SEED;
+
+	private RandomStreams() {
+	}
+
+	/**
+	 * Sets the seed all streams of this run are derived from. Must be
+	 * called before any work is started.
+	 */
+	public static void setRunSeed(long seed) {
+		runSeed = seed;
+	}
+
+	public static long getRunSeed() {
+		return runSeed;
+	}
+
+	/**
+	 * Returns a generator for the stream of 'owner' with the given
+	 * key.
+	 */
+	public static Random newRandom(Class<?> owner, long key) {
+		return new Random(deriveSeed(owner, key));
+	}
+
+	/**
+	 * Returns the seed of the stream of 'owner' with the given key.
+	 */
+	public static long deriveSeed(Class<?> owner, long key) {
+		long seed = mix64(runSeed + GOLDEN_GAMMA);
+		seed = mix64(seed + owner.getName().hashCode() * GOLDEN_GAMMA);
+		return mix64(seed + key * GOLDEN_GAMMA);
+	}
+
+	/**
+	 * The SplitMix64 finalizer, a bijective mixing of all 64 bits.
+	 */
+	public static long mix64(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+}